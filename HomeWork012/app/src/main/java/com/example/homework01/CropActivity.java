@@ -7,12 +7,11 @@ import android.graphics.Bitmap;
 import android.os.Bundle;
 import android.widget.Toast;
 
+import com.example.homework01.edit.ImageSessionStore;
 import com.example.homework01.utils.BitmapUtils;
-import com.example.homework01.utils.FileUtils;
+import com.example.homework01.utils.ImageSource;
 import com.example.homework01.view.CropImageView;
 
-import java.io.File;
-
 public class CropActivity extends AppCompatActivity {
     private CropImageView mIvPreview;
     private Bitmap mOriginalBitmap;
@@ -25,16 +24,22 @@ public class CropActivity extends AppCompatActivity {
         setContentView(R.layout.activity_crop);
 
         mIvPreview = findViewById(R.id.iv_crop_preview);
-        String imagePath = getIntent().getStringExtra("image_path");
+        ImageSource source = ImageSource.fromIntent(this, getIntent());
+        ImageSessionStore.Session session = ImageSessionStore.getInstance(this)
+                .get(getIntent().getStringExtra(ImageSessionStore.EXTRA_SESSION_ID));
         
-        if (imagePath == null || imagePath.isEmpty()) {
+        if (session != null) {
+            // 编辑页通过会话传来的图片直接显示，归会话所有
+            mOriginalBitmap = session.getBitmap();
+        } else if (source == null) {
             Toast.makeText(this, "图片路径无效", Toast.LENGTH_SHORT).show();
             finish();
             return;
+        } else {
+            // 使用采样加载，避免大图片导致内存溢出
+            mOriginalBitmap = BitmapUtils.decodeScaledBitmap(source, 1024, 1024,
+                    BitmapUtils.ScaleMode.SPEED);
         }
-        
-        // 使用采样加载，避免大图片导致内存溢出
-        mOriginalBitmap = BitmapUtils.decodeSampledBitmapFromFile(imagePath, 1024, 1024);
         if (mOriginalBitmap == null) {
             Toast.makeText(this, "无法加载图片", Toast.LENGTH_SHORT).show();
             finish();
@@ -65,26 +70,24 @@ public class CropActivity extends AppCompatActivity {
                 return;
             }
             
-            // 裁剪图片
-            android.graphics.Rect cropRect = new android.graphics.Rect(
-                    (int) mCropRect.left,
-                    (int) mCropRect.top,
-                    (int) mCropRect.right,
-                    (int) mCropRect.bottom
-            );
-            
-            Bitmap croppedBitmap = BitmapUtils.cropBitmap(mOriginalBitmap, cropRect);
-
-            // 保存裁剪后的图片
-            File croppedFile = FileUtils.saveTempBitmap(this, croppedBitmap);
-            if (croppedFile != null) {
-                Intent resultIntent = new Intent();
-                resultIntent.putExtra("cropped_path", croppedFile.getAbsolutePath());
-                setResult(RESULT_OK, resultIntent);
-                finish();
-            } else {
+            // 返回相对于原图的裁剪比例，由编辑页作为编辑操作执行，保存时只按区域解码这部分原图
+            float width = mOriginalBitmap.getWidth();
+            float height = mOriginalBitmap.getHeight();
+            float[] cropRect = {
+                    Math.max(0f, mCropRect.left / width),
+                    Math.max(0f, mCropRect.top / height),
+                    Math.min(1f, mCropRect.right / width),
+                    Math.min(1f, mCropRect.bottom / height)
+            };
+            if (cropRect[0] >= cropRect[2] || cropRect[1] >= cropRect[3]) {
                 Toast.makeText(this, "裁剪失败", Toast.LENGTH_SHORT).show();
+                return;
             }
+
+            Intent resultIntent = new Intent();
+            resultIntent.putExtra("crop_rect", cropRect);
+            setResult(RESULT_OK, resultIntent);
+            finish();
         });
 
         // 比例选择
@@ -6,12 +6,17 @@ import androidx.appcompat.app.AppCompatActivity;
 
 import android.content.Intent;
 import android.graphics.Bitmap;
-import android.graphics.Canvas;
+import android.graphics.BitmapFactory;
 import android.graphics.Color;
-import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.net.Uri;
 import android.os.Bundle;
+import android.util.DisplayMetrics;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
+import android.widget.Button;
 import android.widget.EditText;
 import android.widget.LinearLayout;
 import android.widget.HorizontalScrollView;
@@ -20,18 +25,84 @@ import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import com.example.homework01.edit.EditGraph;
+import com.example.homework01.edit.EditHistory;
+import com.example.homework01.edit.EditOp;
+import com.example.homework01.edit.EditRenderer;
+import com.example.homework01.edit.ImageSessionStore;
+import com.example.homework01.edit.PixelDelta;
+import com.example.homework01.edit.PreviewScheduler;
+import com.example.homework01.edit.StripEditRenderer;
+import com.example.homework01.geometry.Orientation;
+import com.example.homework01.jpeg.JpegTranscoder;
+import com.example.homework01.stitch.PngStripReader;
+import com.example.homework01.stitch.PngStripWriter;
+import com.example.homework01.utils.BitmapPool;
 import com.example.homework01.utils.BitmapUtils;
 import com.example.homework01.utils.FileUtils;
+import com.example.homework01.utils.ImageSaver;
+import com.example.homework01.utils.ImageSource;
+import com.example.homework01.utils.OutputFormat;
+import com.example.homework01.utils.PerfTracer;
+import com.example.homework01.utils.RegionDecoder;
+import com.example.homework01.utils.RegionRowReader;
+import com.example.homework01.utils.TempFileCache;
 import com.example.homework01.view.PhotoEditorView;
 import com.example.homework01.view.TextOverlayView;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
 public class EditorActivity extends AppCompatActivity {
+    private static final String TAG = "EditorActivity";
+    // 保存时在内存中渲染的最大像素数，超过时能按条带渲染的编辑改为流式输出，否则按2的幂采样缩小
+    private static final long MAX_OUTPUT_PIXELS = 4096L * 4096;
+
     private PhotoEditorView mEditorView;
     private TextOverlayView mTextOverlayView;
+    private ImageSource mImageSource;
+    // 原图文件的格式，没有编辑时按这个格式原样写入相册；不支持原样保存时为null
+    private OutputFormat mSourceFormat;
+    // 原图转正后的尺寸和EXIF方向，读取不到尺寸时为0
+    private int mSourceWidth;
+    private int mSourceHeight;
+    private Orientation mSourceOrientation = Orientation.IDENTITY;
+    // 原图是临时文件缓存中的文件时（如流式拼接的长图），页面使用期间不允许被清理
+    private File mPinnedFile;
+    // 通过会话传入图片时的会话ID，原图归会话所有
+    private String mSessionId;
     private Bitmap mOriginalBitmap;
     private Bitmap mEditedBitmap;
+    // 屏幕大小的代理图，以及渲染预览用的渲染器
+    private Bitmap mProxyBitmap;
+    private EditRenderer mPreviewRenderer;
+    // 非破坏性的编辑记录
+    private EditGraph mEditGraph = new EditGraph();
+    // 撤销历史，最多占用16MB
+    private final EditHistory mHistory = new EditHistory(16 * 1024 * 1024);
+    // 最近一次提交的编辑记录及其预览，撤销时在这张预览上应用像素差异
+    private EditGraph mCommittedGraph;
+    private Bitmap mCommittedBitmap;
+    // 最新一次提交渲染对应的编辑记录，不是提交渲染时为null
+    private EditGraph mLatestCommit;
+    private Button mUndoButton;
+    private Button mRedoButton;
+    private Button mSaveButton;
+    // 正在后台进行的保存数和分享数
+    private int mSaveInFlight;
+    private int mShareInFlight;
     private LinearLayout mAdjustPanel;
     private HorizontalScrollView mFilterPanel;
+    private PreviewScheduler mPreviewScheduler;
+    // 当前的调节参数
+    private int mBrightness = 0;
+    private float mContrast = 0f;
+    private float mSaturation = 1f;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -44,17 +115,38 @@ public class EditorActivity extends AppCompatActivity {
         mAdjustPanel = findViewById(R.id.panel_adjust);
         mFilterPanel = findViewById(R.id.panel_filter);
 
-        // 获取图片路径并加载
-        String imagePath = getIntent().getStringExtra("image_path");
+        // 获取图片来源并加载，文件路径和content URI都直接解码
+        mImageSource = ImageSource.fromIntent(this, getIntent());
+        // 其他页面通过会话直接传来的图片，不经过临时文件
+        mSessionId = getIntent().getStringExtra(ImageSessionStore.EXTRA_SESSION_ID);
+        ImageSessionStore.Session session = ImageSessionStore.getInstance(this).get(mSessionId);
+        DisplayMetrics metrics = getResources().getDisplayMetrics();
         
         // 尝试多种方式加载图片
-        if (imagePath != null && !imagePath.isEmpty()) {
-            // 使用采样加载，避免大图片导致内存溢出
-            mOriginalBitmap = BitmapUtils.decodeSampledBitmapFromFile(imagePath, 1024, 1024);
+        if (session != null) {
+            mOriginalBitmap = session.getBitmap();
+            // 进程被回收后重建时恢复之前的编辑记录
+            if (session.getGraph() != null) {
+                mEditGraph = session.getGraph().copy();
+            }
+        } else if (mImageSource != null) {
+            // 交互只需要屏幕大小，直接按屏幕尺寸解码，保存时再从文件按输出尺寸解码
+            mOriginalBitmap = BitmapUtils.decodeScaledBitmap(mImageSource,
+                    metrics.widthPixels, metrics.heightPixels, BitmapUtils.ScaleMode.QUALITY);
             
             // 如果通过文件路径加载失败，尝试其他方式
             if (mOriginalBitmap == null) {
-                Toast.makeText(this, "通过路径加载失败: " + imagePath, Toast.LENGTH_LONG).show();
+                Toast.makeText(this, "通过路径加载失败: " + mImageSource, Toast.LENGTH_LONG).show();
+            } else {
+                BitmapFactory.Options bounds = mImageSource.decodeBounds();
+                mSourceFormat = OutputFormat.forMimeType(bounds.outMimeType);
+                if (bounds.outWidth > 0 && bounds.outHeight > 0) {
+                    mSourceOrientation = mImageSource.readOrientation();
+                    mSourceWidth = mSourceOrientation.getOutputWidth(bounds.outWidth, bounds.outHeight);
+                    mSourceHeight = mSourceOrientation.getOutputHeight(bounds.outWidth, bounds.outHeight);
+                }
+                mPinnedFile = mImageSource.getFile();
+                TempFileCache.getInstance(this).pin(mPinnedFile);
             }
         }
 
@@ -64,35 +156,74 @@ public class EditorActivity extends AppCompatActivity {
             return;
         }
         
-        mEditedBitmap = mOriginalBitmap.copy(mOriginalBitmap.getConfig(), true);
+        // 交互编辑都在屏幕大小的代理图上进行，保存时再按编辑记录渲染原图；
+        // 从文件解码的图已经是屏幕大小，直接作为代理图
+        if (session != null) {
+            mProxyBitmap = BitmapUtils.createProxyBitmap(mOriginalBitmap,
+                    metrics.widthPixels, metrics.heightPixels);
+        } else {
+            mProxyBitmap = mOriginalBitmap;
+        }
+        mPreviewRenderer = new EditRenderer(mProxyBitmap, true);
+        mEditedBitmap = mProxyBitmap.copy(mProxyBitmap.getConfig(), true);
         mEditorView.setBitmap(mEditedBitmap);
 
+        // 预览渲染完成后在主线程显示
+        mPreviewScheduler = new PreviewScheduler((bitmap, latencyMs) -> {
+            // 未提交过的旧预览不会再被后台任务读取，换下后归还到复用池
+            Bitmap replaced = mEditedBitmap != mCommittedBitmap ? mEditedBitmap : null;
+            mEditedBitmap = bitmap;
+            if (mLatestCommit != null) {
+                mCommittedGraph = mLatestCommit;
+                mCommittedBitmap = bitmap;
+            }
+            mEditorView.setBitmap(mEditedBitmap);
+            if (replaced != null && replaced != bitmap) {
+                BitmapPool.getInstance().put(replaced);
+            }
+        });
+
+        // 初始状态作为历史的第一步
+        mHistory.push(mEditGraph);
+        mCommittedGraph = mHistory.current();
+        mCommittedBitmap = mEditedBitmap;
+        if (!mEditGraph.isEmpty()) {
+            // 恢复的编辑记录需要重新渲染预览
+            syncAdjustControls();
+            final List<EditOp> ops = mEditGraph.getOps();
+            mLatestCommit = mHistory.current();
+            mPreviewScheduler.submit(signal -> mPreviewRenderer.render(ops, signal));
+        }
+
         // 返回按钮
         findViewById(R.id.btn_back).setOnClickListener(v -> finish());
 
-        // 保存按钮
-        findViewById(R.id.btn_save).setOnClickListener(v -> {
-            // 合并文字和图片
-            Bitmap finalBitmap = mergeTextWithBitmap();
-            if (FileUtils.saveBitmapToGallery(this, finalBitmap)) {
-                Toast.makeText(this, "保存成功", Toast.LENGTH_SHORT).show();
-            } else {
-                Toast.makeText(this, "保存失败", Toast.LENGTH_SHORT).show();
-            }
+        // 撤销和重做
+        mUndoButton = findViewById(R.id.btn_undo);
+        mRedoButton = findViewById(R.id.btn_redo);
+        mUndoButton.setOnClickListener(v -> {
+            EditGraph from = mHistory.current();
+            applyHistoryStep(from, mHistory.undo());
         });
-
-        // 分享按钮
-        findViewById(R.id.btn_share).setOnClickListener(v -> {
-            // 合并文字和图片
-            Bitmap finalBitmap = mergeTextWithBitmap();
-            // 分享到抖音逻辑
-            FileUtils.shareToDouyin(this, finalBitmap);
+        mRedoButton.setOnClickListener(v -> {
+            EditGraph from = mHistory.current();
+            applyHistoryStep(from, mHistory.redo());
         });
 
+        // 保存按钮：在主线程取得编辑记录，渲染、编码和写入都在后台进行
+        mSaveButton = findViewById(R.id.btn_save);
+        mSaveButton.setOnClickListener(v -> saveToGallery());
+
+        // 分享按钮：和保存一样在后台按全分辨率渲染
+        findViewById(R.id.btn_share).setOnClickListener(v -> shareToDouyin());
+
         // 标签切换
         findViewById(R.id.tab_crop).setOnClickListener(v -> {
             Intent cropIntent = new Intent(this, CropActivity.class);
-            cropIntent.putExtra("image_path", imagePath);
+            if (mImageSource != null) {
+                mImageSource.putTo(cropIntent);
+            }
+            cropIntent.putExtra(ImageSessionStore.EXTRA_SESSION_ID, mSessionId);
             startActivityForResult(cropIntent, 103);
         });
 
@@ -118,18 +249,20 @@ public class EditorActivity extends AppCompatActivity {
         brightnessSeek.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
             @Override
             public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
-                int brightness = progress - 100;
-                float contrast = (((SeekBar)findViewById(R.id.seek_contrast)).getProgress() - 100) / 100f;
-
-                mEditedBitmap = BitmapUtils.adjustBrightnessContrast(mOriginalBitmap, brightness, contrast);
-                mEditorView.setBitmap(mEditedBitmap);
+                // 撤销时同步滑块位置不需要重新渲染
+                if (!fromUser) return;
+                mBrightness = progress - 100;
+                applyAdjust();
             }
 
             @Override
             public void onStartTrackingTouch(SeekBar seekBar) {}
 
             @Override
-            public void onStopTrackingTouch(SeekBar seekBar) {}
+            public void onStopTrackingTouch(SeekBar seekBar) {
+                // 松手时才记录为一步历史
+                commit();
+            }
         });
 
         // 对比度调节
@@ -140,51 +273,129 @@ public class EditorActivity extends AppCompatActivity {
         contrastSeek.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
             @Override
             public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
-                int brightness = ((SeekBar)findViewById(R.id.seek_brightness)).getProgress() - 100;
+                if (!fromUser) return;
                 // 对比度范围从-50到150，转换为-0.5到1.5
-                float contrast = (progress - 100) / 100f;
-                mEditedBitmap = BitmapUtils.adjustBrightnessContrast(mOriginalBitmap, brightness, contrast);
-                mEditorView.setBitmap(mEditedBitmap);
+                mContrast = (progress - 100) / 100f;
+                applyAdjust();
             }
 
             @Override
             public void onStartTrackingTouch(SeekBar seekBar) {}
 
             @Override
-            public void onStopTrackingTouch(SeekBar seekBar) {}
+            public void onStopTrackingTouch(SeekBar seekBar) {
+                commit();
+            }
         });
 
-        // 滤镜按钮
-        findViewById(R.id.filter_origin).setOnClickListener(v -> {
-            mEditedBitmap = mOriginalBitmap.copy(mOriginalBitmap.getConfig(), true);
-            mEditorView.setBitmap(mEditedBitmap);
-        });
+        // 滤镜按钮，切换滤镜时保留亮度和对比度设置
+        findViewById(R.id.filter_origin).setOnClickListener(v -> applyFilter(EditOp.FilterOp.ORIGIN));
+        findViewById(R.id.filter_black_white).setOnClickListener(v -> applyFilter(EditOp.FilterOp.BLACK_WHITE));
+        findViewById(R.id.filter_vintage).setOnClickListener(v -> applyFilter(EditOp.FilterOp.VINTAGE));
+        findViewById(R.id.filter_warm).setOnClickListener(v -> applyFilter(EditOp.FilterOp.WARM));
+        
+        // 添加更多滤镜
+        findViewById(R.id.filter_cold).setOnClickListener(v -> applyFilter(EditOp.FilterOp.COLD));
+        findViewById(R.id.filter_fresh).setOnClickListener(v -> applyFilter(EditOp.FilterOp.FRESH));
+    }
 
-        findViewById(R.id.filter_black_white).setOnClickListener(v -> {
-            mEditedBitmap = BitmapUtils.applyBlackWhiteFilter(mOriginalBitmap);
-            mEditorView.setBitmap(mEditedBitmap);
-        });
+    // 滤镜和调节只保留最新的参数，替换编辑记录中已有的同类操作
+    private void applyFilter(int filter) {
+        mEditGraph.replaceOrAppend(new EditOp.FilterOp(filter));
+        commit();
+    }
 
-        findViewById(R.id.filter_vintage).setOnClickListener(v -> {
-            mEditedBitmap = BitmapUtils.applyVintageFilter(mOriginalBitmap);
-            mEditorView.setBitmap(mEditedBitmap);
-        });
+    private void applyAdjust() {
+        mEditGraph.replaceOrAppend(new EditOp.AdjustOp(mBrightness, mContrast, mSaturation));
+        renderPreview();
+    }
 
-        findViewById(R.id.filter_warm).setOnClickListener(v -> {
-            mEditedBitmap = BitmapUtils.applyWarmFilter(mOriginalBitmap);
-            mEditorView.setBitmap(mEditedBitmap);
-        });
-        
-        // 添加更多滤镜
-        findViewById(R.id.filter_cold).setOnClickListener(v -> {
-            mEditedBitmap = BitmapUtils.applyColdFilter(mOriginalBitmap);
-            mEditorView.setBitmap(mEditedBitmap);
-        });
-        
-        findViewById(R.id.filter_fresh).setOnClickListener(v -> {
-            mEditedBitmap = BitmapUtils.applyFreshFilter(mOriginalBitmap);
-            mEditorView.setBitmap(mEditedBitmap);
+    // 在后台线程用代理图渲染当前的编辑记录作为预览
+    private void renderPreview() {
+        final List<EditOp> ops = mEditGraph.getOps();
+        mLatestCommit = null;
+        mPreviewScheduler.submit(signal -> mPreviewRenderer.render(ops, signal));
+    }
+
+    // 把当前编辑记录提交为一步历史并渲染，渲染完成后记录与上一步预览的像素差异
+    private void commit() {
+        mHistory.push(mEditGraph);
+        final EditGraph committed = mHistory.current();
+        final EditGraph previous = mHistory.previousOf(committed);
+        final Bitmap base = previous != null && previous == mCommittedGraph ? mCommittedBitmap : null;
+        final List<EditOp> ops = committed.getOps();
+        mLatestCommit = committed;
+        mPreviewScheduler.submit(signal -> {
+            Bitmap bitmap = mPreviewRenderer.render(ops, signal);
+            if (base != null && base.getWidth() == bitmap.getWidth()
+                    && base.getHeight() == bitmap.getHeight()) {
+                mHistory.attachDelta(committed, computeDelta(base, bitmap));
+            }
+            return bitmap;
         });
+        updateHistoryButtons();
+    }
+
+    // 切换到撤销或重做的目标步骤，有像素差异时直接应用到当前预览上
+    private void applyHistoryStep(EditGraph from, EditHistory.Step step) {
+        if (step == null) return;
+        mPreviewScheduler.cancel();
+        mEditGraph = step.graph.copy();
+        syncAdjustControls();
+
+        // 只有当前显示的正是from这一步的预览时，差异才能直接应用
+        boolean showingFrom = mEditedBitmap == mCommittedBitmap && mCommittedGraph == from;
+        if (step.delta != null && showingFrom) {
+            Bitmap restored = applyDelta(mEditedBitmap, step.delta);
+            mCommittedGraph = step.graph;
+            mCommittedBitmap = restored;
+            mEditedBitmap = restored;
+            mEditorView.setBitmap(restored);
+        } else {
+            // 差异已被淘汰，按编辑记录重新渲染
+            final List<EditOp> ops = step.graph.getOps();
+            mLatestCommit = step.graph;
+            mPreviewScheduler.submit(signal -> mPreviewRenderer.render(ops, signal));
+        }
+        updateHistoryButtons();
+    }
+
+    private void updateHistoryButtons() {
+        mUndoButton.setEnabled(mHistory.canUndo());
+        mRedoButton.setEnabled(mHistory.canRedo());
+    }
+
+    // 根据编辑记录中的调节操作恢复滑块位置
+    private void syncAdjustControls() {
+        EditOp.AdjustOp adjust = mEditGraph.findLast(EditOp.AdjustOp.class);
+        mBrightness = adjust != null ? adjust.getBrightness() : 0;
+        mContrast = adjust != null ? adjust.getContrast() : 0f;
+        mSaturation = adjust != null ? adjust.getSaturation() : 1f;
+        ((SeekBar) findViewById(R.id.seek_brightness)).setProgress(mBrightness + 100);
+        ((SeekBar) findViewById(R.id.seek_contrast)).setProgress(Math.round(mContrast * 100) + 100);
+    }
+
+    private static PixelDelta computeDelta(Bitmap before, Bitmap after) {
+        int width = before.getWidth();
+        int height = before.getHeight();
+        int[] beforePixels = new int[width * height];
+        int[] afterPixels = new int[width * height];
+        before.getPixels(beforePixels, 0, width, 0, 0, width, height);
+        after.getPixels(afterPixels, 0, width, 0, 0, width, height);
+        return PixelDelta.compute(beforePixels, afterPixels, width, height);
+    }
+
+    // 在副本上只读写差异区域，不修改可能仍被后台线程读取的原预览
+    private static Bitmap applyDelta(Bitmap bitmap, PixelDelta delta) {
+        Bitmap result = bitmap.copy(Bitmap.Config.ARGB_8888, true);
+        if (delta.getWidth() == 0) return result;
+        int[] region = new int[delta.getWidth() * delta.getHeight()];
+        result.getPixels(region, 0, delta.getWidth(), delta.getLeft(), delta.getTop(),
+                delta.getWidth(), delta.getHeight());
+        delta.applyToRegion(region);
+        result.setPixels(region, 0, delta.getWidth(), delta.getLeft(), delta.getTop(),
+                delta.getWidth(), delta.getHeight());
+        return result;
     }
 
     // 旋转功能弹窗
@@ -195,24 +406,22 @@ public class EditorActivity extends AppCompatActivity {
         builder.setItems(options, (dialog, which) -> {
             switch (which) {
                 case 0: // 顺时针旋转90°
-                    mEditedBitmap = BitmapUtils.rotateBitmap(mEditedBitmap, 90);
+                    mEditGraph.addTransform(new EditOp.RotateOp(90));
                     break;
                 case 1: // 逆时针旋转90°
-                    mEditedBitmap = BitmapUtils.rotateBitmap(mEditedBitmap, -90);
+                    mEditGraph.addTransform(new EditOp.RotateOp(-90));
                     break;
                 case 2: // 旋转180°
-                    mEditedBitmap = BitmapUtils.rotateBitmap(mEditedBitmap, 180);
+                    mEditGraph.addTransform(new EditOp.RotateOp(180));
                     break;
                 case 3: // 水平翻转
-                    mEditedBitmap = BitmapUtils.flipBitmap(mEditedBitmap, true);
+                    mEditGraph.addTransform(new EditOp.FlipOp(true));
                     break;
                 case 4: // 垂直翻转
-                    mEditedBitmap = BitmapUtils.flipBitmap(mEditedBitmap, false);
+                    mEditGraph.addTransform(new EditOp.FlipOp(false));
                     break;
             }
-            mEditorView.setBitmap(mEditedBitmap);
-            // 更新原始图像为当前编辑后的图像，以便后续操作基于最新图像
-            mOriginalBitmap = mEditedBitmap.copy(mEditedBitmap.getConfig(), true);
+            commit();
         });
         builder.show();
     }
@@ -277,47 +486,327 @@ public class EditorActivity extends AppCompatActivity {
                 .show();
     }
 
-    // 合并文字和图片
-    private Bitmap mergeTextWithBitmap() {
-        // 创建一个新的Bitmap用于绘制
-        Bitmap newBitmap = Bitmap.createBitmap(mEditedBitmap.getWidth(), mEditedBitmap.getHeight(), mEditedBitmap.getConfig());
-        Canvas canvas = new Canvas(newBitmap);
-        
-        // 先绘制原始图片
-        canvas.drawBitmap(mEditedBitmap, 0, 0, null);
-        
-        // 绘制所有文字元素
+    private void saveToGallery() {
+        final List<EditOp> ops = collectSaveOps();
+        mSaveButton.setEnabled(false);
+        mSaveInFlight++;
+        ImageSaver.Callback callback = new ImageSaver.Callback() {
+            @Override
+            public void onProgress(int percent) {
+                mSaveButton.setText("保存中 " + percent + "%");
+            }
+
+            @Override
+            public void onSaved(Uri uri) {
+                finishSave();
+                Toast.makeText(getApplicationContext(), "保存成功", Toast.LENGTH_SHORT).show();
+            }
+
+            @Override
+            public void onFailed(Exception e) {
+                Log.e(TAG, "save failed", e);
+                finishSave();
+                Toast.makeText(getApplicationContext(), "保存失败", Toast.LENGTH_SHORT).show();
+            }
+        };
+        if (ops.isEmpty() && mSourceFormat != null) {
+            // 没有编辑时原图就是结果，原样写入相册，拼接的长图也保持原尺寸
+            ImageSaver.copyToGallery(this, mImageSource, mSourceFormat, callback);
+            return;
+        }
+        if (shouldStream(ops)) {
+            // 放不进内存的大图按条带渲染成原尺寸的PNG，不缩小
+            ImageSaver.streamToGallery(this, OutputFormat.STREAMED, os -> streamForSave(ops, os), callback);
+            return;
+        }
+        ImageSaver.saveToGallery(this, () -> transcodeForSave(ops), () -> renderForSave(ops),
+                OutputFormat.GALLERY, callback);
+    }
+
+    private void finishSave() {
+        mSaveInFlight--;
+        mSaveButton.setEnabled(mSaveInFlight == 0);
+        mSaveButton.setText("保存");
+        releaseOriginalIfIdle();
+    }
+
+    // 在保存线程上合并文字、按全分辨率渲染并编码，文件准备好后回到主线程分享
+    private void shareToDouyin() {
+        final List<EditOp> ops = collectSaveOps();
+        mShareInFlight++;
+        ImageSaver.prepareShare(this, () -> renderForSave(ops), OutputFormat.SHARE_MAX_BYTES, file -> {
+            mShareInFlight--;
+            if (isDestroyed()) {
+                releaseOriginalIfIdle();
+                return;
+            }
+            FileUtils.shareToDouyin(this, file);
+        });
+    }
+
+    // 页面已经销毁且没有后台任务还在读取原图时释放原图
+    private void releaseOriginalIfIdle() {
+        if (isDestroyed() && mSaveInFlight == 0 && mShareInFlight == 0) {
+            releaseOriginal();
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        // 编辑记录放进会话，进程被回收后可以恢复
+        ImageSessionStore.Session session = ImageSessionStore.getInstance(this).get(mSessionId);
+        if (session != null && mEditGraph != null) {
+            session.setGraph(mEditGraph);
+        }
+    }
+
+    // 释放原图：会话中的原图在页面结束时随会话释放，配置变化重建时保留
+    private void releaseOriginal() {
+        // 不再有任务读取原图文件，允许缓存清理它
+        TempFileCache.getInstance(this).unpin(mPinnedFile);
+        mPinnedFile = null;
+        if (mSessionId != null) {
+            if (isFinishing()) {
+                ImageSessionStore.getInstance(this).release(mSessionId);
+            }
+        } else if (mOriginalBitmap != null && !mOriginalBitmap.isRecycled()) {
+            mOriginalBitmap.recycle();
+        }
+    }
+
+    // 在主线程收集编辑记录和文字，文字坐标是按预览图记录的，转换成相对于预览图宽度的比例
+    private List<EditOp> collectSaveOps() {
+        List<EditOp> ops = new ArrayList<>(mEditGraph.getOps());
+        float previewWidth = mEditedBitmap.getWidth();
         for (TextOverlayView.TextElement element : mTextOverlayView.getTextElements()) {
-            Paint paint = new Paint();
-            paint.setAntiAlias(true);
-            paint.setColor(element.getColor());
-            paint.setTextSize(element.getSize() * element.getScale());
-            
-            // 保存画布状态
-            canvas.save();
-            
-            // 移动到文字中心点并旋转
-            canvas.rotate(element.getRotation(), element.getX(), element.getY());
-            
-            // 绘制文字
-            canvas.drawText(element.getText(), element.getX(), element.getY(), paint);
-            
-            // 恢复画布状态
-            canvas.restore();
+            ops.add(new EditOp.TextOp(element.getText(),
+                    element.getX() / previewWidth,
+                    element.getY() / previewWidth,
+                    element.getColor(),
+                    element.getSize() * element.getScale() / previewWidth,
+                    element.getRotation()));
+        }
+        return ops;
+    }
+
+    /**
+     * 只有裁剪和旋转/翻转时，在DCT域直接变换原图JPEG：不解码像素、不损失画质，输出保持原图分辨率。
+     * 有其他编辑、文字或原图不是可变换的JPEG时返回null，由调用者渲染后重新编码
+     */
+    private byte[] transcodeForSave(List<EditOp> ops) {
+        if (mImageSource == null) return null;
+        RectF crop = null;
+        Orientation user = Orientation.IDENTITY;
+        for (int i = 0; i < ops.size(); i++) {
+            EditOp op = ops.get(i);
+            if (i == 0 && op instanceof EditOp.CropOp) {
+                crop = ((EditOp.CropOp) op).getRect();
+            } else if (op instanceof EditOp.TransformOp) {
+                user = user.then(((EditOp.TransformOp) op).getOrientation());
+            } else {
+                return null;
+            }
+        }
+        long token = PerfTracer.begin("save.transcode");
+        try {
+            // 先按EXIF转正再做用户的变换，裁剪框换算回文件中的像素方向
+            Orientation exif = mImageSource.readOrientation();
+            int[] cropPixels = null;
+            if (crop != null) {
+                BitmapFactory.Options bounds = mImageSource.decodeBounds();
+                if (bounds.outWidth <= 0 || bounds.outHeight <= 0) return null;
+                float[] stored = exif.inverse().mapUnitRect(crop.left, crop.top, crop.right, crop.bottom);
+                cropPixels = new int[]{
+                        Math.round(stored[0] * bounds.outWidth), Math.round(stored[1] * bounds.outHeight),
+                        Math.round(stored[2] * bounds.outWidth), Math.round(stored[3] * bounds.outHeight)};
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (InputStream in = mImageSource.openStream()) {
+                JpegTranscoder.transform(in, out, cropPixels, exif.then(user));
+            }
+            return out.toByteArray();
+        } catch (IOException | OutOfMemoryError e) {
+            Log.i(TAG, "lossless transcode not applicable, fall back to render", e);
+            return null;
+        } finally {
+            PerfTracer.end("save.transcode", token);
+        }
+    }
+
+    // 按全分辨率渲染操作列表，不访问界面，可以在后台线程调用；超过MAX_OUTPUT_PIXELS的结果会被采样缩小
+    private Bitmap renderForSave(List<EditOp> ops) {
+        long token = PerfTracer.begin("save.render");
+        try {
+            // 第一步是裁剪时只从文件解码裁剪区域，按原图质量渲染，不需要整张大图；
+            // 没有裁剪时重新解码整张原图，编辑时用的屏幕大小的图只用于交互
+            Bitmap source = null;
+            if (!ops.isEmpty() && ops.get(0) instanceof EditOp.CropOp) {
+                source = decodeCropRegion(((EditOp.CropOp) ops.get(0)).getRect());
+                if (source != null) {
+                    ops.remove(0);
+                }
+            } else if (mImageSource != null) {
+                source = decodeForSave();
+            }
+            if (source == null) {
+                return new EditRenderer(mOriginalBitmap, false).render(ops, null);
+            }
+            Bitmap result = new EditRenderer(source, false).render(ops, null);
+            BitmapPool.getInstance().put(source);
+            return result;
+        } finally {
+            PerfTracer.end("save.render", token);
+        }
+    }
+
+    /**
+     * 解码整张原图用于在内存中渲染：不超过MAX_OUTPUT_PIXELS时按原尺寸解码；超过时按2的幂采样，
+     * 宽和高一起缩小，解码器直接输出采样后的尺寸，不会先解码出整张原图。
+     * 能按条带渲染的大图在saveToGallery中已经改为流式输出，只有旋转翻转等编辑才会在这里被缩小
+     */
+    private Bitmap decodeForSave() {
+        Bitmap bitmap = decodeCropRegion(new RectF(0f, 0f, 1f, 1f));
+        if (bitmap != null || mSourceWidth <= 0) {
+            return bitmap;
+        }
+        // 不支持区域解码的格式按同样的采样率整图采样解码
+        int sample = RegionDecoder.calculateSampleSize(new Rect(0, 0, mSourceWidth, mSourceHeight),
+                MAX_OUTPUT_PIXELS);
+        return BitmapUtils.decodeSampledBitmap(mImageSource, mSourceWidth / sample, mSourceHeight / sample);
+    }
+
+    // 裁剪后的输出区域，以转正后的原图像素为单位；没有裁剪时是整张图
+    private Rect outputRect(List<EditOp> ops) {
+        Rect rect = new Rect(0, 0, mSourceWidth, mSourceHeight);
+        if (!ops.isEmpty() && ops.get(0) instanceof EditOp.CropOp) {
+            RectF crop = ((EditOp.CropOp) ops.get(0)).getRect();
+            rect.set(Math.round(crop.left * mSourceWidth), Math.round(crop.top * mSourceHeight),
+                    Math.round(crop.right * mSourceWidth), Math.round(crop.bottom * mSourceHeight));
+            if (!rect.intersect(0, 0, mSourceWidth, mSourceHeight)) {
+                rect.setEmpty();
+            }
+        }
+        return rect;
+    }
+
+    // 去掉开头的裁剪，裁剪由读取的区域完成
+    private static List<EditOp> withoutCrop(List<EditOp> ops) {
+        if (!ops.isEmpty() && ops.get(0) instanceof EditOp.CropOp) {
+            return ops.subList(1, ops.size());
+        }
+        return ops;
+    }
+
+    // 输出超过内存渲染的上限，且除裁剪外只有颜色和文字编辑时，改为按条带流式渲染
+    private boolean shouldStream(List<EditOp> ops) {
+        if (mImageSource == null || mSourceWidth <= 0) return false;
+        if (withoutCrop(ops).isEmpty() && mSourceFormat != null
+                && mSourceFormat.getType() == OutputFormat.Type.JPEG) {
+            // 只裁剪JPEG时由transcodeForSave无损变换，同样保持原尺寸
+            return false;
+        }
+        Rect rect = outputRect(ops);
+        return !rect.isEmpty() && (long) rect.width() * rect.height() > MAX_OUTPUT_PIXELS
+                && StripEditRenderer.supports(withoutCrop(ops));
+    }
+
+    /**
+     * 按条带流式渲染并编码成PNG，在保存线程上调用：原图多大输出就多大，内存只有一个条带。
+     * 8位RGB的PNG（如流式拼接的长图）顺序解压读取，其他格式按条带区域解码
+     */
+    private void streamForSave(List<EditOp> ops, OutputStream os) throws IOException {
+        long token = PerfTracer.begin("save.stream");
+        Rect rect = outputRect(ops);
+        int width = rect.width();
+        StripEditRenderer renderer = new StripEditRenderer(withoutCrop(ops), width, rect.height(),
+                StripEditRenderer.DEFAULT_STRIP_HEIGHT);
+        PngStripReader png = openPngReader();
+        RegionRowReader region = null;
+        try (PngStripWriter writer = new PngStripWriter(os, width, rect.height())) {
+            if (png != null) {
+                int[] line = new int[png.getWidth()];
+                png.skipRows(rect.top);
+                renderer.render((top, rows, dst, offset, stride) -> {
+                    for (int r = 0; r < rows; r++) {
+                        png.readRows(line, 0, line.length, 1);
+                        System.arraycopy(line, rect.left, dst, offset + r * stride, width);
+                    }
+                }, writer);
+            } else {
+                RegionRowReader reader = new RegionRowReader(mImageSource, mSourceOrientation,
+                        mSourceWidth, mSourceHeight);
+                region = reader;
+                renderer.render((top, rows, dst, offset, stride) ->
+                        reader.readRows(rect.left, rect.top + top, width, rows, dst, offset, stride), writer);
+            }
+            writer.finish();
+        } finally {
+            if (png != null) {
+                png.close();
+            }
+            if (region != null) {
+                region.release();
+            }
+            PerfTracer.end("save.stream", token);
+        }
+    }
+
+    // 原图是可以顺序读取的PNG时打开，否则返回null改用区域解码
+    private PngStripReader openPngReader() throws IOException {
+        if (!mSourceOrientation.isIdentity() || mSourceFormat == null
+                || mSourceFormat.getType() != OutputFormat.Type.PNG) {
+            return null;
+        }
+        InputStream in = mImageSource.openStream();
+        try {
+            PngStripReader reader = new PngStripReader(in);
+            if (reader.getWidth() == mSourceWidth && reader.getHeight() == mSourceHeight) {
+                return reader;
+            }
+            reader.close();
+        } catch (IOException e) {
+            Log.i(TAG, "png not streamable, fall back to region decode", e);
+            in.close();
+        }
+        return null;
+    }
+
+    // 从原图文件中区域解码裁剪部分，失败时返回null由调用者退回到采样图
+    private Bitmap decodeCropRegion(RectF crop) {
+        if (mImageSource == null) return null;
+        RegionDecoder decoder = null;
+        try {
+            decoder = RegionDecoder.open(mImageSource);
+            // 裁剪框是在转正后的图上选的，换算到文件中的像素方向，解码后再转正
+            Orientation orientation = mImageSource.readOrientation();
+            float[] stored = orientation.inverse().mapUnitRect(crop.left, crop.top, crop.right, crop.bottom);
+            Rect region = decoder.toPixelRect(new RectF(stored[0], stored[1], stored[2], stored[3]));
+            if (region.isEmpty()) return null;
+            int sample = RegionDecoder.calculateSampleSize(region, MAX_OUTPUT_PIXELS);
+            if (sample > 1) {
+                Log.i(TAG, "output " + region.width() + "x" + region.height() + " exceeds pixel cap, sampled by " + sample);
+            }
+            return BitmapUtils.applyOrientation(decoder.decodeRegion(region, sample), orientation);
+        } catch (IOException | OutOfMemoryError e) {
+            Log.w(TAG, "region decode failed, fall back to sampled bitmap", e);
+            return null;
+        } finally {
+            if (decoder != null) {
+                decoder.recycle();
+            }
         }
-        
-        return newBitmap;
     }
 
     @Override
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
         if (requestCode == 103 && resultCode == RESULT_OK) {
-            String croppedPath = data.getStringExtra("cropped_path");
-            mOriginalBitmap = BitmapUtils.decodeSampledBitmapFromFile(croppedPath, 1024, 1024);
-            if (mOriginalBitmap != null) {
-                mEditedBitmap = mOriginalBitmap.copy(mOriginalBitmap.getConfig(), true);
-                mEditorView.setBitmap(mEditedBitmap);
+            // 裁剪框是相对于原图的比例，作为第一个编辑操作
+            float[] rect = data.getFloatArrayExtra("crop_rect");
+            if (rect != null && rect.length == 4) {
+                mEditGraph.setCrop(new EditOp.CropOp(rect[0], rect[1], rect[2], rect[3]));
+                commit();
             }
         }
     }
@@ -325,9 +814,28 @@ public class EditorActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        // 释放Bitmap内存
-        if (mOriginalBitmap != null && !mOriginalBitmap.isRecycled()) {
-            mOriginalBitmap.recycle();
+        // 先停止后台渲染，再释放Bitmap内存
+        if (mPreviewScheduler != null) {
+            mPreviewScheduler.release();
+        }
+        if (mPreviewRenderer != null) {
+            mPreviewRenderer.release();
+        }
+        Log.d(TAG, "bitmap pool: " + BitmapPool.getInstance());
+        if (PerfTracer.isEnabled()) {
+            // 导出各阶段耗时分位数，可用adb pull取出分析
+            File traceFile = new File(getExternalFilesDir(null), "perf_trace.tsv");
+            if (PerfTracer.dumpToFile(traceFile)) {
+                Log.d(TAG, "perf trace dumped to " + traceFile);
+            }
+        }
+        // 后台保存或分享还在读取原图时推迟到它们结束再释放
+        if (mSaveInFlight == 0 && mShareInFlight == 0) {
+            releaseOriginal();
+        }
+        // 从文件解码时代理图就是原图，随原图释放
+        if (mProxyBitmap != null && mProxyBitmap != mOriginalBitmap && !mProxyBitmap.isRecycled()) {
+            mProxyBitmap.recycle();
         }
         if (mEditedBitmap != null && !mEditedBitmap.isRecycled()) {
             mEditedBitmap.recycle();
@@ -6,9 +6,10 @@ import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
 import android.Manifest;
+import android.content.Context;
 import android.content.Intent;
+import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
-import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.Environment;
@@ -17,11 +18,12 @@ import android.view.View;
 import android.widget.Button;
 import android.widget.Toast;
 
+import com.example.homework01.utils.ImageSource;
+import com.example.homework01.utils.PerfTracer;
+import com.example.homework01.utils.TempFileCache;
 import com.example.homework01.utils.PermissionUtils;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.InputStream;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -41,6 +43,12 @@ public class MainActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
+        // 可调试版本开启耗时统计，发布版本关闭
+        PerfTracer.setEnabled((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0);
+        // 启动时清理上次遗留的临时文件，在后台进行
+        Context appContext = getApplicationContext();
+        new Thread(() -> TempFileCache.getInstance(appContext), "TempFileCleanup").start();
+
         // 相册选取
         findViewById(R.id.btn_gallery).setOnClickListener(v -> {
             if (PermissionUtils.checkGalleryPermission(this)) {
@@ -133,26 +141,14 @@ public class MainActivity extends AppCompatActivity {
             if (requestCode == REQUEST_GALLERY && data != null) {
                 Uri uri = data.getData();
                 if (uri != null) {
-                    // 将URI转换为真实路径
-                    String realPath = getRealPathFromURI(uri);
-                    if (realPath != null) {
-                        editorIntent.putExtra("image_path", realPath);
-                    } else {
-                        // 如果无法获取真实路径，则复制文件到缓存目录
-                        String cachedPath = copyFileToCache(uri);
-                        if (cachedPath != null) {
-                            editorIntent.putExtra("image_path", cachedPath);
-                        } else {
-                            Toast.makeText(this, "无法读取图片文件", Toast.LENGTH_SHORT).show();
-                            return;
-                        }
-                    }
+                    // 直接传递URI，编辑页通过文件描述符解码，不查询路径也不复制文件
+                    ImageSource.fromUri(this, uri).putTo(editorIntent);
                 } else {
                     Toast.makeText(this, "无法获取图片", Toast.LENGTH_SHORT).show();
                     return;
                 }
             } else if (requestCode == REQUEST_CAMERA) {
-                editorIntent.putExtra("image_path", mCameraImagePath);
+                ImageSource.fromFile(mCameraImagePath).putTo(editorIntent);
             }
             startActivity(editorIntent);
         } else if (resultCode == RESULT_CANCELED) {
@@ -169,46 +165,6 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
-    // 通过URI获取真实路径
-    private String getRealPathFromURI(Uri contentUri) {
-        String[] proj = {MediaStore.Images.Media.DATA};
-        Cursor cursor = getContentResolver().query(contentUri, proj, null, null, null);
-        if (cursor != null) {
-            int column_index = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.DATA);
-            cursor.moveToFirst();
-            String path = cursor.getString(column_index);
-            cursor.close();
-            return path;
-        }
-        return null;
-    }
-
-    // 将URI指向的文件复制到缓存目录
-    private String copyFileToCache(Uri uri) {
-        try {
-            InputStream inputStream = getContentResolver().openInputStream(uri);
-            if (inputStream == null) return null;
-
-            File cacheDir = getCacheDir();
-            String fileName = "temp_image_" + System.currentTimeMillis() + ".jpg";
-            File outputFile = new File(cacheDir, fileName);
-
-            FileOutputStream outputStream = new FileOutputStream(outputFile);
-            byte[] buffer = new byte[4096];
-            int bytesRead;
-            while ((bytesRead = inputStream.read(buffer)) != -1) {
-                outputStream.write(buffer, 0, bytesRead);
-            }
-            outputStream.close();
-            inputStream.close();
-
-            return outputFile.getAbsolutePath();
-        } catch (IOException e) {
-            e.printStackTrace();
-            return null;
-        }
-    }
-
     @Override
     public void onRequestPermissionsResult(int requestCode, String[] permissions, int[] grantResults) {
         super.onRequestPermissionsResult(requestCode, permissions, grantResults);
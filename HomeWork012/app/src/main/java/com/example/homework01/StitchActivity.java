@@ -5,35 +5,64 @@ import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
 import android.Manifest;
+import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
 import android.net.Uri;
 import android.os.Bundle;
-import android.provider.MediaStore;
+import android.util.Log;
 import android.widget.GridLayout;
 import android.widget.ImageView;
 import android.widget.RadioButton;
 import android.widget.RadioGroup;
 import android.widget.Toast;
 
+import com.example.homework01.edit.ImageSessionStore;
+import com.example.homework01.geometry.Orientation;
+import com.example.homework01.stitch.OverlapDetector;
+import com.example.homework01.stitch.PngStripWriter;
+import com.example.homework01.stitch.StitchLayout;
+import com.example.homework01.stitch.StripStitcher;
+import com.example.homework01.utils.BitmapPool;
 import com.example.homework01.utils.BitmapUtils;
-import com.example.homework01.utils.FileUtils;
+import com.example.homework01.utils.ImageSource;
+import com.example.homework01.utils.PerfTracer;
+import com.example.homework01.utils.RegionRowReader;
+import com.example.homework01.utils.TempFileCache;
+import com.example.homework01.utils.ThumbnailLoader;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class StitchActivity extends AppCompatActivity {
     private static final int REQUEST_SELECT_IMAGES = 201;
     private static final int MAX_IMAGES = 4;
+    // 选择列表中缩略图的边长
+    private static final int THUMBNAIL_SIZE = 200;
+    // 各拼接模式的耗时统计名称，下标与StitchLayout的模式常量对应
+    private static final String[] STITCH_SPANS = {"stitch.horizontal", "stitch.vertical", "stitch.grid"};
+    private static final String TAG = "StitchActivity";
+    // 参与重叠检测的单张图片最大像素数，普通截图远小于这个值
+    private static final long MAX_OVERLAP_PIXELS = 1440L * 3200;
+    // 流式拼接在单独的后台线程上依次执行
+    private static final ExecutorService sStitchExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Stitch");
+        thread.setDaemon(true);
+        return thread;
+    });
     
     private GridLayout mImageGrid;
     private RadioGroup mStitchModeGroup;
-    private List<String> mSelectedImages = new ArrayList<>();
+    private List<ImageSource> mSelectedImages = new ArrayList<>();
     private List<ImageView> mImageViews = new ArrayList<>();
 
     @Override
@@ -45,6 +74,16 @@ public class StitchActivity extends AppCompatActivity {
         setupClickListeners();
     }
     
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // 页面关闭后不再需要的缩略图停止加载
+        ThumbnailLoader loader = ThumbnailLoader.getInstance(this);
+        for (ImageView imageView : mImageViews) {
+            loader.cancel(imageView);
+        }
+    }
+    
     private void initViews() {
         mImageGrid = findViewById(R.id.image_grid);
         mStitchModeGroup = findViewById(R.id.stitch_mode_group);
@@ -114,13 +153,13 @@ public class StitchActivity extends AppCompatActivity {
                 
                 for (int i = 0; i < imagesToAdd; i++) {
                     Uri imageUri = data.getClipData().getItemAt(i).getUri();
-                    mSelectedImages.add(imageUri.toString());
+                    mSelectedImages.add(ImageSource.fromUri(this, imageUri));
                 }
             } else if (data.getData() != null) {
                 // 单张图片选择
                 if (mSelectedImages.size() < MAX_IMAGES) {
                     Uri imageUri = data.getData();
-                    mSelectedImages.add(imageUri.toString());
+                    mSelectedImages.add(ImageSource.fromUri(this, imageUri));
                 }
             }
             
@@ -141,42 +180,17 @@ public class StitchActivity extends AppCompatActivity {
     }
     
     private void updateImageGrid() {
-        // 清空所有图片
-        for (ImageView imageView : mImageViews) {
-            imageView.setImageDrawable(null);
-            imageView.setBackgroundResource(R.drawable.btn_selector);
-        }
-        
-        // 显示已选择的图片
-        for (int i = 0; i < mSelectedImages.size(); i++) {
-            if (i < mImageViews.size()) {
-                String imagePath = mSelectedImages.get(i);
-                if (imagePath.startsWith("content://")) {
-                    // URI格式
-                    try {
-                        Bitmap bitmap = MediaStore.Images.Media.getBitmap(this.getContentResolver(), Uri.parse(imagePath));
-                        // 缩略图显示
-                        Bitmap thumb = Bitmap.createScaledBitmap(bitmap, 200, 200, true);
-                        mImageViews.get(i).setImageBitmap(thumb);
-                        mImageViews.get(i).setBackground(null);
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    } catch (OutOfMemoryError e) {
-                        Toast.makeText(this, "内存不足，无法加载图片", Toast.LENGTH_SHORT).show();
-                    }
-                } else {
-                    // 文件路径格式
-                    try {
-                        Bitmap bitmap = BitmapFactory.decodeFile(imagePath);
-                        if (bitmap != null) {
-                            Bitmap thumb = Bitmap.createScaledBitmap(bitmap, 200, 200, true);
-                            mImageViews.get(i).setImageBitmap(thumb);
-                            mImageViews.get(i).setBackground(null);
-                        }
-                    } catch (OutOfMemoryError e) {
-                        Toast.makeText(this, "内存不足，无法加载图片", Toast.LENGTH_SHORT).show();
-                    }
-                }
+        ThumbnailLoader loader = ThumbnailLoader.getInstance(this);
+        for (int i = 0; i < mImageViews.size(); i++) {
+            ImageView imageView = mImageViews.get(i);
+            if (i < mSelectedImages.size()) {
+                // 异步加载缩略图，已经加载过的直接从缓存显示，不会重新解码
+                imageView.setBackground(null);
+                loader.load(mSelectedImages.get(i), THUMBNAIL_SIZE, imageView);
+            } else {
+                loader.cancel(imageView);
+                imageView.setImageDrawable(null);
+                imageView.setBackgroundResource(R.drawable.btn_selector);
             }
         }
     }
@@ -191,279 +205,241 @@ public class StitchActivity extends AppCompatActivity {
         int selectedModeId = mStitchModeGroup.getCheckedRadioButtonId();
         int stitchMode;
         if (selectedModeId == R.id.rb_horizontal) {
-            stitchMode = 0; // 水平拼接
+            stitchMode = StitchLayout.MODE_HORIZONTAL;
         } else if (selectedModeId == R.id.rb_vertical) {
-            stitchMode = 1; // 垂直拼接
+            stitchMode = StitchLayout.MODE_VERTICAL;
         } else {
-            stitchMode = 2; // 网格拼接 (2x2)
+            stitchMode = StitchLayout.MODE_GRID; // 网格拼接 (2x2)
         }
         
-        // 加载所有图片
-        List<Bitmap> bitmaps = new ArrayList<>();
-        for (String imagePath : mSelectedImages) {
-            try {
-                Bitmap bitmap = null;
-                if (imagePath.startsWith("content://")) {
-                    try {
-                        bitmap = MediaStore.Images.Media.getBitmap(this.getContentResolver(), Uri.parse(imagePath));
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        continue;
-                    }
-                } else {
-                    bitmap = BitmapFactory.decodeFile(imagePath);
-                }
-                
-                if (bitmap != null) {
-                    // 使用采样加载减小内存占用
-                    // 如果是文件路径，使用采样加载
-                    if (!imagePath.startsWith("content://")) {
-                        bitmap = BitmapUtils.decodeSampledBitmapFromFile(imagePath, 512, 512);
-                    } else {
-                        // 对于URI，先缩放到合适大小
-                        bitmap = Bitmap.createScaledBitmap(bitmap, 512, 512, true);
-                    }
-                    bitmaps.add(bitmap);
-                }
-            } catch (OutOfMemoryError e) {
-                // 释放已加载的图片
-                for (Bitmap b : bitmaps) {
-                    if (b != null && !b.isRecycled()) {
-                        b.recycle();
-                    }
-                }
-                bitmaps.clear();
-                Toast.makeText(this, "内存不足，无法完成拼接", Toast.LENGTH_SHORT).show();
-                System.gc(); // 提示垃圾回收
-                return;
-            }
-        }
-        
-        if (bitmaps.isEmpty()) {
-            Toast.makeText(this, "无法加载任何图片", Toast.LENGTH_SHORT).show();
+        if (stitchMode == StitchLayout.MODE_VERTICAL) {
+            // 长图按原尺寸流式拼接，不受整张Bitmap的内存上限限制
+            stitchVerticallyStreaming(new ArrayList<>(mSelectedImages));
             return;
         }
         
         // 执行拼接
-        Bitmap stitchedBitmap = null;
+        Bitmap stitchedBitmap;
         try {
-            stitchedBitmap = performStitch(bitmaps, stitchMode);
+            stitchedBitmap = performStitch(mSelectedImages, stitchMode);
         } catch (OutOfMemoryError e) {
-            // 释放所有位图
-            for (Bitmap bitmap : bitmaps) {
-                if (bitmap != null && !bitmap.isRecycled()) {
-                    bitmap.recycle();
-                }
-            }
-            bitmaps.clear();
             Toast.makeText(this, "内存不足，无法完成拼接", Toast.LENGTH_SHORT).show();
-            System.gc(); // 提示垃圾回收
+            BitmapPool.getInstance().clear(); // 清空复用池释放内存
             return;
         }
         
-        // 释放原始图片内存
-        for (Bitmap bitmap : bitmaps) {
-            if (bitmap != null && !bitmap.isRecycled()) {
-                bitmap.recycle();
-            }
-        }
-        
         if (stitchedBitmap != null) {
-            // 保存拼接后的图片
-            File stitchedFile = FileUtils.saveTempBitmap(this, stitchedBitmap);
+            // 拼接结果放进会话直接交给编辑页，不再写临时文件
+            String sessionId = ImageSessionStore.getInstance(this).create(stitchedBitmap);
+            Toast.makeText(this, "图片拼接完成", Toast.LENGTH_SHORT).show();
             
-            if (stitchedFile != null) {
-                Toast.makeText(this, "图片拼接完成", Toast.LENGTH_SHORT).show();
-                
-                // 跳转到编辑界面
-                Intent editorIntent = new Intent(this, EditorActivity.class);
-                editorIntent.putExtra("image_path", stitchedFile.getAbsolutePath());
-                startActivity(editorIntent);
-            } else {
-                Toast.makeText(this, "保存拼接图片失败", Toast.LENGTH_SHORT).show();
-            }
-            
-            // 释放拼接后的图片内存
-            if (stitchedBitmap != null && !stitchedBitmap.isRecycled()) {
-                stitchedBitmap.recycle();
-            }
+            // 跳转到编辑界面
+            Intent editorIntent = new Intent(this, EditorActivity.class);
+            editorIntent.putExtra(ImageSessionStore.EXTRA_SESSION_ID, sessionId);
+            startActivity(editorIntent);
         } else {
             Toast.makeText(this, "图片拼接失败", Toast.LENGTH_SHORT).show();
         }
     }
     
-    private Bitmap performStitch(List<Bitmap> bitmaps, int mode) throws OutOfMemoryError {
-        if (bitmaps.isEmpty()) return null;
-        
+    /**
+     * 先只读取每张图片的尺寸计算布局，再逐张按目标矩形的大小直接解码并绘制，
+     * 同一时刻只有结果和一张已缩小的图片在内存中，峰值内存由结果尺寸决定
+     */
+    private Bitmap performStitch(List<ImageSource> sources, int mode) throws OutOfMemoryError {
+        ProbedImages images = ProbedImages.probe(sources);
+        if (images.isEmpty()) return null;
+        String span = STITCH_SPANS[mode];
+        long token = PerfTracer.begin(span);
         try {
-            switch (mode) {
-                case 0: // 水平拼接
-                    return stitchHorizontally(bitmaps);
-                case 1: // 垂直拼接
-                    return stitchVertically(bitmaps);
-                case 2: // 网格拼接 (2x2)
-                    return stitchGrid(bitmaps);
-                default:
-                    return null;
-            }
-        } catch (OutOfMemoryError e) {
-            throw e;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
+            StitchLayout layout = StitchLayout.compute(mode, images.widths, images.heights);
+            return drawLayout(images.sources, layout);
+        } finally {
+            PerfTracer.end(span, token);
         }
     }
     
-    private Bitmap stitchHorizontally(List<Bitmap> bitmaps) throws OutOfMemoryError {
-        // 计算总宽度和最大高度
-        int totalWidth = 0;
-        int maxHeight = 0;
-        
-        for (Bitmap bitmap : bitmaps) {
-            totalWidth += bitmap.getWidth();
-            maxHeight = Math.max(maxHeight, bitmap.getHeight());
-        }
-        
-        // 限制最大尺寸以防止内存溢出
-        if (totalWidth > 4096 || maxHeight > 4096) {
-            float scale = Math.min(4096f / totalWidth, 4096f / maxHeight);
-            totalWidth = (int)(totalWidth * scale);
-            maxHeight = (int)(maxHeight * scale);
-        }
-        
-        // 进一步限制尺寸以确保不会导致内存问题
-        if (totalWidth * maxHeight > 2048 * 2048) {
-            float scale = (float) Math.sqrt((2048.0 * 2048.0) / (totalWidth * maxHeight));
-            totalWidth = (int)(totalWidth * scale);
-            maxHeight = (int)(maxHeight * scale);
-        }
-        
-        // 创建结果图片
-        Bitmap result = Bitmap.createBitmap(totalWidth, maxHeight, Bitmap.Config.RGB_565); // 使用RGB_565减少内存占用
-        Canvas canvas = new Canvas(result);
-        
-        // 绘制每张图片
-        int currentX = 0;
-        for (Bitmap bitmap : bitmaps) {
-            if (bitmap.isRecycled()) continue;
-            // 居中绘制
-            int y = (maxHeight - bitmap.getHeight()) / 2;
-            canvas.drawBitmap(bitmap, currentX, y, null);
-            currentX += bitmap.getWidth();
+    // 在后台线程流式拼接，完成后在主线程打开编辑页
+    private void stitchVerticallyStreaming(List<ImageSource> sources) {
+        Context appContext = getApplicationContext();
+        Toast.makeText(this, "正在拼接长图...", Toast.LENGTH_SHORT).show();
+        sStitchExecutor.execute(() -> {
+            File file = null;
+            try {
+                file = streamVertical(appContext, sources);
+            } catch (IOException | RuntimeException | OutOfMemoryError e) {
+                Log.e(TAG, "streaming stitch failed", e);
+            }
+            File result = file;
+            runOnUiThread(() -> onStreamStitched(result));
+        });
+    }
+    
+    private void onStreamStitched(File file) {
+        if (isDestroyed()) return;
+        if (file == null) {
+            Toast.makeText(this, "图片拼接失败", Toast.LENGTH_SHORT).show();
+            return;
         }
-        
-        return result;
+        Toast.makeText(this, "图片拼接完成", Toast.LENGTH_SHORT).show();
+        Intent editorIntent = new Intent(this, EditorActivity.class);
+        ImageSource.fromFile(file.getAbsolutePath()).putTo(editorIntent);
+        startActivity(editorIntent);
     }
     
-    private Bitmap stitchVertically(List<Bitmap> bitmaps) throws OutOfMemoryError {
-        // 计算总高度和最大宽度
-        int totalHeight = 0;
-        int maxWidth = 0;
-        
-        for (Bitmap bitmap : bitmaps) {
-            totalHeight += bitmap.getHeight();
-            maxWidth = Math.max(maxWidth, bitmap.getWidth());
+    /**
+     * 垂直拼接成原尺寸的PNG临时文件：先去掉相邻截图间重复的内容和顶栏底栏，
+     * 再按条带从每张图片区域解码需要的行，合成后直接交给按行编码的PNG输出，
+     * 内存只有一个条带和一次区域解码的结果，1080x40000的长图也不需要整张Bitmap
+     */
+    private static File streamVertical(Context context, List<ImageSource> sources) throws IOException {
+        ProbedImages images = ProbedImages.probe(sources);
+        if (images.isEmpty()) return null;
+        long token = PerfTracer.begin(STITCH_SPANS[StitchLayout.MODE_VERTICAL]);
+        try {
+            int[][] crops = detectOverlaps(images);
+            StitchLayout layout = StitchLayout.verticalFullSize(images.widths, images.heights, crops[0], crops[1]);
+            StripStitcher stitcher = new StripStitcher(layout, StripStitcher.DEFAULT_STRIP_HEIGHT);
+            RegionRowSource rows = new RegionRowSource(images);
+            return TempFileCache.getInstance(context).write("STITCH_", ".png", os -> {
+                try (PngStripWriter writer = new PngStripWriter(os, layout.getWidth(), layout.getHeight())) {
+                    stitcher.stitch(rows, writer);
+                    writer.finish();
+                }
+            });
+        } finally {
+            PerfTracer.end(STITCH_SPANS[StitchLayout.MODE_VERTICAL], token);
         }
-        
-        // 限制最大尺寸以防止内存溢出
-        if (maxWidth > 4096 || totalHeight > 4096) {
-            float scale = Math.min(4096f / maxWidth, 4096f / totalHeight);
-            maxWidth = (int)(maxWidth * scale);
-            totalHeight = (int)(totalHeight * scale);
+    }
+    
+    /**
+     * 相邻两张宽度相同的图片做重叠检测，返回每张图片顶部和底部要去掉的行数{cropTops, cropBottoms}。
+     * 同一时刻只有相邻两张图的像素在内存中，过大或解码失败的图片不检测，按原样拼接
+     */
+    private static int[][] detectOverlaps(ProbedImages images) {
+        int count = images.sources.size();
+        int[] cropTops = new int[count];
+        int[] cropBottoms = new int[count];
+        long token = PerfTracer.begin("stitch.overlap");
+        try {
+            int[] previous = null;
+            for (int i = 0; i < count; i++) {
+                int[] current = null;
+                if ((long) images.widths[i] * images.heights[i] <= MAX_OVERLAP_PIXELS) {
+                    current = decodePixels(images.sources.get(i), images.widths[i], images.heights[i]);
+                }
+                if (previous != null && current != null && images.widths[i] == images.widths[i - 1]) {
+                    OverlapDetector.Result result = OverlapDetector.detect(previous, images.heights[i - 1],
+                            current, images.heights[i], images.widths[i]);
+                    // 中间的图片可能同时去掉顶部和底部，两者加起来不能超过图片高度
+                    cropBottoms[i - 1] = Math.min(result.getBottomCrop(), images.heights[i - 1] - cropTops[i - 1]);
+                    cropTops[i] = result.getTopCrop();
+                }
+                previous = current;
+            }
+        } finally {
+            PerfTracer.end("stitch.overlap", token);
         }
-        
-        // 进一步限制尺寸以确保不会导致内存问题
-        if (maxWidth * totalHeight > 2048 * 2048) {
-            float scale = (float) Math.sqrt((2048.0 * 2048.0) / (maxWidth * totalHeight));
-            maxWidth = (int)(maxWidth * scale);
-            totalHeight = (int)(totalHeight * scale);
+        return new int[][]{cropTops, cropBottoms};
+    }
+    
+    // 按原尺寸解码成转正后的像素数组，失败时返回null
+    private static int[] decodePixels(ImageSource source, int width, int height) {
+        Bitmap bitmap = BitmapUtils.decodeScaledBitmap(source, width, height, BitmapUtils.ScaleMode.SPEED);
+        if (bitmap == null) return null;
+        try {
+            if (bitmap.getWidth() != width || bitmap.getHeight() != height) return null;
+            int[] pixels = new int[width * height];
+            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+            return pixels;
+        } catch (OutOfMemoryError e) {
+            Log.w(TAG, "not enough memory for overlap detection", e);
+            return null;
+        } finally {
+            BitmapPool.getInstance().put(bitmap);
         }
-        
-        // 创建结果图片
-        Bitmap result = Bitmap.createBitmap(maxWidth, totalHeight, Bitmap.Config.RGB_565); // 使用RGB_565减少内存占用
+    }
+    
+    // 按布局把每张图片解码到目标矩形的大小后绘制，画完立即归还到复用池
+    private Bitmap drawLayout(List<ImageSource> sources, StitchLayout layout) throws OutOfMemoryError {
+        Bitmap result = BitmapPool.getInstance().get(layout.getWidth(), layout.getHeight(), Bitmap.Config.RGB_565); // 使用RGB_565减少内存占用
         Canvas canvas = new Canvas(result);
-        
-        // 绘制每张图片
-        int currentY = 0;
-        for (Bitmap bitmap : bitmaps) {
-            if (bitmap.isRecycled()) continue;
-            // 居中绘制
-            int x = (maxWidth - bitmap.getWidth()) / 2;
-            canvas.drawBitmap(bitmap, x, currentY, null);
-            currentY += bitmap.getHeight();
+        Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        Rect dst = new Rect();
+        for (int i = 0; i < layout.getCount(); i++) {
+            dst.set(layout.getLeft(i), layout.getTop(i), layout.getRight(i), layout.getBottom(i));
+            if (dst.isEmpty()) continue;
+            Bitmap bitmap = BitmapUtils.decodeScaledBitmap(sources.get(i), dst.width(), dst.height(),
+                    BitmapUtils.ScaleMode.SPEED);
+            if (bitmap == null) continue;
+            canvas.drawBitmap(bitmap, null, dst, paint);
+            BitmapPool.getInstance().put(bitmap);
         }
-        
         return result;
     }
     
-    private Bitmap stitchGrid(List<Bitmap> bitmaps) throws OutOfMemoryError {
-        // 网格拼接 (2x2)
-        int size = Math.min(bitmaps.size(), 4);
-        int rows = (size > 2) ? 2 : 1;
-        int cols = (size == 1) ? 1 : (size <= 2) ? 2 : 2;
-        
-        // 计算单元格大小
-        int cellWidth = 0;
-        int cellHeight = 0;
-        
-        for (Bitmap bitmap : bitmaps) {
-            if (bitmap.isRecycled()) continue;
-            cellWidth = Math.max(cellWidth, bitmap.getWidth());
-            cellHeight = Math.max(cellHeight, bitmap.getHeight());
+    /**
+     * 能读取到尺寸的图片及其EXIF方向，宽高是转正后的尺寸
+     */
+    private static final class ProbedImages {
+        final List<ImageSource> sources = new ArrayList<>();
+        final List<Orientation> orientations = new ArrayList<>();
+        int[] widths;
+        int[] heights;
+        
+        // 跳过读取不到尺寸的图片
+        static ProbedImages probe(List<ImageSource> sources) {
+            ProbedImages images = new ProbedImages();
+            List<int[]> sizes = new ArrayList<>();
+            for (ImageSource source : sources) {
+                BitmapFactory.Options bounds = source.decodeBounds();
+                if (bounds.outWidth > 0 && bounds.outHeight > 0) {
+                    // 按EXIF转正后的宽高排版
+                    Orientation orientation = source.readOrientation();
+                    images.sources.add(source);
+                    images.orientations.add(orientation);
+                    sizes.add(new int[]{orientation.getOutputWidth(bounds.outWidth, bounds.outHeight),
+                            orientation.getOutputHeight(bounds.outWidth, bounds.outHeight)});
+                }
+            }
+            images.widths = new int[sizes.size()];
+            images.heights = new int[sizes.size()];
+            for (int i = 0; i < sizes.size(); i++) {
+                images.widths[i] = sizes.get(i)[0];
+                images.heights[i] = sizes.get(i)[1];
+            }
+            return images;
         }
         
-        // 调整单元格大小以适应屏幕并防止内存溢出
-        cellWidth = Math.min(cellWidth, 512);
-        cellHeight = Math.min(cellHeight, 512);
-        
-        // 创建结果图片
-        int resultWidth = cellWidth * cols;
-        int resultHeight = cellHeight * rows;
-        
-        // 限制最大尺寸
-        if (resultWidth > 2048) {
-            float scale = 2048f / resultWidth;
-            resultWidth = (int)(resultWidth * scale);
-            resultHeight = (int)(resultHeight * scale);
+        boolean isEmpty() {
+            return sources.isEmpty();
         }
-        
-        if (resultHeight > 2048) {
-            float scale = 2048f / resultHeight;
-            resultWidth = (int)(resultWidth * scale);
-            resultHeight = (int)(resultHeight * scale);
+    }
+    
+    /**
+     * 按原尺寸从图片中区域解码条带需要的行，每张图片的解码器在第一次读取时打开，读完后释放
+     */
+    private static final class RegionRowSource implements StripStitcher.RowSource {
+        private final ProbedImages mImages;
+        private final RegionRowReader[] mReaders;
+        
+        RegionRowSource(ProbedImages images) {
+            mImages = images;
+            mReaders = new RegionRowReader[images.sources.size()];
+            for (int i = 0; i < mReaders.length; i++) {
+                mReaders[i] = new RegionRowReader(images.sources.get(i), images.orientations.get(i),
+                        images.widths[i], images.heights[i]);
+            }
         }
         
-        // 额外检查防止内存溢出
-        if (resultWidth * resultHeight > 2048 * 2048) {
-            float scale = (float) Math.sqrt((2048.0 * 2048.0) / (resultWidth * resultHeight));
-            resultWidth = (int)(resultWidth * scale);
-            resultHeight = (int)(resultHeight * scale);
+        @Override
+        public void readRows(int index, int top, int rows, int[] dst, int offset, int stride) throws IOException {
+            mReaders[index].readRows(0, top, mImages.widths[index], rows, dst, offset, stride);
         }
         
-        Bitmap result = Bitmap.createBitmap(resultWidth, resultHeight, Bitmap.Config.RGB_565); // 使用RGB_565减少内存占用
-        Canvas canvas = new Canvas(result);
-        
-        // 绘制每张图片
-        for (int i = 0; i < size; i++) {
-            Bitmap bitmap = bitmaps.get(i);
-            if (bitmap.isRecycled()) continue;
-            int row = i / cols;
-            int col = i % cols;
-            
-            // 缩放图片以适应单元格
-            Bitmap scaledBitmap = Bitmap.createScaledBitmap(bitmap, resultWidth/cols, resultHeight/rows, true);
-            
-            // 绘制到指定位置
-            int x = col * (resultWidth/cols);
-            int y = row * (resultHeight/rows);
-            canvas.drawBitmap(scaledBitmap, x, y, null);
-            
-            // 释放缩放后的图片内存
-            if (scaledBitmap != bitmap && !scaledBitmap.isRecycled()) {
-                scaledBitmap.recycle();
-            }
+        @Override
+        public void release(int index) {
+            mReaders[index].release();
         }
-        
-        return result;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,100 @@
+package com.example.homework01.edit;
+
+import com.example.homework01.geometry.Orientation;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 非破坏性编辑记录：有序的编辑操作列表，渲染时从原图依次执行。
+ * 操作本身不可变，复制列表即可得到一个历史快照
+ */
+public class EditGraph implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final ArrayList<EditOp> mOps = new ArrayList<>();
+
+    public EditGraph() {
+    }
+
+    public EditGraph(List<EditOp> ops) {
+        mOps.addAll(ops);
+    }
+
+    // 在末尾追加操作
+    public void add(EditOp op) {
+        mOps.add(op);
+    }
+
+    /**
+     * 替换最后一个同类型的操作，不存在时追加到末尾。
+     * 用于滤镜、调节这类只保留最新参数的操作
+     */
+    public void replaceOrAppend(EditOp op) {
+        for (int i = mOps.size() - 1; i >= 0; i--) {
+            if (mOps.get(i).getClass() == op.getClass()) {
+                mOps.set(i, op);
+                return;
+            }
+        }
+        mOps.add(op);
+    }
+
+    /**
+     * 追加旋转或翻转；紧跟在另一个旋转翻转之后时合并成一个操作，合并后为原样时直接移除。
+     * 连续点击多次旋转也只需要一次像素重排
+     */
+    public void addTransform(EditOp.TransformOp op) {
+        int last = mOps.size() - 1;
+        if (last < 0 || !(mOps.get(last) instanceof EditOp.TransformOp)) {
+            mOps.add(op);
+            return;
+        }
+        Orientation combined = ((EditOp.TransformOp) mOps.get(last)).getOrientation().then(op.getOrientation());
+        if (combined.isIdentity()) {
+            mOps.remove(last);
+        } else {
+            mOps.set(last, new EditOp.OrientationOp(combined));
+        }
+    }
+
+    /**
+     * 裁剪框是在原图上选择的，所以裁剪总是第一个操作
+     */
+    public void setCrop(EditOp.CropOp op) {
+        if (!mOps.isEmpty() && mOps.get(0) instanceof EditOp.CropOp) {
+            mOps.set(0, op);
+        } else {
+            mOps.add(0, op);
+        }
+    }
+
+    // 查找最后一个指定类型的操作
+    public <T extends EditOp> T findLast(Class<T> type) {
+        for (int i = mOps.size() - 1; i >= 0; i--) {
+            if (type.isInstance(mOps.get(i))) {
+                return type.cast(mOps.get(i));
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return mOps.size();
+    }
+
+    public boolean isEmpty() {
+        return mOps.isEmpty();
+    }
+
+    // 当前操作列表的只读快照，可以安全地交给后台线程
+    public List<EditOp> getOps() {
+        return Collections.unmodifiableList(new ArrayList<>(mOps));
+    }
+
+    public EditGraph copy() {
+        return new EditGraph(mOps);
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.homework01.edit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 撤销/重做历史。每一步只保存编辑记录的快照（只有几十字节），
+ * 另外可以附带与上一步预览之间的压缩像素差异，撤销时直接异或回去，不需要重新渲染。
+ * 占用超过字节预算时先丢弃最早的像素差异，仍然超出再丢弃最早的步骤
+ */
+public class EditHistory {
+    // 估算一个编辑操作快照占用的字节数
+    private static final int OP_BYTES = 64;
+
+    /**
+     * 撤销或重做的结果：要切换到的编辑记录，以及从当前预览得到目标预览的像素差异（可能为空）
+     */
+    public static class Step {
+        public final EditGraph graph;
+        public final PixelDelta delta;
+
+        Step(EditGraph graph, PixelDelta delta) {
+            this.graph = graph;
+            this.delta = delta;
+        }
+    }
+
+    private static class State {
+        final EditGraph graph;
+        // 从上一步的预览到这一步的预览的差异
+        PixelDelta delta;
+
+        State(EditGraph graph) {
+            this.graph = graph;
+        }
+    }
+
+    private final long mMaxBytes;
+    private final List<State> mStates = new ArrayList<>();
+    private int mCursor = -1;
+    private long mUsedBytes;
+    private long mEvictedBytes;
+    private int mEvictedSteps;
+
+    public EditHistory(long maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * 记录新的一步，会丢弃当前位置之后的所有重做步骤
+     */
+    public synchronized void push(EditGraph graph) {
+        while (mStates.size() > mCursor + 1) {
+            release(mStates.remove(mStates.size() - 1));
+        }
+        State state = new State(graph.copy());
+        mStates.add(state);
+        mUsedBytes += (long) state.graph.size() * OP_BYTES;
+        mCursor++;
+        trim();
+    }
+
+    /**
+     * 返回graph这一步之前一步的编辑记录，graph不在历史中或没有前一步时返回null
+     */
+    public synchronized EditGraph previousOf(EditGraph graph) {
+        int index = indexOf(graph);
+        return index > 0 ? mStates.get(index - 1).graph : null;
+    }
+
+    /**
+     * 为graph这一步附加像素差异，这一步已经不在历史中时忽略
+     */
+    public synchronized void attachDelta(EditGraph graph, PixelDelta delta) {
+        int index = indexOf(graph);
+        if (index <= 0 || mStates.get(index).delta != null) return;
+        mStates.get(index).delta = delta;
+        mUsedBytes += delta.getByteSize();
+        trim();
+    }
+
+    // 当前这一步的编辑记录
+    public synchronized EditGraph current() {
+        return mCursor >= 0 ? mStates.get(mCursor).graph : null;
+    }
+
+    public synchronized boolean canUndo() {
+        return mCursor > 0;
+    }
+
+    public synchronized boolean canRedo() {
+        return mCursor < mStates.size() - 1;
+    }
+
+    public synchronized Step undo() {
+        if (!canUndo()) return null;
+        PixelDelta delta = mStates.get(mCursor).delta;
+        mCursor--;
+        return new Step(mStates.get(mCursor).graph, delta);
+    }
+
+    public synchronized Step redo() {
+        if (!canRedo()) return null;
+        mCursor++;
+        State state = mStates.get(mCursor);
+        return new Step(state.graph, state.delta);
+    }
+
+    public synchronized long getUsedBytes() {
+        return mUsedBytes;
+    }
+
+    public synchronized long getEvictedBytes() {
+        return mEvictedBytes;
+    }
+
+    public synchronized int getEvictedSteps() {
+        return mEvictedSteps;
+    }
+
+    private int indexOf(EditGraph graph) {
+        for (int i = mStates.size() - 1; i >= 0; i--) {
+            if (mStates.get(i).graph == graph) return i;
+        }
+        return -1;
+    }
+
+    // 超出预算时从最早的步骤开始淘汰
+    private void trim() {
+        for (int i = 0; i < mStates.size() && mUsedBytes > mMaxBytes; i++) {
+            State state = mStates.get(i);
+            if (state.delta != null) {
+                mUsedBytes -= state.delta.getByteSize();
+                mEvictedBytes += state.delta.getByteSize();
+                state.delta = null;
+            }
+        }
+        // 仍然超出说明差异已经全部丢弃，剩下的第一步不会带着指向已删除步骤的差异；当前步骤永远保留
+        while (mUsedBytes > mMaxBytes && mCursor > 0) {
+            State state = mStates.remove(0);
+            mEvictedBytes += (long) state.graph.size() * OP_BYTES;
+            release(state);
+            mEvictedSteps++;
+            mCursor--;
+        }
+    }
+
+    private void release(State state) {
+        mUsedBytes -= (long) state.graph.size() * OP_BYTES;
+        if (state.delta != null) {
+            mUsedBytes -= state.delta.getByteSize();
+        }
+    }
+}
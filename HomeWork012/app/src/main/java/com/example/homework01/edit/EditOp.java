@@ -0,0 +1,280 @@
+package com.example.homework01.edit;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import com.example.homework01.filter.ColorChain;
+import com.example.homework01.filter.ColorMatrix4x5;
+import com.example.homework01.filter.PixelKernels;
+import com.example.homework01.geometry.Orientation;
+import com.example.homework01.utils.BitmapUtils;
+
+import java.io.Serializable;
+
+/**
+ * 可序列化的编辑操作。操作对象不可变，参数与分辨率无关，
+ * 同一个操作可以作用在代理图上预览，也可以作用在原图上导出
+ */
+public abstract class EditOp implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 对输入执行操作并返回新的Bitmap，不修改也不回收输入
+     */
+    public abstract Bitmap apply(Bitmap input);
+
+    /**
+     * 颜色操作：由一串颜色运算组成，连续的颜色操作会被追加到同一个ColorChain里一遍处理
+     */
+    public abstract static class ColorOp extends EditOp {
+        // 把本操作的运算按顺序追加到chain
+        public abstract void addTo(ColorChain chain);
+
+        @Override
+        public Bitmap apply(Bitmap input) {
+            ColorChain chain = new ColorChain();
+            addTo(chain);
+            return BitmapUtils.applyKernel(input, chain.compile());
+        }
+    }
+
+    /**
+     * 裁剪，坐标为相对于输入宽高的比例(0-1)
+     */
+    public static class CropOp extends EditOp {
+        private final float mLeft, mTop, mRight, mBottom;
+
+        public CropOp(float left, float top, float right, float bottom) {
+            mLeft = left;
+            mTop = top;
+            mRight = right;
+            mBottom = bottom;
+        }
+
+        // 相对于输入图宽高的裁剪比例
+        public RectF getRect() {
+            return new RectF(mLeft, mTop, mRight, mBottom);
+        }
+
+        @Override
+        public Bitmap apply(Bitmap input) {
+            int width = input.getWidth();
+            int height = input.getHeight();
+            Rect rect = new Rect(Math.round(mLeft * width), Math.round(mTop * height),
+                    Math.round(mRight * width), Math.round(mBottom * height));
+            return BitmapUtils.cropBitmap(input, rect);
+        }
+    }
+
+    /**
+     * 旋转和翻转：都是8种方向之一，连续的几个会被合并成一次像素重排
+     */
+    public abstract static class TransformOp extends EditOp {
+        public abstract Orientation getOrientation();
+
+        @Override
+        public Bitmap apply(Bitmap input) {
+            return BitmapUtils.transformBitmap(input, getOrientation());
+        }
+    }
+
+    /**
+     * 旋转，角度为顺时针方向的90度倍数
+     */
+    public static class RotateOp extends TransformOp {
+        private final int mDegrees;
+
+        public RotateOp(int degrees) {
+            // 提前检查角度，避免渲染时才发现无效
+            Orientation.rotation(degrees);
+            mDegrees = degrees;
+        }
+
+        public int getDegrees() {
+            return mDegrees;
+        }
+
+        @Override
+        public Orientation getOrientation() {
+            return Orientation.rotation(mDegrees);
+        }
+    }
+
+    /**
+     * 水平或垂直翻转
+     */
+    public static class FlipOp extends TransformOp {
+        private final boolean mHorizontal;
+
+        public FlipOp(boolean horizontal) {
+            mHorizontal = horizontal;
+        }
+
+        public boolean isHorizontal() {
+            return mHorizontal;
+        }
+
+        @Override
+        public Orientation getOrientation() {
+            return mHorizontal ? Orientation.flipHorizontal() : Orientation.flipVertical();
+        }
+    }
+
+    /**
+     * 合并后的任意方向，由EditGraph.addTransform生成
+     */
+    public static class OrientationOp extends TransformOp {
+        private final int mIndex;
+
+        public OrientationOp(Orientation orientation) {
+            mIndex = orientation.getIndex();
+        }
+
+        @Override
+        public Orientation getOrientation() {
+            return Orientation.of(mIndex);
+        }
+    }
+
+    /**
+     * 任意4x5颜色矩阵
+     */
+    public static class ColorMatrixOp extends ColorOp {
+        private final float[] mMatrix;
+
+        public ColorMatrixOp(ColorMatrix4x5 matrix) {
+            mMatrix = matrix.getArray();
+        }
+
+        public ColorMatrix4x5 getMatrix() {
+            return new ColorMatrix4x5(mMatrix);
+        }
+
+        @Override
+        public void addTo(ColorChain chain) {
+            chain.then(getMatrix());
+        }
+    }
+
+    /**
+     * 内置滤镜
+     */
+    public static class FilterOp extends ColorOp {
+        public static final int ORIGIN = 0;
+        public static final int BLACK_WHITE = 1;
+        public static final int VINTAGE = 2;
+        public static final int WARM = 3;
+        public static final int COLD = 4;
+        public static final int FRESH = 5;
+
+        private final int mFilter;
+
+        public FilterOp(int filter) {
+            mFilter = filter;
+        }
+
+        public int getFilter() {
+            return mFilter;
+        }
+
+        @Override
+        public void addTo(ColorChain chain) {
+            chain.then(getMatrix());
+        }
+
+        public ColorMatrix4x5 getMatrix() {
+            switch (mFilter) {
+                case BLACK_WHITE:
+                    return ColorMatrix4x5.blackWhite();
+                case VINTAGE:
+                    return ColorMatrix4x5.vintage();
+                case WARM:
+                    return ColorMatrix4x5.warm();
+                case COLD:
+                    return ColorMatrix4x5.cold();
+                case FRESH:
+                    return ColorMatrix4x5.fresh();
+                default:
+                    return new ColorMatrix4x5();
+            }
+        }
+    }
+
+    /**
+     * 亮度、对比度和饱和度调节
+     */
+    public static class AdjustOp extends ColorOp {
+        private final int mBrightness;
+        private final float mContrast;
+        private final float mSaturation;
+
+        public AdjustOp(int brightness, float contrast, float saturation) {
+            mBrightness = brightness;
+            mContrast = contrast;
+            mSaturation = saturation;
+        }
+
+        public int getBrightness() {
+            return mBrightness;
+        }
+
+        public float getContrast() {
+            return mContrast;
+        }
+
+        public float getSaturation() {
+            return mSaturation;
+        }
+
+        // 亮度和对比度之间保留截断，与原先分两步调节的结果相同
+        @Override
+        public void addTo(ColorChain chain) {
+            chain.then(ColorMatrix4x5.saturation(mSaturation))
+                    .then(PixelKernels.brightnessContrastOp(mBrightness, mContrast));
+        }
+    }
+
+    /**
+     * 文字，位置和字号均为相对于输入宽度的比例
+     */
+    public static class TextOp extends EditOp {
+        private final String mText;
+        private final float mX, mY;
+        private final int mColor;
+        private final float mSize;
+        private final float mRotation;
+
+        public TextOp(String text, float x, float y, int color, float size, float rotation) {
+            mText = text;
+            mX = x;
+            mY = y;
+            mColor = color;
+            mSize = size;
+            mRotation = rotation;
+        }
+
+        @Override
+        public Bitmap apply(Bitmap input) {
+            Bitmap result = input.copy(input.getConfig(), true);
+            draw(new Canvas(result), result.getWidth());
+            return result;
+        }
+
+        // 在宽度为width的画布上绘制文字，连续的文字操作可以共用一个画布
+        public void draw(Canvas canvas, int width) {
+            Paint paint = new Paint();
+            paint.setAntiAlias(true);
+            paint.setColor(mColor);
+            paint.setTextSize(mSize * width);
+
+            // 移动到文字中心点并旋转
+            canvas.save();
+            canvas.rotate(mRotation, mX * width, mY * width);
+            canvas.drawText(mText, mX * width, mY * width, paint);
+            canvas.restore();
+        }
+    }
+}
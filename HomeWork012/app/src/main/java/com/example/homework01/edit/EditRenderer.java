@@ -0,0 +1,142 @@
+package com.example.homework01.edit;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.CancellationSignal;
+
+import com.example.homework01.filter.ColorChain;
+import com.example.homework01.geometry.Orientation;
+import com.example.homework01.utils.BitmapPool;
+import com.example.homework01.utils.BitmapUtils;
+import com.example.homework01.utils.PerfTracer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 编辑渲染器：对原图依次执行操作列表。
+ * 连续的颜色操作合并成一遍处理，连续的文字共用一个画布；开启缓存时保存中间结果，
+ * 只修改靠后的操作时从最近的缓存继续计算，不重算前面的操作
+ */
+public class EditRenderer {
+    private final Bitmap mSource;
+    private final boolean mCacheEnabled;
+
+    // mCachedOps[0, n)执行完后的结果，n = mCachedPrefixes中的值
+    private final List<EditOp> mCachedOps = new ArrayList<>();
+    private final List<Integer> mCachedPrefixes = new ArrayList<>();
+    private final List<Bitmap> mCachedResults = new ArrayList<>();
+
+    public EditRenderer(Bitmap source, boolean cacheEnabled) {
+        mSource = source;
+        mCacheEnabled = cacheEnabled;
+    }
+
+    public Bitmap getSource() {
+        return mSource;
+    }
+
+    /**
+     * 渲染操作列表，返回的Bitmap由调用者持有，不会被缓存引用
+     */
+    public synchronized Bitmap render(List<EditOp> ops, CancellationSignal signal) {
+        int common = commonPrefix(ops);
+        dropCacheAfter(common);
+
+        // 从不超过公共前缀的最近缓存开始
+        Bitmap current = mSource;
+        int start = 0;
+        for (int i = mCachedPrefixes.size() - 1; i >= 0; i--) {
+            if (mCachedPrefixes.get(i) <= common) {
+                current = mCachedResults.get(i);
+                start = mCachedPrefixes.get(i);
+                break;
+            }
+        }
+        mCachedOps.clear();
+        mCachedOps.addAll(ops);
+
+        int index = start;
+        while (index < ops.size()) {
+            if (signal != null) {
+                signal.throwIfCanceled();
+            }
+            Bitmap next;
+            int end = index;
+            if (ops.get(index) instanceof EditOp.ColorOp) {
+                // 合并连续的颜色操作
+                ColorChain chain = new ColorChain();
+                while (end < ops.size() && ops.get(end) instanceof EditOp.ColorOp) {
+                    ((EditOp.ColorOp) ops.get(end)).addTo(chain);
+                    end++;
+                }
+                next = BitmapUtils.applyKernel(current, chain.compile(), signal);
+            } else if (ops.get(index) instanceof EditOp.TransformOp) {
+                // 连续的旋转翻转合并成一个方向，只重排一次像素
+                Orientation orientation = Orientation.IDENTITY;
+                while (end < ops.size() && ops.get(end) instanceof EditOp.TransformOp) {
+                    orientation = orientation.then(((EditOp.TransformOp) ops.get(end)).getOrientation());
+                    end++;
+                }
+                next = BitmapUtils.transformBitmap(current, orientation);
+            } else if (ops.get(index) instanceof EditOp.TextOp) {
+                // 连续的文字绘制在同一个副本上
+                long token = PerfTracer.begin("render.text");
+                next = BitmapUtils.copyBitmap(current);
+                Canvas canvas = new Canvas(next);
+                while (end < ops.size() && ops.get(end) instanceof EditOp.TextOp) {
+                    ((EditOp.TextOp) ops.get(end)).draw(canvas, next.getWidth());
+                    end++;
+                }
+                PerfTracer.end("render.text", token);
+            } else {
+                next = ops.get(index).apply(current);
+                end++;
+            }
+            if (next == current) {
+                // 操作没有产生变化时也要得到独立的Bitmap，避免与缓存共用
+                next = BitmapUtils.copyBitmap(current);
+            }
+
+            if (mCacheEnabled && end < ops.size()) {
+                mCachedPrefixes.add(end);
+                mCachedResults.add(next);
+            }
+            // 未被缓存的中间结果用完即归还到复用池
+            if (current != mSource && !mCachedResults.contains(current)) {
+                BitmapPool.getInstance().put(current);
+            }
+            current = next;
+            index = end;
+        }
+
+        if (current == mSource || mCachedResults.contains(current)) {
+            return BitmapUtils.copyBitmap(current);
+        }
+        return current;
+    }
+
+    // 释放所有缓存的中间结果
+    public synchronized void release() {
+        dropCacheAfter(0);
+        mCachedOps.clear();
+    }
+
+    private int commonPrefix(List<EditOp> ops) {
+        int n = Math.min(ops.size(), mCachedOps.size());
+        int i = 0;
+        while (i < n && ops.get(i) == mCachedOps.get(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private void dropCacheAfter(int prefix) {
+        for (int i = mCachedPrefixes.size() - 1; i >= 0; i--) {
+            if (mCachedPrefixes.get(i) > prefix) {
+                BitmapPool.getInstance().put(mCachedResults.remove(i));
+                mCachedPrefixes.remove(i);
+            }
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.homework01.edit;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import com.example.homework01.utils.OutputFormat;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 进程内的图片会话：页面之间通过会话ID直接传递Bitmap和编辑记录，不再经过临时文件编码、写盘、解码。
+ * 只有应用进入后台、进程可能被回收时才把会话写到磁盘，进程重建后按ID从磁盘恢复。
+ * 进程被杀后不再打开的会话不会被release，启动时删除长时间没有用过的会话文件
+ */
+public class ImageSessionStore implements ComponentCallbacks2 {
+    private static final String TAG = "ImageSessionStore";
+    public static final String EXTRA_SESSION_ID = "session_id";
+    private static final String DIR_NAME = "sessions";
+    private static final String GRAPH_SUFFIX = ".graph";
+    // 会话文件超过这个时间没有写入或恢复就认为对应的页面已经不会再重建
+    static final long STALE_AGE_MS = 3L * 24 * 60 * 60 * 1000;
+
+    /**
+     * 一个会话：原图和可选的编辑记录
+     */
+    public static class Session {
+        private final String mId;
+        private final Bitmap mBitmap;
+        private EditGraph mGraph;
+        // 内存中的内容是否已经写到磁盘
+        private boolean mPersisted;
+
+        Session(String id, Bitmap bitmap, EditGraph graph, boolean persisted) {
+            mId = id;
+            mBitmap = bitmap;
+            mGraph = graph;
+            mPersisted = persisted;
+        }
+
+        public String getId() {
+            return mId;
+        }
+
+        // 会话持有的原图，调用者只能读取，不能修改或回收
+        public Bitmap getBitmap() {
+            return mBitmap;
+        }
+
+        public synchronized EditGraph getGraph() {
+            return mGraph;
+        }
+
+        synchronized boolean isPersisted() {
+            return mPersisted;
+        }
+
+        public synchronized void setGraph(EditGraph graph) {
+            mGraph = graph == null ? null : graph.copy();
+            mPersisted = false;
+        }
+    }
+
+    private static ImageSessionStore sInstance;
+
+    private final File mDir;
+    private final Map<String, Session> mSessions = new HashMap<>();
+    private final ExecutorService mPersistExecutor = Executors.newSingleThreadExecutor();
+
+    public static synchronized ImageSessionStore getInstance(Context context) {
+        if (sInstance == null) {
+            Context appContext = context.getApplicationContext();
+            sInstance = new ImageSessionStore(new File(appContext.getCacheDir(), DIR_NAME));
+            appContext.registerComponentCallbacks(sInstance);
+        }
+        return sInstance;
+    }
+
+    private ImageSessionStore(File dir) {
+        mDir = dir;
+        // 刚启动时内存中还没有会话，磁盘上的都是之前的进程留下的
+        mPersistExecutor.execute(() -> deleteStaleFiles(mDir, System.currentTimeMillis()));
+    }
+
+    /**
+     * 删除dir中超过STALE_AGE_MS没有用过的会话文件，返回删除的文件数
+     */
+    static int deleteStaleFiles(File dir, long now) {
+        File[] files = dir.listFiles();
+        if (files == null) return 0;
+        int deleted = 0;
+        for (File file : files) {
+            if (file.isFile() && now - file.lastModified() > STALE_AGE_MS && file.delete()) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    // 新建会话，之后bitmap归会话所有
+    public synchronized String create(Bitmap bitmap) {
+        String id = UUID.randomUUID().toString();
+        mSessions.put(id, new Session(id, bitmap, null, false));
+        return id;
+    }
+
+    /**
+     * 按ID取得会话；内存中没有时（进程被回收后重建）从磁盘恢复，都没有时返回null
+     */
+    public synchronized Session get(String id) {
+        if (id == null) return null;
+        Session session = mSessions.get(id);
+        if (session == null) {
+            session = restore(id);
+            if (session != null) {
+                mSessions.put(id, session);
+            }
+        }
+        return session;
+    }
+
+    // 释放会话，回收Bitmap并删除磁盘上的副本
+    public void release(String id) {
+        Session session;
+        synchronized (this) {
+            session = mSessions.remove(id);
+        }
+        if (session != null) {
+            // 等待正在进行的写盘结束后再回收
+            synchronized (session) {
+                session.mBitmap.recycle();
+            }
+        }
+        new File(mDir, id + OutputFormat.temp().getExtension()).delete();
+        new File(mDir, id + GRAPH_SUFFIX).delete();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        // 进入后台后进程随时可能被回收，把还没写盘的会话保存下来
+        if (level >= TRIM_MEMORY_BACKGROUND) {
+            mPersistExecutor.execute(this::persistAll);
+        }
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    @Override
+    public void onLowMemory() {
+        mPersistExecutor.execute(this::persistAll);
+    }
+
+    private void persistAll() {
+        List<Session> pending = new ArrayList<>();
+        synchronized (this) {
+            for (Session session : mSessions.values()) {
+                if (!session.isPersisted()) {
+                    pending.add(session);
+                }
+            }
+        }
+        if (pending.isEmpty() || (!mDir.exists() && !mDir.mkdirs())) {
+            return;
+        }
+        for (Session session : pending) {
+            try {
+                persist(session);
+            } catch (IOException e) {
+                Log.w(TAG, "persist session failed: " + session.mId, e);
+            }
+        }
+    }
+
+    // 持有会话锁写盘，避免写到一半时会话被释放、Bitmap被回收
+    private void persist(Session session) throws IOException {
+        synchronized (session) {
+            if (session.mBitmap.isRecycled()) return;
+            // 会话的Bitmap不会被修改，只需写一次
+            OutputFormat format = OutputFormat.temp();
+            File imageFile = new File(mDir, session.mId + format.getExtension());
+            if (!imageFile.exists()) {
+                try (OutputStream os = new BufferedOutputStream(new FileOutputStream(imageFile))) {
+                    format.encode(session.mBitmap, os);
+                } catch (IOException e) {
+                    imageFile.delete();
+                    throw e;
+                }
+            } else {
+                // 已经写过的图片不重写，更新时间避免被当成过期文件
+                imageFile.setLastModified(System.currentTimeMillis());
+            }
+            File graphFile = new File(mDir, session.mId + GRAPH_SUFFIX);
+            if (session.mGraph == null) {
+                graphFile.delete();
+            } else {
+                try (ObjectOutputStream os = new ObjectOutputStream(new FileOutputStream(graphFile))) {
+                    os.writeObject(session.mGraph);
+                }
+            }
+            session.mPersisted = true;
+        }
+    }
+
+    private Session restore(String id) {
+        File imageFile = new File(mDir, id + OutputFormat.temp().getExtension());
+        if (!imageFile.exists()) {
+            return null;
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inMutable = false;
+        Bitmap bitmap = BitmapFactory.decodeFile(imageFile.getAbsolutePath(), options);
+        if (bitmap == null) {
+            return null;
+        }
+        // 恢复后的会话仍在使用
+        long now = System.currentTimeMillis();
+        imageFile.setLastModified(now);
+        EditGraph graph = null;
+        File graphFile = new File(mDir, id + GRAPH_SUFFIX);
+        if (graphFile.exists()) {
+            graphFile.setLastModified(now);
+            try (ObjectInputStream is = new ObjectInputStream(new FileInputStream(graphFile))) {
+                graph = (EditGraph) is.readObject();
+            } catch (IOException | ClassNotFoundException e) {
+                Log.w(TAG, "restore edit graph failed: " + id, e);
+            }
+        }
+        return new Session(id, bitmap, graph, true);
+    }
+}
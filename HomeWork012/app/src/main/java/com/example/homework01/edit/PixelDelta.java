@@ -0,0 +1,134 @@
+package com.example.homework01.edit;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 两帧像素之间的差异：只保存发生变化的矩形区域，区域内存两帧的异或值并做deflate压缩。
+ * 异或是可逆的，同一个差异既能从新帧恢复旧帧，也能从旧帧得到新帧
+ */
+public final class PixelDelta {
+    private final int mLeft, mTop, mWidth, mHeight;
+    private final byte[] mCompressed;
+
+    private PixelDelta(int left, int top, int width, int height, byte[] compressed) {
+        mLeft = left;
+        mTop = top;
+        mWidth = width;
+        mHeight = height;
+        mCompressed = compressed;
+    }
+
+    /**
+     * 计算两帧之间的差异，两帧尺寸必须相同，没有变化时返回的差异区域为空
+     */
+    public static PixelDelta compute(int[] before, int[] after, int width, int height) {
+        // 找出变化像素的包围盒
+        int left = width, top = height, right = -1, bottom = -1;
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                if (before[row + x] != after[row + x]) {
+                    if (x < left) left = x;
+                    if (x > right) right = x;
+                    if (y < top) top = y;
+                    bottom = y;
+                }
+            }
+        }
+        if (right < 0) {
+            return new PixelDelta(0, 0, 0, 0, new byte[0]);
+        }
+
+        int regionWidth = right - left + 1;
+        int regionHeight = bottom - top + 1;
+        ByteBuffer buffer = ByteBuffer.allocate(regionWidth * regionHeight * 4);
+        for (int y = top; y <= bottom; y++) {
+            int row = y * width;
+            for (int x = left; x <= right; x++) {
+                buffer.putInt(before[row + x] ^ after[row + x]);
+            }
+        }
+        return new PixelDelta(left, top, regionWidth, regionHeight, deflate(buffer.array()));
+    }
+
+    /**
+     * 把差异异或到整帧像素上，pixels每行width个像素
+     */
+    public void apply(int[] pixels, int width) {
+        apply(pixels, mTop * width + mLeft, width);
+    }
+
+    /**
+     * 把差异异或到只包含差异区域的像素上，pixels大小至少为getWidth() * getHeight()
+     */
+    public void applyToRegion(int[] pixels) {
+        apply(pixels, 0, mWidth);
+    }
+
+    private void apply(int[] pixels, int offset, int stride) {
+        if (mWidth == 0) return;
+        ByteBuffer buffer = ByteBuffer.wrap(inflate(mCompressed, mWidth * mHeight * 4));
+        for (int y = 0; y < mHeight; y++) {
+            int row = offset + y * stride;
+            for (int x = 0; x < mWidth; x++) {
+                pixels[row + x] ^= buffer.getInt();
+            }
+        }
+    }
+
+    public int getLeft() {
+        return mLeft;
+    }
+
+    public int getTop() {
+        return mTop;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    // 压缩后占用的字节数
+    public int getByteSize() {
+        return mCompressed.length;
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 8));
+        byte[] chunk = new byte[16 * 1024];
+        while (!deflater.finished()) {
+            int count = deflater.deflate(chunk);
+            out.write(chunk, 0, count);
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] data, int size) {
+        Inflater inflater = new Inflater();
+        inflater.setInput(data);
+        byte[] result = new byte[size];
+        try {
+            int offset = 0;
+            while (offset < size && !inflater.finished()) {
+                offset += inflater.inflate(result, offset, size - offset);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupted pixel delta", e);
+        } finally {
+            inflater.end();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.homework01.edit;
+
+import android.graphics.Bitmap;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.OperationCanceledException;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.homework01.utils.BitmapPool;
+import com.example.homework01.utils.PerfTracer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 预览调度器：在后台线程渲染滑块等交互产生的预览图。
+ * 连续提交时只处理最新的一次，新的提交会取消正在进行的旧渲染，结果回到主线程交付
+ */
+public class PreviewScheduler {
+    private static final String TAG = "PreviewScheduler";
+
+    /**
+     * 在后台线程执行的渲染任务，应定期检查signal以便及时取消
+     */
+    public interface RenderTask {
+        Bitmap render(CancellationSignal signal);
+    }
+
+    /**
+     * 在主线程回调渲染结果，latencyMs为从提交到交付的耗时
+     */
+    public interface Callback {
+        void onRendered(Bitmap bitmap, long latencyMs);
+    }
+
+    private final ExecutorService mWorker = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "PreviewScheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Callback mCallback;
+
+    // 以下字段由mLock保护
+    private final Object mLock = new Object();
+    private RenderTask mPendingTask;
+    private long mPendingSubmitTime;
+    private CancellationSignal mInFlightSignal;
+    private boolean mDrainScheduled;
+    private long mGeneration;
+    private boolean mReleased;
+
+    private long mLastLatencyMs = -1;
+
+    public PreviewScheduler(Callback callback) {
+        mCallback = callback;
+    }
+
+    /**
+     * 提交新的渲染任务，替换尚未开始的任务并取消正在渲染的旧任务
+     */
+    public void submit(RenderTask task) {
+        synchronized (mLock) {
+            if (mReleased) return;
+            mGeneration++;
+            mPendingTask = task;
+            mPendingSubmitTime = SystemClock.uptimeMillis();
+            if (mInFlightSignal != null) {
+                mInFlightSignal.cancel();
+            }
+            if (!mDrainScheduled) {
+                mDrainScheduled = true;
+                mWorker.execute(this::drain);
+            }
+        }
+    }
+
+    /**
+     * 丢弃尚未开始的任务并取消正在进行的渲染，已经完成但未交付的结果也不会再回调
+     */
+    public void cancel() {
+        synchronized (mLock) {
+            mGeneration++;
+            mPendingTask = null;
+            if (mInFlightSignal != null) {
+                mInFlightSignal.cancel();
+            }
+        }
+    }
+
+    // 最近一次从提交到显示的耗时，尚无结果时返回-1
+    public long getLastLatencyMs() {
+        return mLastLatencyMs;
+    }
+
+    /**
+     * 取消所有任务并停止后台线程，等待正在进行的渲染退出后才能回收它使用的Bitmap
+     */
+    public void release() {
+        synchronized (mLock) {
+            mReleased = true;
+            mPendingTask = null;
+            if (mInFlightSignal != null) {
+                mInFlightSignal.cancel();
+            }
+        }
+        mWorker.shutdownNow();
+        try {
+            mWorker.awaitTermination(500, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        mMainHandler.removeCallbacksAndMessages(null);
+    }
+
+    // 后台线程：反复取出最新的任务执行，直到没有新任务
+    private void drain() {
+        try {
+            drainLoop();
+        } finally {
+            // 无论怎样退出都要清除调度标记，否则之后的提交不会再调度，预览会永久停止；
+            // 退出前刚好有新的提交时由这里重新调度
+            synchronized (mLock) {
+                if (mPendingTask != null && !mReleased) {
+                    mWorker.execute(this::drain);
+                } else {
+                    mDrainScheduled = false;
+                }
+            }
+        }
+    }
+
+    private void drainLoop() {
+        while (true) {
+            RenderTask task;
+            long submitTime;
+            long generation;
+            CancellationSignal signal = new CancellationSignal();
+            synchronized (mLock) {
+                task = mPendingTask;
+                if (task == null || mReleased) {
+                    return;
+                }
+                mPendingTask = null;
+                submitTime = mPendingSubmitTime;
+                generation = mGeneration;
+                mInFlightSignal = signal;
+            }
+
+            Bitmap result = null;
+            long token = PerfTracer.begin("preview.render");
+            try {
+                result = task.render(signal);
+            } catch (OperationCanceledException e) {
+                // 已被更新的任务取代
+            } catch (RuntimeException | OutOfMemoryError e) {
+                // 一次预览失败不影响之后的提交
+                Log.e(TAG, "preview render failed", e);
+            } finally {
+                PerfTracer.end("preview.render", token);
+                synchronized (mLock) {
+                    mInFlightSignal = null;
+                }
+            }
+            if (result == null) {
+                continue;
+            }
+            synchronized (mLock) {
+                if (generation != mGeneration) {
+                    // 渲染期间又有新的提交，结果已过期
+                    BitmapPool.getInstance().put(result);
+                    continue;
+                }
+            }
+            deliver(result, submitTime, generation);
+        }
+    }
+
+    private void deliver(Bitmap result, long submitTime, long generation) {
+        mMainHandler.post(() -> {
+            synchronized (mLock) {
+                // 交付前已经有更新的提交，丢弃过期结果
+                if (mReleased || generation != mGeneration) {
+                    BitmapPool.getInstance().put(result);
+                    return;
+                }
+            }
+            mLastLatencyMs = SystemClock.uptimeMillis() - submitTime;
+            mCallback.onRendered(result, mLastLatencyMs);
+        });
+    }
+}
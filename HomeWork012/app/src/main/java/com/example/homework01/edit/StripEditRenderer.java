@@ -0,0 +1,129 @@
+package com.example.homework01.edit;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import com.example.homework01.filter.ColorChain;
+import com.example.homework01.filter.PixelKernel;
+import com.example.homework01.stitch.StripStitcher;
+import com.example.homework01.utils.BitmapPool;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按水平条带流式渲染编辑结果，用于放不进内存的大图（如流式拼接的长图）：
+ * 与StripStitcher一样每次只读取一个条带的原图像素，依次执行颜色和文字操作后交给按行编码的输出，
+ * 内存只有条带大小，与图片高度无关。只支持不改变行顺序和宽度的操作，见supports
+ */
+public final class StripEditRenderer {
+    // 默认条带高度，与拼接相同
+    public static final int DEFAULT_STRIP_HEIGHT = StripStitcher.DEFAULT_STRIP_HEIGHT;
+
+    /**
+     * 按从上到下的顺序提供原图的像素行，宽度等于输出宽度
+     */
+    public interface RowSource {
+        // 把[top, top + rows)行写入dst，第r行从dst[offset + r * stride]开始
+        void readRows(int top, int rows, int[] dst, int offset, int stride) throws IOException;
+    }
+
+    /**
+     * 对一个条带执行的一段操作
+     */
+    private interface Step {
+        void apply(int[] strip, int top, int rows);
+    }
+
+    private final int mWidth;
+    private final int mHeight;
+    private final int mStripHeight;
+    private final List<Step> mSteps = new ArrayList<>();
+    // 绘制文字用的条带Bitmap，只有文字操作时才借用
+    private Bitmap mTextBitmap;
+
+    /**
+     * 能否按条带渲染：只有颜色和文字操作，它们对每一行的结果只取决于这一行和行号。
+     * 裁剪由调用者换算成读取的区域，不在ops中
+     */
+    public static boolean supports(List<EditOp> ops) {
+        for (EditOp op : ops) {
+            if (!(op instanceof EditOp.ColorOp) && !(op instanceof EditOp.TextOp)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public StripEditRenderer(List<EditOp> ops, int width, int height, int stripHeight) {
+        if (!supports(ops)) {
+            throw new IllegalArgumentException("包含不能按条带渲染的操作");
+        }
+        if (width <= 0 || height <= 0 || stripHeight <= 0) {
+            throw new IllegalArgumentException("无效的尺寸: " + width + "x" + height + "，条带高度" + stripHeight);
+        }
+        mWidth = width;
+        mHeight = height;
+        mStripHeight = Math.min(stripHeight, height);
+        int index = 0;
+        while (index < ops.size()) {
+            if (ops.get(index) instanceof EditOp.ColorOp) {
+                // 与EditRenderer一样，连续的颜色操作合并成一遍处理
+                ColorChain chain = new ColorChain();
+                while (index < ops.size() && ops.get(index) instanceof EditOp.ColorOp) {
+                    ((EditOp.ColorOp) ops.get(index++)).addTo(chain);
+                }
+                PixelKernel kernel = chain.compile();
+                mSteps.add((strip, top, rows) -> kernel.apply(strip, 0, mWidth * rows));
+            } else {
+                List<EditOp.TextOp> texts = new ArrayList<>();
+                while (index < ops.size() && ops.get(index) instanceof EditOp.TextOp) {
+                    texts.add((EditOp.TextOp) ops.get(index++));
+                }
+                mSteps.add((strip, top, rows) -> drawTexts(texts, strip, top, rows));
+            }
+        }
+    }
+
+    public int getStripHeight() {
+        return mStripHeight;
+    }
+
+    /**
+     * 从上到下渲染整张结果写给sink
+     */
+    public void render(RowSource source, StripStitcher.RowSink sink) throws IOException {
+        int[] strip = new int[mWidth * mStripHeight];
+        try {
+            for (int top = 0; top < mHeight; top += mStripHeight) {
+                int rows = Math.min(mStripHeight, mHeight - top);
+                source.readRows(top, rows, strip, 0, mWidth);
+                for (Step step : mSteps) {
+                    step.apply(strip, top, rows);
+                }
+                sink.writeRows(strip, 0, mWidth, rows);
+            }
+        } finally {
+            if (mTextBitmap != null) {
+                BitmapPool.getInstance().put(mTextBitmap);
+                mTextBitmap = null;
+            }
+        }
+    }
+
+    // 把条带放进Bitmap，画布上移top行后绘制文字，跨条带的文字在每个条带里各画一部分
+    private void drawTexts(List<EditOp.TextOp> texts, int[] strip, int top, int rows) {
+        if (mTextBitmap == null) {
+            mTextBitmap = BitmapPool.getInstance().getDirty(mWidth, mStripHeight, Bitmap.Config.ARGB_8888);
+        }
+        mTextBitmap.setPixels(strip, 0, mWidth, 0, 0, mWidth, rows);
+        Canvas canvas = new Canvas(mTextBitmap);
+        canvas.clipRect(0, 0, mWidth, rows);
+        canvas.translate(0, -top);
+        for (EditOp.TextOp text : texts) {
+            text.draw(canvas, mWidth);
+        }
+        mTextBitmap.getPixels(strip, 0, mWidth, 0, 0, mWidth, rows);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.homework01.filter;
+
+/**
+ * 通道查找表：把只依赖单个通道输入值的运算预先编译成三张byte[256]表，
+ * 处理像素时每个通道只需一次查表
+ */
+public final class ChannelLut implements PixelKernel {
+    public static final int RED = 0;
+    public static final int GREEN = 1;
+    public static final int BLUE = 2;
+
+    // 不做任何改变的通道运算
+    public static final ChannelOp IDENTITY = (channel, value) -> value;
+
+    /**
+     * 单通道运算，输入和输出均为0-255，超出范围的结果会被截断
+     */
+    public interface ChannelOp {
+        int apply(int channel, int value);
+    }
+
+    private final byte[] mRed = new byte[256];
+    private final byte[] mGreen = new byte[256];
+    private final byte[] mBlue = new byte[256];
+
+    public ChannelLut(ChannelOp op) {
+        set(op);
+    }
+
+    /**
+     * 重新编译查表，只重建768字节的表，不需要重新分配
+     */
+    public ChannelLut set(ChannelOp op) {
+        for (int v = 0; v < 256; v++) {
+            mRed[v] = (byte) clamp(op.apply(RED, v));
+            mGreen[v] = (byte) clamp(op.apply(GREEN, v));
+            mBlue[v] = (byte) clamp(op.apply(BLUE, v));
+        }
+        return this;
+    }
+
+    // 查询某个通道的映射结果
+    public int lookup(int channel, int value) {
+        switch (channel) {
+            case RED:
+                return mRed[value] & 0xFF;
+            case GREEN:
+                return mGreen[value] & 0xFF;
+            default:
+                return mBlue[value] & 0xFF;
+        }
+    }
+
+    @Override
+    public void apply(int[] pixels, int offset, int length) {
+        final byte[] red = mRed;
+        final byte[] green = mGreen;
+        final byte[] blue = mBlue;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            int pixel = pixels[i];
+            pixels[i] = 0xFF000000
+                    | (red[(pixel >> 16) & 0xFF] & 0xFF) << 16
+                    | (green[(pixel >> 8) & 0xFF] & 0xFF) << 8
+                    | (blue[pixel & 0xFF] & 0xFF);
+        }
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
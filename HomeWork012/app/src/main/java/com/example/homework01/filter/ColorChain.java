@@ -0,0 +1,71 @@
+package com.example.homework01.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按顺序执行的一串颜色运算，每一步的结果都截断到0-255，与分别执行每个滤镜的结果相同。
+ * 连续的逐通道运算（亮度、对比度、色调偏移）带着中间的截断编译成一张查找表，
+ * 只有混合通道的矩阵（黑白、复古、饱和度）单独执行；整串运算在同一段像素上完成，图片只读写一次
+ */
+public final class ColorChain {
+    private final List<PixelKernel> mSteps = new ArrayList<>();
+    // 还没有编译成查找表的连续逐通道运算
+    private ChannelLut.ChannelOp mPending;
+
+    /**
+     * 追加一个颜色矩阵，逐通道的矩阵与相邻的逐通道运算合并
+     */
+    public ColorChain then(ColorMatrix4x5 matrix) {
+        if (matrix.isPerChannel()) {
+            return then(matrix.toChannelOp());
+        }
+        flush();
+        mSteps.add(new ColorMatrix4x5(matrix));
+        return this;
+    }
+
+    /**
+     * 追加一个单通道运算，上一步的结果先截断再作为输入
+     */
+    public ColorChain then(ChannelLut.ChannelOp op) {
+        final ChannelLut.ChannelOp previous = mPending;
+        if (previous == null) {
+            mPending = op;
+        } else {
+            mPending = (channel, value) -> op.apply(channel, clamp(previous.apply(channel, value)));
+        }
+        return this;
+    }
+
+    /**
+     * 编译成可以交给BitmapUtils.applyKernel的内核，返回后再追加运算不影响已编译的内核
+     */
+    public PixelKernel compile() {
+        flush();
+        if (mSteps.isEmpty()) {
+            return new ChannelLut(ChannelLut.IDENTITY);
+        }
+        if (mSteps.size() == 1) {
+            return mSteps.get(0);
+        }
+        final PixelKernel[] steps = mSteps.toArray(new PixelKernel[0]);
+        // 每一步都对同一段像素执行，数据还在缓存中
+        return (pixels, offset, length) -> {
+            for (PixelKernel step : steps) {
+                step.apply(pixels, offset, length);
+            }
+        };
+    }
+
+    private void flush() {
+        if (mPending != null) {
+            mSteps.add(new ChannelLut(mPending));
+            mPending = null;
+        }
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
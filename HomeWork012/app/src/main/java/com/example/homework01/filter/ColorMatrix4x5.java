@@ -0,0 +1,187 @@
+package com.example.homework01.filter;
+
+import java.util.Arrays;
+
+/**
+ * 4x5颜色矩阵，布局与android.graphics.ColorMatrix相同：
+ * [a, b, c, d, e] 每行依次为R、G、B、A，e为0-255范围的偏移量。
+ * 滤镜、亮度、对比度、饱和度都是仿射变换，可以先合并成一个矩阵再对图片做一遍处理。
+ * 内部用double计算，内置滤镜的结果与PixelKernels中原先的逐像素实现逐位一致
+ */
+public final class ColorMatrix4x5 implements PixelKernel {
+    private final double[] mArray = new double[20];
+
+    // 单位矩阵
+    public ColorMatrix4x5() {
+        reset();
+    }
+
+    public ColorMatrix4x5(float[] array) {
+        for (int i = 0; i < 20; i++) {
+            mArray[i] = array[i];
+        }
+    }
+
+    public ColorMatrix4x5(ColorMatrix4x5 src) {
+        System.arraycopy(src.mArray, 0, mArray, 0, 20);
+    }
+
+    private ColorMatrix4x5(double[] array) {
+        System.arraycopy(array, 0, mArray, 0, 20);
+    }
+
+    public void reset() {
+        Arrays.fill(mArray, 0);
+        mArray[0] = mArray[6] = mArray[12] = mArray[18] = 1;
+    }
+
+    // 返回矩阵数组的副本，可直接交给ColorMatrixColorFilter使用
+    public float[] getArray() {
+        float[] array = new float[20];
+        for (int i = 0; i < 20; i++) {
+            array[i] = (float) mArray[i];
+        }
+        return array;
+    }
+
+    /**
+     * 先执行当前矩阵，再执行post，结果保存在当前矩阵中
+     */
+    public ColorMatrix4x5 postConcat(ColorMatrix4x5 post) {
+        double[] a = post.mArray;
+        double[] b = mArray;
+        double[] out = new double[20];
+        for (int row = 0; row < 4; row++) {
+            int r = row * 5;
+            for (int col = 0; col < 4; col++) {
+                out[r + col] = a[r] * b[col] + a[r + 1] * b[5 + col]
+                        + a[r + 2] * b[10 + col] + a[r + 3] * b[15 + col];
+            }
+            out[r + 4] = a[r] * b[4] + a[r + 1] * b[9] + a[r + 2] * b[14]
+                    + a[r + 3] * b[19] + a[r + 4];
+        }
+        System.arraycopy(out, 0, mArray, 0, 20);
+        return this;
+    }
+
+    /**
+     * RGB三行是否只依赖各自通道，是的话可以编译成ChannelLut查表
+     */
+    public boolean isPerChannel() {
+        for (int row = 0; row < 3; row++) {
+            for (int col = 0; col < 3; col++) {
+                if (row != col && mArray[row * 5 + col] != 0) {
+                    return false;
+                }
+            }
+            if (mArray[row * 5 + 3] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 逐通道矩阵对应的单通道运算，计算方式与apply相同；矩阵之后的修改不影响返回的运算
+     */
+    public ChannelLut.ChannelOp toChannelOp() {
+        if (!isPerChannel()) {
+            throw new IllegalStateException("颜色矩阵不是逐通道的");
+        }
+        final double[] m = mArray.clone();
+        return (channel, value) -> (int) (m[channel * 6] * value + m[channel * 5 + 4]);
+    }
+
+    @Override
+    public void apply(int[] pixels, int offset, int length) {
+        final double[] m = mArray;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            int pixel = pixels[i];
+            int r = (pixel >> 16) & 0xFF;
+            int g = (pixel >> 8) & 0xFF;
+            int b = pixel & 0xFF;
+            int a = pixel >>> 24;
+
+            int newR = (int) (m[0] * r + m[1] * g + m[2] * b + m[3] * a + m[4]);
+            int newG = (int) (m[5] * r + m[6] * g + m[7] * b + m[8] * a + m[9]);
+            int newB = (int) (m[10] * r + m[11] * g + m[12] * b + m[13] * a + m[14]);
+
+            // 与其它滤镜一致，输出alpha固定为255
+            pixels[i] = 0xFF000000
+                    | Math.max(0, Math.min(255, newR)) << 16
+                    | Math.max(0, Math.min(255, newG)) << 8
+                    | Math.max(0, Math.min(255, newB));
+        }
+    }
+
+    // 黑白滤镜
+    public static ColorMatrix4x5 blackWhite() {
+        return new ColorMatrix4x5(new double[]{
+                0.299, 0.587, 0.114, 0, 0,
+                0.299, 0.587, 0.114, 0, 0,
+                0.299, 0.587, 0.114, 0, 0,
+                0, 0, 0, 1, 0});
+    }
+
+    // 复古滤镜（棕褐色）
+    public static ColorMatrix4x5 vintage() {
+        return new ColorMatrix4x5(new double[]{
+                0.393, 0.769, 0.189, 0, 0,
+                0.349, 0.686, 0.168, 0, 0,
+                0.272, 0.534, 0.131, 0, 0,
+                0, 0, 0, 1, 0});
+    }
+
+    // 暖色调滤镜
+    public static ColorMatrix4x5 warm() {
+        return offset(30, 0, -30);
+    }
+
+    // 冷色调滤镜
+    public static ColorMatrix4x5 cold() {
+        return offset(-30, 0, 30);
+    }
+
+    // 清新滤镜
+    public static ColorMatrix4x5 fresh() {
+        return offset(0, 20, 10);
+    }
+
+    // 亮度，范围-100到100，对应偏移-255到255
+    public static ColorMatrix4x5 brightness(int brightness) {
+        int value = (int) (brightness / 100.0 * 255);
+        return offset(value, value, value);
+    }
+
+    // 对比度，范围-0.5到1.5，以中间灰为中心缩放
+    public static ColorMatrix4x5 contrast(float contrast) {
+        double factor = (100 + contrast * 100) / 100.0;
+        double translate = 127.5 * (1 - factor);
+        return new ColorMatrix4x5(new double[]{
+                factor, 0, 0, 0, translate,
+                0, factor, 0, 0, translate,
+                0, 0, factor, 0, translate,
+                0, 0, 0, 1, 0});
+    }
+
+    // 饱和度，0为灰度，1为原图
+    public static ColorMatrix4x5 saturation(float saturation) {
+        double inv = 1 - saturation;
+        double r = 0.213 * inv;
+        double g = 0.715 * inv;
+        double b = 0.072 * inv;
+        return new ColorMatrix4x5(new double[]{
+                r + saturation, g, b, 0, 0,
+                r, g + saturation, b, 0, 0,
+                r, g, b + saturation, 0, 0,
+                0, 0, 0, 1, 0});
+    }
+
+    private static ColorMatrix4x5 offset(double r, double g, double b) {
+        ColorMatrix4x5 matrix = new ColorMatrix4x5();
+        matrix.mArray[4] = r;
+        matrix.mArray[9] = g;
+        matrix.mArray[14] = b;
+        return matrix;
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.homework01.filter;
+
+/**
+ * 像素内核：在一段ARGB像素数组上原地执行逐像素运算
+ * 不依赖任何Android类型，可以直接在JVM上做单元测试和基准测试
+ */
+public interface PixelKernel {
+    /**
+     * 处理 pixels[offset, offset + length) 范围内的像素
+     */
+    void apply(int[] pixels, int offset, int length);
+}
@@ -0,0 +1,94 @@
+package com.example.homework01.filter;
+
+/**
+ * 内置滤镜的像素内核实现，计算方式与原先逐像素getPixel/setPixel的版本完全一致
+ */
+public final class PixelKernels {
+    private PixelKernels() {
+    }
+
+    // 黑白滤镜
+    public static PixelKernel blackWhite() {
+        return (pixels, offset, length) -> {
+            for (int i = offset, end = offset + length; i < end; i++) {
+                int pixel = pixels[i];
+                int r = (pixel >> 16) & 0xFF;
+                int g = (pixel >> 8) & 0xFF;
+                int b = pixel & 0xFF;
+                int gray = (int) (0.299 * r + 0.587 * g + 0.114 * b);
+                pixels[i] = rgb(gray, gray, gray);
+            }
+        };
+    }
+
+    // 复古滤镜
+    public static PixelKernel vintage() {
+        return (pixels, offset, length) -> {
+            for (int i = offset, end = offset + length; i < end; i++) {
+                int pixel = pixels[i];
+                int r = (pixel >> 16) & 0xFF;
+                int g = (pixel >> 8) & 0xFF;
+                int b = pixel & 0xFF;
+
+                int newR = (int) (0.393 * r + 0.769 * g + 0.189 * b);
+                int newG = (int) (0.349 * r + 0.686 * g + 0.168 * b);
+                int newB = (int) (0.272 * r + 0.534 * g + 0.131 * b);
+
+                pixels[i] = rgb(Math.min(255, newR), Math.min(255, newG), Math.min(255, newB));
+            }
+        };
+    }
+
+    // 暖色调滤镜
+    public static PixelKernel warm() {
+        return new ChannelLut((channel, value) -> {
+            if (channel == ChannelLut.RED) return value + 30;
+            if (channel == ChannelLut.BLUE) return value - 30;
+            return value;
+        });
+    }
+
+    // 冷色调滤镜
+    public static PixelKernel cold() {
+        return new ChannelLut((channel, value) -> {
+            if (channel == ChannelLut.RED) return value - 30;
+            if (channel == ChannelLut.BLUE) return value + 30;
+            return value;
+        });
+    }
+
+    // 清新滤镜
+    public static PixelKernel fresh() {
+        return new ChannelLut((channel, value) -> {
+            if (channel == ChannelLut.GREEN) return value + 20;
+            if (channel == ChannelLut.BLUE) return value + 10;
+            return value;
+        });
+    }
+
+    // 亮度和对比度，brightness范围-100到100，contrast范围-0.5到1.5
+    public static PixelKernel brightnessContrast(int brightness, float contrast) {
+        return new ChannelLut(brightnessContrastOp(brightness, contrast));
+    }
+
+    // 亮度和对比度的单通道运算，三个通道使用相同的映射
+    public static ChannelLut.ChannelOp brightnessContrastOp(int brightness, float contrast) {
+        // 亮度范围从-100到100，转换为-255到255
+        final int brightnessValue = (int) (brightness / 100.0 * 255);
+        // 对比度转换为倍数
+        final float contrastFactor = (100 + contrast * 100) / 100.0f;
+        return (channel, value) -> adjustChannel(value, brightnessValue, contrastFactor);
+    }
+
+    // 单通道先调亮度再调对比度
+    static int adjustChannel(int value, int brightnessValue, float contrastFactor) {
+        value = Math.max(0, Math.min(255, value + brightnessValue));
+        value = (int) (((value / 255.0f - 0.5f) * contrastFactor + 0.5f) * 255);
+        return Math.max(0, Math.min(255, value));
+    }
+
+    // 与Color.rgb相同，alpha固定为255
+    static int rgb(int r, int g, int b) {
+        return 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+}
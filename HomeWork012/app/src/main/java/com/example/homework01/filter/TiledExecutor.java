@@ -0,0 +1,165 @@
+package com.example.homework01.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分块并行执行器：把像素缓冲区按行切成水平条带，在固定大小的线程池上并行执行内核。
+ * 每个条带只写自己的区域，结果与单线程执行完全相同
+ */
+public final class TiledExecutor {
+    // 像素数少于该值时直接在当前线程执行，避免线程切换的开销
+    private static final int MIN_PARALLEL_PIXELS = 16 * 1024;
+
+    private static TiledExecutor sDefault;
+
+    private ExecutorService mPool;
+    private int mParallelism;
+
+    // 默认执行器，线程数等于CPU核数
+    public static synchronized TiledExecutor getDefault() {
+        if (sDefault == null) {
+            sDefault = new TiledExecutor(Runtime.getRuntime().availableProcessors());
+        }
+        return sDefault;
+    }
+
+    public TiledExecutor(int parallelism) {
+        setParallelism(parallelism);
+    }
+
+    public synchronized int getParallelism() {
+        return mParallelism;
+    }
+
+    /**
+     * 修改并行度，用于测量不同核数下的加速比，为1时所有内核都在调用线程上执行。
+     * 旧线程池只是不再接收任务，已提交的条带会执行完；正在run的调用者提交被拒绝时改在自己的线程上执行
+     */
+    public synchronized void setParallelism(int parallelism) {
+        parallelism = Math.max(1, parallelism);
+        if (parallelism == mParallelism) {
+            return;
+        }
+        if (mPool != null) {
+            mPool.shutdown();
+            mPool = null;
+        }
+        mParallelism = parallelism;
+        if (parallelism > 1) {
+            // 调用线程自己也处理一个条带，所以线程池少建一个线程
+            mPool = Executors.newFixedThreadPool(parallelism - 1, new ThreadFactoryImpl());
+        }
+    }
+
+    /**
+     * 关闭线程池，之后的run都在调用线程上执行
+     */
+    public synchronized void shutdown() {
+        if (mPool != null) {
+            mPool.shutdown();
+            mPool = null;
+        }
+        mParallelism = 1;
+    }
+
+    /**
+     * 对 pixels 中 rows 行、每行 width 个像素的区域执行内核，返回时所有条带都已结束
+     */
+    public void run(int[] pixels, int width, int rows, PixelKernel kernel) {
+        ExecutorService pool;
+        int parallelism;
+        synchronized (this) {
+            pool = mPool;
+            parallelism = mParallelism;
+        }
+
+        int stripes = Math.min(parallelism, rows);
+        if (pool == null || stripes <= 1 || width * rows < MIN_PARALLEL_PIXELS) {
+            kernel.apply(pixels, 0, width * rows);
+            return;
+        }
+
+        // 条带按行对齐，前 rows % stripes 个条带多分一行
+        int baseRows = rows / stripes;
+        int extraRows = rows % stripes;
+        List<Future<?>> futures = new ArrayList<>(stripes - 1);
+        // 第一个条带和提交被拒绝的条带在调用线程上执行，两个数一组：offset, length
+        int[] inline = new int[stripes * 2];
+        int inlineCount = 0;
+        int top = 0;
+        for (int i = 0; i < stripes; i++) {
+            int stripeRows = baseRows + (i < extraRows ? 1 : 0);
+            final int offset = top * width;
+            final int length = stripeRows * width;
+            boolean submitted = false;
+            if (i > 0) {
+                try {
+                    futures.add(pool.submit(() -> kernel.apply(pixels, offset, length)));
+                    submitted = true;
+                } catch (RejectedExecutionException e) {
+                    // 并行度刚被修改，旧线程池已关闭
+                }
+            }
+            if (!submitted) {
+                inline[inlineCount++] = offset;
+                inline[inlineCount++] = length;
+            }
+            top += stripeRows;
+        }
+
+        Throwable failure = null;
+        try {
+            for (int i = 0; i < inlineCount; i += 2) {
+                kernel.apply(pixels, inline[i], inline[i + 1]);
+            }
+        } catch (RuntimeException | Error e) {
+            failure = e;
+        }
+        // 不论调用线程上是否出错都要等所有条带结束，避免返回后还有线程在写缓冲区
+        boolean interrupted = false;
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = new IllegalStateException("Tile kernel failed", e.getCause());
+                    }
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+    }
+
+    // 线程池使用守护线程，不阻止进程退出
+    private static class ThreadFactoryImpl implements ThreadFactory {
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "TiledExecutor-" + mCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
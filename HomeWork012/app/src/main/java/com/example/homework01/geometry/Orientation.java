@@ -0,0 +1,194 @@
+package com.example.homework01.geometry;
+
+/**
+ * 图片的8种方向（二面体群D4）：先按需水平翻转，再顺时针旋转0/90/180/270度。
+ * 任意次旋转和翻转的组合都等于其中一种，可以合并后只重排一次像素
+ */
+public final class Orientation {
+    private static final Orientation[] ALL = new Orientation[8];
+
+    static {
+        for (int i = 0; i < ALL.length; i++) {
+            ALL[i] = new Orientation(i);
+        }
+    }
+
+    public static final Orientation IDENTITY = ALL[0];
+
+    // 0-3为旋转的四分之一圈数，4-7为水平翻转后再旋转
+    private final int mIndex;
+    // 作用在像素坐标上的2x2矩阵(y轴向下)：x' = a*x + b*y，y' = c*x + d*y
+    private final int mA, mB, mC, mD;
+
+    private Orientation(int index) {
+        mIndex = index;
+        // 水平翻转 (x, y) -> (-x, y)
+        int a = (index & 4) != 0 ? -1 : 1;
+        int b = 0;
+        int c = 0;
+        int d = 1;
+        // 顺时针旋转90度 (x, y) -> (-y, x)
+        for (int i = 0; i < (index & 3); i++) {
+            int na = -c;
+            int nb = -d;
+            c = a;
+            d = b;
+            a = na;
+            b = nb;
+        }
+        mA = a;
+        mB = b;
+        mC = c;
+        mD = d;
+    }
+
+    public static Orientation of(int index) {
+        if (index < 0 || index >= ALL.length) {
+            throw new IllegalArgumentException("无效的方向: " + index);
+        }
+        return ALL[index];
+    }
+
+    // 顺时针旋转，角度必须是90的倍数，可以为负
+    public static Orientation rotation(int degrees) {
+        if (degrees % 90 != 0) {
+            throw new IllegalArgumentException("只支持90度倍数的旋转: " + degrees);
+        }
+        return ALL[Math.floorMod(degrees / 90, 4)];
+    }
+
+    public static Orientation flipHorizontal() {
+        return ALL[4];
+    }
+
+    // 垂直翻转等于水平翻转后旋转180度
+    public static Orientation flipVertical() {
+        return ALL[6];
+    }
+
+    /**
+     * EXIF方向标签(1-8)对应的显示变换：把按文件存储顺序解码的像素转成正确的显示方向。
+     * 未定义或无效的值按1（无需变换）处理
+     */
+    public static Orientation fromExif(int exifOrientation) {
+        switch (exifOrientation) {
+            case 2: // 水平镜像
+                return ALL[4];
+            case 3: // 旋转180度
+                return ALL[2];
+            case 4: // 垂直镜像
+                return ALL[6];
+            case 5: // 沿左上-右下对角线转置：水平镜像后顺时针旋转270度
+                return ALL[7];
+            case 6: // 顺时针旋转90度
+                return ALL[1];
+            case 7: // 沿右上-左下对角线转置：水平镜像后顺时针旋转90度
+                return ALL[5];
+            case 8: // 顺时针旋转270度
+                return ALL[3];
+            case 1:
+            default:
+                return IDENTITY;
+        }
+    }
+
+    private static Orientation fromMatrix(int a, int b, int c, int d) {
+        for (Orientation orientation : ALL) {
+            if (orientation.mA == a && orientation.mB == b && orientation.mC == c && orientation.mD == d) {
+                return orientation;
+            }
+        }
+        throw new IllegalStateException("不是D4中的变换");
+    }
+
+    /**
+     * 先执行当前变换再执行next的组合结果
+     */
+    public Orientation then(Orientation next) {
+        return fromMatrix(
+                next.mA * mA + next.mB * mC, next.mA * mB + next.mB * mD,
+                next.mC * mA + next.mD * mC, next.mC * mB + next.mD * mD);
+    }
+
+    // 正交矩阵的逆就是转置
+    public Orientation inverse() {
+        return fromMatrix(mA, mC, mB, mD);
+    }
+
+    public int getIndex() {
+        return mIndex;
+    }
+
+    // 顺时针旋转的角度，不含翻转
+    public int getRotationDegrees() {
+        return (mIndex & 3) * 90;
+    }
+
+    public boolean isMirrored() {
+        return (mIndex & 4) != 0;
+    }
+
+    public boolean isIdentity() {
+        return mIndex == 0;
+    }
+
+    // 源图的x方向在结果中是否被反转（原来的右边缘到了结果的左边或上边）
+    public boolean mirrorsSourceX() {
+        return mA < 0 || mC < 0;
+    }
+
+    // 源图的y方向在结果中是否被反转
+    public boolean mirrorsSourceY() {
+        return mB < 0 || mD < 0;
+    }
+
+    // 旋转奇数个90度时宽高互换
+    public boolean swapsAxes() {
+        return (mIndex & 1) != 0;
+    }
+
+    public int getOutputWidth(int width, int height) {
+        return swapsAxes() ? height : width;
+    }
+
+    public int getOutputHeight(int width, int height) {
+        return swapsAxes() ? width : height;
+    }
+
+    /**
+     * 把变换前图片上的比例矩形(0-1)映射到变换后的图片上，返回{left, top, right, bottom}
+     */
+    public float[] mapUnitRect(float left, float top, float right, float bottom) {
+        // 单位正方形在矩阵作用后需要平移回[0, 1]
+        float offsetX = (mA < 0 ? 1 : 0) + (mB < 0 ? 1 : 0);
+        float offsetY = (mC < 0 ? 1 : 0) + (mD < 0 ? 1 : 0);
+        float x1 = mA * left + mB * top + offsetX;
+        float y1 = mC * left + mD * top + offsetY;
+        float x2 = mA * right + mB * bottom + offsetX;
+        float y2 = mC * right + mD * bottom + offsetY;
+        return new float[]{Math.min(x1, x2), Math.min(y1, y2), Math.max(x1, x2), Math.max(y1, y2)};
+    }
+
+    /**
+     * 目标像素(x, y)对应的源像素下标的线性表示：index = base + x * stepX + y * stepY，
+     * 返回{base, stepX, stepY}，width和height是源图尺寸
+     */
+    int[] sourceSteps(int width, int height) {
+        // 正向映射后的偏移，使目标坐标落在[0, 宽)x[0, 高)内
+        int offsetX = (mA < 0 ? width - 1 : 0) + (mB < 0 ? height - 1 : 0);
+        int offsetY = (mC < 0 ? width - 1 : 0) + (mD < 0 ? height - 1 : 0);
+        // 逆映射：源坐标 = 转置矩阵 * (目标坐标 - 偏移)
+        int sourceX0 = -(mA * offsetX + mC * offsetY);
+        int sourceY0 = -(mB * offsetX + mD * offsetY);
+        return new int[]{
+                sourceY0 * width + sourceX0,
+                mA + mB * width,
+                mC + mD * width
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "Orientation[rotate=" + getRotationDegrees() + (isMirrored() ? ", mirrored]" : "]");
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.homework01.geometry;
+
+/**
+ * 按方向重排像素数组：每个目标像素直接取对应的源像素，不插值，结果与精确旋转/翻转逐像素相同。
+ * 宽高互换时按64x64的块遍历，读写都留在缓存里，避免按列跨行访问大图
+ */
+public final class OrientationRemap {
+    // 分块边长，一块int约16KB，源块和目标块可以同时放进L1/L2缓存
+    static final int BLOCK = 64;
+
+    private OrientationRemap() {
+    }
+
+    /**
+     * 把width x height的src按orientation重排到dst，dst按变换后的宽度逐行存放
+     */
+    public static void apply(int[] src, int width, int height, Orientation orientation, int[] dst) {
+        applyRows(src, width, height, orientation, 0,
+                orientation.getOutputHeight(width, height), dst);
+    }
+
+    /**
+     * 只计算目标图的[top, top + rows)行，写入dst的开头，用于按行带写回Bitmap
+     */
+    public static void applyRows(int[] src, int width, int height, Orientation orientation,
+                                 int top, int rows, int[] dst) {
+        int outWidth = orientation.getOutputWidth(width, height);
+        int[] steps = orientation.sourceSteps(width, height);
+        int base = steps[0];
+        int stepX = steps[1];
+        int stepY = steps[2];
+        int end = top + rows;
+
+        if (stepX == 1) {
+            // 不翻转行内顺序（原样或垂直翻转），整行复制
+            for (int y = top; y < end; y++) {
+                System.arraycopy(src, base + y * stepY, dst, (y - top) * outWidth, outWidth);
+            }
+            return;
+        }
+        if (stepX == -1) {
+            // 行内倒序（水平翻转或旋转180度），顺序读写，不需要分块
+            for (int y = top; y < end; y++) {
+                int s = base + y * stepY;
+                int d = (y - top) * outWidth;
+                for (int x = 0; x < outWidth; x++) {
+                    dst[d + x] = src[s - x];
+                }
+            }
+            return;
+        }
+        // 宽高互换：目标按行写时源按列读，分块限制每次跨越的源行数
+        for (int blockTop = top; blockTop < end; blockTop += BLOCK) {
+            int blockBottom = Math.min(end, blockTop + BLOCK);
+            for (int blockLeft = 0; blockLeft < outWidth; blockLeft += BLOCK) {
+                int blockRight = Math.min(outWidth, blockLeft + BLOCK);
+                for (int y = blockTop; y < blockBottom; y++) {
+                    int s = base + blockLeft * stepX + y * stepY;
+                    int d = (y - top) * outWidth;
+                    for (int x = blockLeft; x < blockRight; x++) {
+                        dst[d + x] = src[s];
+                        s += stepX;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.homework01.jpeg;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 哈夫曼表：BITS（每种码长的码字数）和HUFFVAL（按码字顺序的符号），
+ * 提供解码用的查找表和编码用的码字，以及按符号频率生成最优表（JPEG标准附录K.2）
+ */
+final class HuffmanTable {
+    // 解码时一次查表的位数，更长的码字逐位比较
+    static final int LOOKAHEAD = 9;
+
+    // bits[1..16]
+    final int[] bits;
+    final int[] values;
+
+    // 解码：每种码长的最大码字和符号下标偏移
+    private final int[] mMaxCode = new int[18];
+    private final int[] mValOffset = new int[18];
+    // 码长不超过LOOKAHEAD时的查找表：(码长 << 8) | 符号，0表示需要逐位比较
+    private final int[] mLookup = new int[1 << LOOKAHEAD];
+    // 编码：每个符号的码字和码长
+    private final int[] mCodes = new int[256];
+    private final int[] mSizes = new int[256];
+
+    HuffmanTable(int[] bits, int[] values) throws IOException {
+        this.bits = bits;
+        this.values = values;
+        int code = 0;
+        int k = 0;
+        for (int length = 1; length <= 16; length++) {
+            mValOffset[length] = k - code;
+            for (int i = 0; i < bits[length]; i++) {
+                if (k >= values.length) {
+                    throw new IOException("哈夫曼表无效");
+                }
+                int symbol = values[k];
+                mCodes[symbol] = code;
+                mSizes[symbol] = length;
+                if (length <= LOOKAHEAD) {
+                    int shift = LOOKAHEAD - length;
+                    int start = code << shift;
+                    for (int j = 0; j < (1 << shift); j++) {
+                        mLookup[start + j] = (length << 8) | symbol;
+                    }
+                }
+                code++;
+                k++;
+            }
+            mMaxCode[length] = bits[length] == 0 ? -1 : code - 1;
+            if (code > (1 << length)) {
+                throw new IOException("哈夫曼表无效");
+            }
+            code <<= 1;
+        }
+        mMaxCode[17] = Integer.MAX_VALUE;
+    }
+
+    // 按前LOOKAHEAD位查表，未命中时返回0
+    int lookup(int peek) {
+        return mLookup[peek];
+    }
+
+    // 码长为length的码字对应的符号，不存在时返回-1
+    int decodeLong(int code, int length) {
+        if (code <= mMaxCode[length]) {
+            return values[code + mValOffset[length]];
+        }
+        return -1;
+    }
+
+    int codeOf(int symbol) {
+        return mCodes[symbol];
+    }
+
+    int sizeOf(int symbol) {
+        return mSizes[symbol];
+    }
+
+    /**
+     * 按257个符号的出现次数生成码长不超过16的最优表，第256个是保留符号，保证不会出现全1的码字
+     */
+    static HuffmanTable optimal(long[] frequencies) throws IOException {
+        long[] freq = new long[257];
+        System.arraycopy(frequencies, 0, freq, 0, 256);
+        boolean used = false;
+        for (int i = 0; i < 256; i++) {
+            used |= freq[i] != 0;
+        }
+        if (!used) {
+            // 没有出现过的符号时仍要写出一张合法的表
+            freq[0] = 1;
+        }
+        freq[256] = 1;
+        int[] codeSize = new int[257];
+        int[] others = new int[257];
+        Arrays.fill(others, -1);
+
+        while (true) {
+            // 找出频率最小的两个符号，频率相同时取下标大的
+            int c1 = -1;
+            long v = Long.MAX_VALUE;
+            for (int i = 0; i <= 256; i++) {
+                if (freq[i] != 0 && freq[i] <= v) {
+                    v = freq[i];
+                    c1 = i;
+                }
+            }
+            int c2 = -1;
+            v = Long.MAX_VALUE;
+            for (int i = 0; i <= 256; i++) {
+                if (freq[i] != 0 && freq[i] <= v && i != c1) {
+                    v = freq[i];
+                    c2 = i;
+                }
+            }
+            if (c2 < 0) {
+                break;
+            }
+            // 合并两棵子树，子树中所有符号的码长加1
+            freq[c1] += freq[c2];
+            freq[c2] = 0;
+            codeSize[c1]++;
+            while (others[c1] >= 0) {
+                c1 = others[c1];
+                codeSize[c1]++;
+            }
+            others[c1] = c2;
+            codeSize[c2]++;
+            while (others[c2] >= 0) {
+                c2 = others[c2];
+                codeSize[c2]++;
+            }
+        }
+
+        int[] count = new int[33];
+        for (int i = 0; i <= 256; i++) {
+            if (codeSize[i] > 0) {
+                count[codeSize[i]]++;
+            }
+        }
+        // 把超过16位的码字调整到16位以内
+        for (int i = 32; i > 16; i--) {
+            while (count[i] > 0) {
+                int j = i - 2;
+                while (count[j] == 0) {
+                    j--;
+                }
+                count[i] -= 2;
+                count[i - 1]++;
+                count[j + 1] += 2;
+                count[j]--;
+            }
+        }
+        // 去掉保留符号占用的最长码字
+        int longest = 16;
+        while (count[longest] == 0) {
+            longest--;
+        }
+        count[longest]--;
+
+        int[] bits = new int[17];
+        System.arraycopy(count, 0, bits, 0, 17);
+        int total = 0;
+        for (int i = 1; i <= 16; i++) {
+            total += bits[i];
+        }
+        int[] values = new int[total];
+        int p = 0;
+        for (int length = 1; length <= 32 && p < total; length++) {
+            for (int symbol = 0; symbol < 256 && p < total; symbol++) {
+                if (codeSize[symbol] == length) {
+                    values[p++] = symbol;
+                }
+            }
+        }
+        return new HuffmanTable(bits, values);
+    }
+}
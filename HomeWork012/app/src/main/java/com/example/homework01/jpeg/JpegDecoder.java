@@ -0,0 +1,576 @@
+package com.example.homework01.jpeg;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 只做熵解码的JPEG读取器：解析标记段和哈夫曼编码，得到量化后的DCT系数，不做反量化和IDCT。
+ * 只支持基线/扩展顺序式哈夫曼编码的8位图片，只保存裁剪区域内的块
+ */
+final class JpegDecoder {
+    private static final int SOI = 0xD8;
+    private static final int EOI = 0xD9;
+    private static final int SOF0 = 0xC0;
+    private static final int SOF1 = 0xC1;
+    private static final int DHT = 0xC4;
+    private static final int DQT = 0xDB;
+    private static final int DRI = 0xDD;
+    private static final int SOS = 0xDA;
+    private static final int COM = 0xFE;
+
+    private final InputStream mIn;
+    private final byte[] mBuffer = new byte[8192];
+    private int mPos;
+    private int mLimit;
+
+    // 像素坐标的裁剪区域{left, top, right, bottom}，null表示整张图
+    private final int[] mCrop;
+    // 结果中会被镜像的方向，这一侧的不完整MCU会被裁掉，否则填充块会翻到图片开头
+    private final boolean mTrimRight;
+    private final boolean mTrimBottom;
+
+    private final JpegImage mImage = new JpegImage();
+    private final HuffmanTable[] mDcTables = new HuffmanTable[4];
+    private final HuffmanTable[] mAcTables = new HuffmanTable[4];
+    private int mRestartInterval;
+    // 保存的区域，以MCU为单位，右下为开区间
+    private int mMcuBottom;
+
+    // 熵编码数据的位缓冲
+    private long mBits;
+    private int mBitCount;
+    // 读位时遇到的标记，之后的数据按0填充
+    private int mPendingMarker = -1;
+
+    JpegDecoder(InputStream in, int[] crop, boolean trimRight, boolean trimBottom) {
+        mIn = in;
+        mCrop = crop;
+        mTrimRight = trimRight;
+        mTrimBottom = trimBottom;
+    }
+
+    JpegImage read() throws IOException {
+        if (readRequired() != 0xFF || readRequired() != SOI) {
+            throw new UnsupportedJpegException("不是JPEG文件");
+        }
+        boolean scanned = false;
+        int marker = nextMarker();
+        while (true) {
+            if (marker == EOI) {
+                break;
+            }
+            switch (marker) {
+                case SOF0:
+                case SOF1:
+                    readFrame();
+                    break;
+                case DHT:
+                    readHuffmanTables();
+                    break;
+                case DQT:
+                    readQuantTables();
+                    break;
+                case DRI:
+                    readLength();
+                    mRestartInterval = readUnsigned16();
+                    break;
+                case SOS:
+                    marker = readScan();
+                    scanned = true;
+                    continue;
+                default:
+                    if (marker >= 0xC2 && marker <= 0xCF) {
+                        // 渐进式、无损、分层和算术编码
+                        throw new UnsupportedJpegException("不支持的JPEG编码: SOF" + (marker - 0xC0));
+                    }
+                    if (marker == 0xDC) {
+                        throw new UnsupportedJpegException("不支持DNL标记");
+                    }
+                    if (marker >= 0xD0 && marker <= 0xD7 || marker == 0x01) {
+                        // 没有长度字段的独立标记
+                        break;
+                    }
+                    byte[] segment = readSegment(marker);
+                    if ((marker >= 0xE0 && marker <= 0xEF || marker == COM) && !scanned) {
+                        if (marker == 0xE1) {
+                            resetExifOrientation(segment);
+                        }
+                        mImage.segments.add(segment);
+                    }
+                    break;
+            }
+            marker = nextMarker();
+        }
+        if (mImage.components == null || !scanned) {
+            throw new IOException("JPEG文件缺少图像数据");
+        }
+        return mImage;
+    }
+
+    private void readFrame() throws IOException {
+        if (mImage.components != null) {
+            throw new UnsupportedJpegException("不支持多帧JPEG");
+        }
+        readLength();
+        if (readRequired() != 8) {
+            throw new UnsupportedJpegException("只支持8位精度");
+        }
+        mImage.height = readUnsigned16();
+        mImage.width = readUnsigned16();
+        if (mImage.height == 0 || mImage.width == 0) {
+            throw new UnsupportedJpegException("不支持由DNL定义的高度");
+        }
+        int count = readRequired();
+        if (count < 1 || count > 4) {
+            throw new UnsupportedJpegException("不支持的分量数: " + count);
+        }
+        JpegImage.Component[] components = new JpegImage.Component[count];
+        for (int i = 0; i < count; i++) {
+            JpegImage.Component component = new JpegImage.Component();
+            component.id = readRequired();
+            int sampling = readRequired();
+            component.h = sampling >> 4;
+            component.v = sampling & 15;
+            component.quantIndex = readRequired();
+            if (component.h < 1 || component.h > 4 || component.v < 1 || component.v > 4
+                    || component.quantIndex > 3) {
+                throw new IOException("无效的分量参数");
+            }
+            components[i] = component;
+        }
+        if (count == 1) {
+            // 单分量图片不交织，按单个块处理，声明的采样因子没有意义
+            components[0].h = 1;
+            components[0].v = 1;
+        }
+        for (JpegImage.Component component : components) {
+            mImage.maxH = Math.max(mImage.maxH, component.h);
+            mImage.maxV = Math.max(mImage.maxV, component.v);
+        }
+        mImage.components = components;
+        allocateRegion();
+    }
+
+    // 把裁剪区域对齐到MCU，只为区域内的块分配系数
+    private void allocateRegion() throws IOException {
+        int width = mImage.width;
+        int height = mImage.height;
+        int mcuWidth = mImage.getMcuWidth();
+        int mcuHeight = mImage.getMcuHeight();
+        int left = 0;
+        int top = 0;
+        int right = width;
+        int bottom = height;
+        if (mCrop != null) {
+            left = clamp(mCrop[0], 0, width);
+            top = clamp(mCrop[1], 0, height);
+            right = clamp(mCrop[2], left, width);
+            bottom = clamp(mCrop[3], top, height);
+        }
+        // 起始边只能向外对齐到MCU边界，系数不能跨块平移
+        left = left / mcuWidth * mcuWidth;
+        top = top / mcuHeight * mcuHeight;
+        if (mTrimRight) {
+            right = right / mcuWidth * mcuWidth;
+        }
+        if (mTrimBottom) {
+            bottom = bottom / mcuHeight * mcuHeight;
+        }
+        if (right <= left || bottom <= top) {
+            throw new UnsupportedJpegException("裁剪区域小于一个MCU");
+        }
+        mImage.left = left;
+        mImage.top = top;
+        mImage.right = right;
+        mImage.bottom = bottom;
+
+        int mcuLeft = left / mcuWidth;
+        int mcuTop = top / mcuHeight;
+        int mcuRight = (right + mcuWidth - 1) / mcuWidth;
+        mMcuBottom = (bottom + mcuHeight - 1) / mcuHeight;
+        for (JpegImage.Component component : mImage.components) {
+            component.blockLeft = mcuLeft * component.h;
+            component.blockTop = mcuTop * component.v;
+            component.blockCols = (mcuRight - mcuLeft) * component.h;
+            component.blockRows = (mMcuBottom - mcuTop) * component.v;
+            component.coefficients = new short[component.blockCols * component.blockRows * 64];
+        }
+    }
+
+    private void readQuantTables() throws IOException {
+        int length = readLength();
+        while (length > 0) {
+            int info = readRequired();
+            int precision = info >> 4;
+            int index = info & 15;
+            if (precision > 1 || index > 3) {
+                throw new IOException("无效的量化表");
+            }
+            int[] table = new int[64];
+            for (int k = 0; k < 64; k++) {
+                table[JpegImage.ZIGZAG[k]] = precision == 0 ? readRequired() : readUnsigned16();
+            }
+            mImage.quantTables[index] = table;
+            length -= 1 + 64 * (precision + 1);
+        }
+    }
+
+    private void readHuffmanTables() throws IOException {
+        int length = readLength();
+        while (length > 0) {
+            int info = readRequired();
+            int tableClass = info >> 4;
+            int index = info & 15;
+            if (tableClass > 1 || index > 3) {
+                throw new IOException("无效的哈夫曼表");
+            }
+            int[] bits = new int[17];
+            int total = 0;
+            for (int i = 1; i <= 16; i++) {
+                bits[i] = readRequired();
+                total += bits[i];
+            }
+            if (total > 256) {
+                throw new IOException("无效的哈夫曼表");
+            }
+            int[] values = new int[total];
+            for (int i = 0; i < total; i++) {
+                values[i] = readRequired();
+            }
+            HuffmanTable table = new HuffmanTable(bits, values);
+            if (tableClass == 0) {
+                mDcTables[index] = table;
+            } else {
+                mAcTables[index] = table;
+            }
+            length -= 17 + total;
+        }
+    }
+
+    // 解码一次扫描，返回扫描之后的第一个标记
+    private int readScan() throws IOException {
+        if (mImage.components == null) {
+            throw new IOException("扫描出现在帧头之前");
+        }
+        readLength();
+        int count = readRequired();
+        if (count < 1 || count > mImage.components.length) {
+            throw new IOException("无效的扫描分量数");
+        }
+        JpegImage.Component[] scan = new JpegImage.Component[count];
+        for (int i = 0; i < count; i++) {
+            int id = readRequired();
+            int tables = readRequired();
+            JpegImage.Component component = findComponent(id);
+            component.dcTable = tables >> 4;
+            component.acTable = tables & 15;
+            if (component.dcTable > 3 || component.acTable > 3
+                    || mDcTables[component.dcTable] == null || mAcTables[component.acTable] == null) {
+                throw new IOException("缺少哈夫曼表");
+            }
+            scan[i] = component;
+        }
+        int start = readRequired();
+        int end = readRequired();
+        int approximation = readRequired();
+        if (start != 0 || end != 63 || approximation != 0) {
+            throw new UnsupportedJpegException("不支持渐进式扫描");
+        }
+        decodeEntropy(scan);
+        return finishScan();
+    }
+
+    private JpegImage.Component findComponent(int id) throws IOException {
+        for (JpegImage.Component component : mImage.components) {
+            if (component.id == id) {
+                return component;
+            }
+        }
+        throw new IOException("扫描引用了不存在的分量: " + id);
+    }
+
+    private void decodeEntropy(JpegImage.Component[] scan) throws IOException {
+        mBits = 0;
+        mBitCount = 0;
+        mPendingMarker = -1;
+        for (JpegImage.Component component : scan) {
+            component.dcPred = 0;
+        }
+        int mcusX;
+        int mcusY;
+        // 裁剪区域以下的数据不需要，到这一行就停止解码
+        int lastRow;
+        boolean interleaved = scan.length > 1;
+        if (interleaved) {
+            mcusX = ceilDiv(mImage.width, mImage.getMcuWidth());
+            mcusY = ceilDiv(mImage.height, mImage.getMcuHeight());
+            lastRow = mMcuBottom;
+        } else {
+            // 非交织扫描按分量自己的块数，不含补齐MCU用的块
+            JpegImage.Component component = scan[0];
+            mcusX = ceilDiv(ceilDiv(mImage.width * component.h, mImage.maxH), 8);
+            mcusY = ceilDiv(ceilDiv(mImage.height * component.v, mImage.maxV), 8);
+            lastRow = component.blockTop + component.blockRows;
+        }
+        int untilRestart = mRestartInterval;
+        for (int my = 0; my < mcusY && my < lastRow; my++) {
+            for (int mx = 0; mx < mcusX; mx++) {
+                if (mRestartInterval > 0) {
+                    if (untilRestart == 0) {
+                        processRestart(scan);
+                        untilRestart = mRestartInterval;
+                    }
+                    untilRestart--;
+                }
+                if (!interleaved) {
+                    decodeBlock(scan[0], mx, my);
+                    continue;
+                }
+                for (JpegImage.Component component : scan) {
+                    for (int v = 0; v < component.v; v++) {
+                        for (int h = 0; h < component.h; h++) {
+                            decodeBlock(component, mx * component.h + h, my * component.v + v);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // 解码一个块，不在保存区域内的块也要解码，熵编码数据无法跳过
+    private void decodeBlock(JpegImage.Component component, int bx, int by) throws IOException {
+        int offset = component.offsetOf(bx, by);
+        short[] coefficients = component.coefficients;
+        int size = decodeHuffman(mDcTables[component.dcTable]);
+        component.dcPred += receiveExtend(size);
+        if (offset >= 0) {
+            coefficients[offset] = (short) component.dcPred;
+        }
+        HuffmanTable ac = mAcTables[component.acTable];
+        for (int k = 1; k < 64; ) {
+            int symbol = decodeHuffman(ac);
+            int run = symbol >> 4;
+            size = symbol & 15;
+            if (size == 0) {
+                if (run != 15) {
+                    break;
+                }
+                k += 16;
+                continue;
+            }
+            k += run;
+            if (k > 63) {
+                throw new IOException("AC系数越界");
+            }
+            int value = receiveExtend(size);
+            if (offset >= 0) {
+                coefficients[offset + JpegImage.ZIGZAG[k]] = (short) value;
+            }
+            k++;
+        }
+    }
+
+    private void processRestart(JpegImage.Component[] scan) throws IOException {
+        mBits = 0;
+        mBitCount = 0;
+        int marker = mPendingMarker >= 0 ? mPendingMarker : nextMarker();
+        mPendingMarker = -1;
+        if (marker < 0xD0 || marker > 0xD7) {
+            throw new IOException("缺少重启标记");
+        }
+        for (JpegImage.Component component : scan) {
+            component.dcPred = 0;
+        }
+    }
+
+    // 扫描结束或提前停止后，跳过剩余的熵编码数据，返回下一个标记
+    private int finishScan() throws IOException {
+        int marker = mPendingMarker;
+        mPendingMarker = -1;
+        while (marker < 0 || marker >= 0xD0 && marker <= 0xD7) {
+            marker = nextMarker();
+        }
+        return marker;
+    }
+
+    private void fillBits() throws IOException {
+        while (mBitCount <= 24) {
+            int b = 0;
+            if (mPendingMarker < 0) {
+                b = readRequired();
+                if (b == 0xFF) {
+                    int next = readRequired();
+                    while (next == 0xFF) {
+                        next = readRequired();
+                    }
+                    if (next == 0) {
+                        b = 0xFF;
+                    } else {
+                        // 遇到标记，后面的位按0处理
+                        mPendingMarker = next;
+                        b = 0;
+                    }
+                }
+            }
+            mBits = (mBits << 8) | b;
+            mBitCount += 8;
+        }
+    }
+
+    private int decodeHuffman(HuffmanTable table) throws IOException {
+        if (mBitCount < 16) {
+            fillBits();
+        }
+        int peek = (int) (mBits >>> (mBitCount - HuffmanTable.LOOKAHEAD)) & ((1 << HuffmanTable.LOOKAHEAD) - 1);
+        int entry = table.lookup(peek);
+        if (entry != 0) {
+            mBitCount -= entry >> 8;
+            return entry & 0xFF;
+        }
+        for (int length = HuffmanTable.LOOKAHEAD + 1; length <= 16; length++) {
+            int code = (int) (mBits >>> (mBitCount - length)) & ((1 << length) - 1);
+            int symbol = table.decodeLong(code, length);
+            if (symbol >= 0) {
+                mBitCount -= length;
+                return symbol;
+            }
+        }
+        throw new IOException("无效的哈夫曼码");
+    }
+
+    // 读取size位并按JPEG的规则还原符号
+    private int receiveExtend(int size) throws IOException {
+        if (size == 0) {
+            return 0;
+        }
+        if (size > 16) {
+            throw new IOException("无效的系数长度");
+        }
+        if (mBitCount < size) {
+            fillBits();
+        }
+        int value = (int) (mBits >>> (mBitCount - size)) & ((1 << size) - 1);
+        mBitCount -= size;
+        return value < (1 << (size - 1)) ? value - (1 << size) + 1 : value;
+    }
+
+    /**
+     * 把EXIF中IFD0的方向标签改为1：变换后的像素已经是显示方向，不能再被查看器旋转一次
+     */
+    static void resetExifOrientation(byte[] segment) {
+        // FF E1 + 长度 + "Exif\0\0"，之后是TIFF头
+        int tiff = 10;
+        if (segment.length < tiff + 8 || segment[4] != 'E' || segment[5] != 'x'
+                || segment[6] != 'i' || segment[7] != 'f' || segment[8] != 0 || segment[9] != 0) {
+            return;
+        }
+        boolean little;
+        if (segment[tiff] == 'I' && segment[tiff + 1] == 'I') {
+            little = true;
+        } else if (segment[tiff] == 'M' && segment[tiff + 1] == 'M') {
+            little = false;
+        } else {
+            return;
+        }
+        long ifdOffset = readInt(segment, tiff + 4, little) & 0xFFFFFFFFL;
+        if (ifdOffset > segment.length) {
+            return;
+        }
+        int ifd = tiff + (int) ifdOffset;
+        if (ifd + 2 > segment.length) {
+            return;
+        }
+        int count = readShort(segment, ifd, little);
+        for (int i = 0; i < count; i++) {
+            int entry = ifd + 2 + i * 12;
+            if (entry + 12 > segment.length) {
+                return;
+            }
+            // 方向标签0x0112，类型为SHORT(3)
+            if (readShort(segment, entry, little) == 0x0112 && readShort(segment, entry + 2, little) == 3) {
+                segment[entry + (little ? 8 : 9)] = 1;
+                segment[entry + (little ? 9 : 8)] = 0;
+                return;
+            }
+        }
+    }
+
+    private static int readShort(byte[] data, int offset, boolean little) {
+        int a = data[offset] & 0xFF;
+        int b = data[offset + 1] & 0xFF;
+        return little ? (b << 8) | a : (a << 8) | b;
+    }
+
+    private static int readInt(byte[] data, int offset, boolean little) {
+        int high = readShort(data, offset + (little ? 2 : 0), little);
+        int low = readShort(data, offset + (little ? 0 : 2), little);
+        return (high << 16) | low;
+    }
+
+    // 读取整段数据，包括标记和长度字段
+    private byte[] readSegment(int marker) throws IOException {
+        int length = readUnsigned16();
+        if (length < 2) {
+            throw new IOException("无效的段长度");
+        }
+        byte[] segment = new byte[length + 2];
+        segment[0] = (byte) 0xFF;
+        segment[1] = (byte) marker;
+        segment[2] = (byte) (length >> 8);
+        segment[3] = (byte) length;
+        for (int i = 4; i < segment.length; i++) {
+            segment[i] = (byte) readRequired();
+        }
+        return segment;
+    }
+
+    // 读取段长度，返回去掉长度字段后的字节数
+    private int readLength() throws IOException {
+        int length = readUnsigned16();
+        if (length < 2) {
+            throw new IOException("无效的段长度");
+        }
+        return length - 2;
+    }
+
+    // 跳过标记之间的无效字节和填充的0xFF，返回标记码
+    private int nextMarker() throws IOException {
+        while (true) {
+            int b = readRequired();
+            while (b != 0xFF) {
+                b = readRequired();
+            }
+            do {
+                b = readRequired();
+            } while (b == 0xFF);
+            if (b != 0) {
+                return b;
+            }
+        }
+    }
+
+    private int readUnsigned16() throws IOException {
+        return (readRequired() << 8) | readRequired();
+    }
+
+    private int readRequired() throws IOException {
+        if (mPos == mLimit) {
+            mLimit = mIn.read(mBuffer, 0, mBuffer.length);
+            mPos = 0;
+            if (mLimit <= 0) {
+                mLimit = 0;
+                throw new EOFException("JPEG文件不完整");
+            }
+        }
+        return mBuffer[mPos++] & 0xFF;
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static int ceilDiv(int a, int b) {
+        return (a + b - 1) / b;
+    }
+}
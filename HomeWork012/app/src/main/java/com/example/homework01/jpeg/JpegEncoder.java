@@ -0,0 +1,351 @@
+package com.example.homework01.jpeg;
+
+import com.example.homework01.geometry.Orientation;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 把解码得到的DCT系数按方向重排后写成新的基线JPEG。
+ * 块的位置按方向映射，块内系数转置或对奇数频率取反，量化值不变，所以不损失画质。
+ * 哈夫曼表按重排后的系数统计生成，亮度和色度各一组
+ */
+final class JpegEncoder {
+    private final JpegImage mImage;
+    private final JpegImage.Component[] mComponents;
+    private final boolean mSwap;
+    private final boolean mMirrorX;
+    private final boolean mMirrorY;
+    private final int mWidth;
+    private final int mHeight;
+    // 输出中各分量的采样因子，转置时水平和垂直互换
+    private final int[] mH;
+    private final int[] mV;
+    private int mMaxH = 1;
+    private int mMaxV = 1;
+    // 输出块中自然顺序下标n的系数取自源块的mSourceIndex[n]，mNegate[n]为true时取反
+    private final int[] mSourceIndex = new int[64];
+    private final boolean[] mNegate = new boolean[64];
+
+    JpegEncoder(JpegImage image, Orientation orientation) {
+        mImage = image;
+        mComponents = image.components;
+        mSwap = orientation.swapsAxes();
+        mMirrorX = orientation.mirrorsSourceX();
+        mMirrorY = orientation.mirrorsSourceY();
+        int width = image.right - image.left;
+        int height = image.bottom - image.top;
+        mWidth = orientation.getOutputWidth(width, height);
+        mHeight = orientation.getOutputHeight(width, height);
+        mH = new int[mComponents.length];
+        mV = new int[mComponents.length];
+        for (int i = 0; i < mComponents.length; i++) {
+            mH[i] = mSwap ? mComponents[i].v : mComponents[i].h;
+            mV[i] = mSwap ? mComponents[i].h : mComponents[i].v;
+            mMaxH = Math.max(mMaxH, mH[i]);
+            mMaxV = Math.max(mMaxV, mV[i]);
+        }
+        // 像素镜像对应奇数频率取反，转置对应系数矩阵转置
+        for (int n = 0; n < 64; n++) {
+            int u = n & 7;
+            int v = n >> 3;
+            int sourceU = mSwap ? v : u;
+            int sourceV = mSwap ? u : v;
+            mSourceIndex[n] = sourceV * 8 + sourceU;
+            mNegate[n] = (mMirrorX && (sourceU & 1) != 0) ^ (mMirrorY && (sourceV & 1) != 0);
+        }
+    }
+
+    int getWidth() {
+        return mWidth;
+    }
+
+    int getHeight() {
+        return mHeight;
+    }
+
+    void write(OutputStream out) throws IOException {
+        int tableCount = mComponents.length > 1 ? 2 : 1;
+        // 第一遍只统计符号频率，第二遍按最优表编码
+        long[][] dcFrequencies = new long[tableCount][256];
+        long[][] acFrequencies = new long[tableCount][256];
+        encodeScan(null, dcFrequencies, acFrequencies, null, null);
+        HuffmanTable[] dcTables = new HuffmanTable[tableCount];
+        HuffmanTable[] acTables = new HuffmanTable[tableCount];
+        for (int i = 0; i < tableCount; i++) {
+            dcTables[i] = HuffmanTable.optimal(dcFrequencies[i]);
+            acTables[i] = HuffmanTable.optimal(acFrequencies[i]);
+        }
+
+        BufferedOutputStream buffered = new BufferedOutputStream(out, 16 * 1024);
+        buffered.write(0xFF);
+        buffered.write(0xD8);
+        for (byte[] segment : mImage.segments) {
+            buffered.write(segment);
+        }
+        boolean extended = writeQuantTables(buffered);
+        writeFrame(buffered, extended);
+        writeHuffmanTables(buffered, dcTables, acTables);
+        writeScanHeader(buffered);
+        BitWriter writer = new BitWriter(buffered);
+        encodeScan(writer, null, null, dcTables, acTables);
+        writer.flush();
+        buffered.write(0xFF);
+        buffered.write(0xD9);
+        buffered.flush();
+    }
+
+    // 写出用到的量化表，返回是否有16位精度的表（基线只允许8位）
+    private boolean writeQuantTables(OutputStream out) throws IOException {
+        boolean extended = false;
+        boolean[] written = new boolean[4];
+        for (JpegImage.Component component : mComponents) {
+            int index = component.quantIndex;
+            if (written[index]) {
+                continue;
+            }
+            written[index] = true;
+            int[] table = mImage.quantTables[index];
+            if (table == null) {
+                throw new IOException("缺少量化表: " + index);
+            }
+            int precision = 0;
+            for (int value : table) {
+                if (value > 255) {
+                    precision = 1;
+                }
+            }
+            extended |= precision == 1;
+            writeMarker(out, 0xDB, 1 + 64 * (precision + 1));
+            out.write((precision << 4) | index);
+            for (int k = 0; k < 64; k++) {
+                // 系数位置变了，对应的量化值跟着走
+                int value = table[mSourceIndex[JpegImage.ZIGZAG[k]]];
+                if (precision == 1) {
+                    out.write(value >> 8);
+                }
+                out.write(value);
+            }
+        }
+        return extended;
+    }
+
+    private void writeFrame(OutputStream out, boolean extended) throws IOException {
+        writeMarker(out, extended ? 0xC1 : 0xC0, 6 + 3 * mComponents.length);
+        out.write(8);
+        out.write(mHeight >> 8);
+        out.write(mHeight);
+        out.write(mWidth >> 8);
+        out.write(mWidth);
+        out.write(mComponents.length);
+        for (int i = 0; i < mComponents.length; i++) {
+            out.write(mComponents[i].id);
+            out.write((mH[i] << 4) | mV[i]);
+            out.write(mComponents[i].quantIndex);
+        }
+    }
+
+    private static void writeHuffmanTables(OutputStream out, HuffmanTable[] dcTables,
+                                           HuffmanTable[] acTables) throws IOException {
+        int length = 0;
+        for (int i = 0; i < dcTables.length; i++) {
+            length += 17 + dcTables[i].values.length + 17 + acTables[i].values.length;
+        }
+        writeMarker(out, 0xC4, length);
+        for (int i = 0; i < dcTables.length; i++) {
+            writeHuffmanTable(out, i, dcTables[i]);
+            writeHuffmanTable(out, 0x10 | i, acTables[i]);
+        }
+    }
+
+    private static void writeHuffmanTable(OutputStream out, int info, HuffmanTable table) throws IOException {
+        out.write(info);
+        for (int i = 1; i <= 16; i++) {
+            out.write(table.bits[i]);
+        }
+        for (int value : table.values) {
+            out.write(value);
+        }
+    }
+
+    // 所有分量放在一次扫描里，第一个分量用0号表，其余用1号表
+    private void writeScanHeader(OutputStream out) throws IOException {
+        writeMarker(out, 0xDA, 4 + 2 * mComponents.length);
+        out.write(mComponents.length);
+        for (int i = 0; i < mComponents.length; i++) {
+            int table = i == 0 ? 0 : 1;
+            out.write(mComponents[i].id);
+            out.write((table << 4) | table);
+        }
+        out.write(0);
+        out.write(63);
+        out.write(0);
+    }
+
+    // 写标记和长度，length不含长度字段本身
+    private static void writeMarker(OutputStream out, int marker, int length) throws IOException {
+        out.write(0xFF);
+        out.write(marker);
+        out.write((length + 2) >> 8);
+        out.write(length + 2);
+    }
+
+    // writer为null时只统计频率，否则按给定的表编码
+    private void encodeScan(BitWriter writer, long[][] dcFrequencies, long[][] acFrequencies,
+                            HuffmanTable[] dcTables, HuffmanTable[] acTables) throws IOException {
+        int[] predictions = new int[mComponents.length];
+        short[] block = new short[64];
+        if (mComponents.length == 1) {
+            // 单分量不交织，按块逐行
+            int cols = (mWidth + 7) / 8;
+            int rows = (mHeight + 7) / 8;
+            for (int by = 0; by < rows; by++) {
+                for (int bx = 0; bx < cols; bx++) {
+                    fetchBlock(0, bx, by, block);
+                    encodeBlock(writer, block, predictions, 0, 0,
+                            dcFrequencies, acFrequencies, dcTables, acTables);
+                }
+            }
+            return;
+        }
+        int mcusX = (mWidth + 8 * mMaxH - 1) / (8 * mMaxH);
+        int mcusY = (mHeight + 8 * mMaxV - 1) / (8 * mMaxV);
+        for (int my = 0; my < mcusY; my++) {
+            for (int mx = 0; mx < mcusX; mx++) {
+                for (int i = 0; i < mComponents.length; i++) {
+                    int table = i == 0 ? 0 : 1;
+                    for (int v = 0; v < mV[i]; v++) {
+                        for (int h = 0; h < mH[i]; h++) {
+                            fetchBlock(i, mx * mH[i] + h, my * mV[i] + v, block);
+                            encodeBlock(writer, block, predictions, i, table,
+                                    dcFrequencies, acFrequencies, dcTables, acTables);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // 取输出中分量index的块(x, y)，按输出方向的自然顺序写入block
+    private void fetchBlock(int index, int x, int y, short[] block) {
+        JpegImage.Component component = mComponents[index];
+        int a = mSwap ? y : x;
+        int b = mSwap ? x : y;
+        int sourceX = mMirrorX ? component.blockCols - 1 - a : a;
+        int sourceY = mMirrorY ? component.blockRows - 1 - b : b;
+        // 补齐MCU的块可能超出保存区域，用边上的块代替
+        sourceX = Math.max(0, Math.min(component.blockCols - 1, sourceX));
+        sourceY = Math.max(0, Math.min(component.blockRows - 1, sourceY));
+        int offset = (sourceY * component.blockCols + sourceX) * 64;
+        short[] coefficients = component.coefficients;
+        for (int n = 0; n < 64; n++) {
+            short value = coefficients[offset + mSourceIndex[n]];
+            block[n] = mNegate[n] ? (short) -value : value;
+        }
+    }
+
+    private static void encodeBlock(BitWriter writer, short[] block, int[] predictions, int index, int table,
+                                    long[][] dcFrequencies, long[][] acFrequencies,
+                                    HuffmanTable[] dcTables, HuffmanTable[] acTables) throws IOException {
+        int diff = block[0] - predictions[index];
+        predictions[index] = block[0];
+        int size = bitLength(diff);
+        if (writer == null) {
+            dcFrequencies[table][size]++;
+        } else {
+            writer.writeSymbol(dcTables[table], size);
+            writer.writeValue(diff, size);
+        }
+        long[] acCounts = writer == null ? acFrequencies[table] : null;
+        HuffmanTable ac = writer == null ? null : acTables[table];
+        int run = 0;
+        for (int k = 1; k < 64; k++) {
+            int value = block[JpegImage.ZIGZAG[k]];
+            if (value == 0) {
+                run++;
+                continue;
+            }
+            while (run > 15) {
+                // ZRL：16个连续的0
+                if (writer == null) {
+                    acCounts[0xF0]++;
+                } else {
+                    writer.writeSymbol(ac, 0xF0);
+                }
+                run -= 16;
+            }
+            size = bitLength(value);
+            if (size > 15) {
+                throw new UnsupportedJpegException("AC系数超出范围");
+            }
+            int symbol = (run << 4) | size;
+            if (writer == null) {
+                acCounts[symbol]++;
+            } else {
+                writer.writeSymbol(ac, symbol);
+                writer.writeValue(value, size);
+            }
+            run = 0;
+        }
+        if (run > 0) {
+            // EOB：块内剩下的系数都是0
+            if (writer == null) {
+                acCounts[0]++;
+            } else {
+                writer.writeSymbol(ac, 0);
+            }
+        }
+    }
+
+    private static int bitLength(int value) {
+        return 32 - Integer.numberOfLeadingZeros(Math.abs(value));
+    }
+
+    /**
+     * 熵编码数据的位输出，0xFF后补0，结束时用1填满最后一个字节
+     */
+    private static final class BitWriter {
+        private final OutputStream mOut;
+        private long mBits;
+        private int mCount;
+
+        BitWriter(OutputStream out) {
+            mOut = out;
+        }
+
+        void writeSymbol(HuffmanTable table, int symbol) throws IOException {
+            int size = table.sizeOf(symbol);
+            if (size == 0) {
+                throw new IOException("哈夫曼表缺少符号: " + symbol);
+            }
+            writeBits(table.codeOf(symbol), size);
+        }
+
+        // 负数按JPEG的规则写为value - 1的低size位
+        void writeValue(int value, int size) throws IOException {
+            if (size > 0) {
+                writeBits(value < 0 ? value - 1 : value, size);
+            }
+        }
+
+        void writeBits(int value, int size) throws IOException {
+            mBits = (mBits << size) | (value & ((1L << size) - 1));
+            mCount += size;
+            while (mCount >= 8) {
+                int b = (int) (mBits >>> (mCount - 8)) & 0xFF;
+                mOut.write(b);
+                if (b == 0xFF) {
+                    mOut.write(0);
+                }
+                mCount -= 8;
+            }
+        }
+
+        void flush() throws IOException {
+            if (mCount > 0) {
+                writeBits(0x7F, 8 - mCount);
+            }
+        }
+    }
+}
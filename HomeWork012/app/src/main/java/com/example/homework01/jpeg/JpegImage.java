@@ -0,0 +1,76 @@
+package com.example.homework01.jpeg;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JPEG的帧信息和量化后的DCT系数，系数按块存放，每块64个值为自然顺序（行优先）
+ */
+final class JpegImage {
+    // 之字形扫描位置对应的自然顺序下标
+    static final int[] ZIGZAG = {
+            0, 1, 8, 16, 9, 2, 3, 10,
+            17, 24, 32, 25, 18, 11, 4, 5,
+            12, 19, 26, 33, 40, 48, 41, 34,
+            27, 20, 13, 6, 7, 14, 21, 28,
+            35, 42, 49, 56, 57, 50, 43, 36,
+            29, 22, 15, 23, 30, 37, 44, 51,
+            58, 59, 52, 45, 38, 31, 39, 46,
+            53, 60, 61, 54, 47, 55, 62, 63
+    };
+
+    /**
+     * 一个颜色分量：采样因子、量化表，以及保存下来的那部分块
+     */
+    static final class Component {
+        int id;
+        int h;
+        int v;
+        int quantIndex;
+        // 当前扫描使用的哈夫曼表
+        int dcTable;
+        int acTable;
+        int dcPred;
+        // 保存的块区域，以分量自己的块为单位
+        int blockLeft;
+        int blockTop;
+        int blockCols;
+        int blockRows;
+        short[] coefficients;
+
+        // 块(bx, by)在coefficients中的偏移，不在保存区域内时返回-1
+        int offsetOf(int bx, int by) {
+            int x = bx - blockLeft;
+            int y = by - blockTop;
+            if (x < 0 || y < 0 || x >= blockCols || y >= blockRows) {
+                return -1;
+            }
+            return (y * blockCols + x) * 64;
+        }
+    }
+
+    int width;
+    int height;
+    // 对齐到MCU后实际保留的像素区域，右下为开区间
+    int left;
+    int top;
+    int right;
+    int bottom;
+    int maxH = 1;
+    int maxV = 1;
+    Component[] components;
+    // 自然顺序的量化表，以及原文件中的精度（0为8位，1为16位）
+    final int[][] quantTables = new int[4][];
+    final int[] quantPrecision = new int[4];
+    // SOF之前的APPn和COM段，含标记和长度，按原顺序输出
+    final List<byte[]> segments = new ArrayList<>();
+
+    // 一个MCU覆盖的像素宽高，单分量图片的采样因子已按1处理
+    int getMcuWidth() {
+        return 8 * maxH;
+    }
+
+    int getMcuHeight() {
+        return 8 * maxV;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.homework01.jpeg;
+
+import com.example.homework01.geometry.Orientation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 在DCT域对JPEG做裁剪和90度旋转/翻转：只做熵解码和重新编码，不经过像素，不损失画质，
+ * 输出保持原图分辨率。裁剪的左上角会向外对齐到MCU边界（通常8或16像素），
+ * 被镜像一侧的不完整MCU会被裁掉。不支持的文件抛出{@link UnsupportedJpegException}
+ */
+public final class JpegTranscoder {
+    private JpegTranscoder() {
+    }
+
+    /**
+     * 读取in中的JPEG，裁剪后按orientation变换写入out，返回输出的{宽, 高}。
+     * crop是按文件存储方向的像素坐标{left, top, right, bottom}，为null时保留整张图
+     */
+    public static int[] transform(InputStream in, OutputStream out, int[] crop,
+                                  Orientation orientation) throws IOException {
+        JpegImage image = new JpegDecoder(in, crop,
+                orientation.mirrorsSourceX(), orientation.mirrorsSourceY()).read();
+        JpegEncoder encoder = new JpegEncoder(image, orientation);
+        encoder.write(out);
+        return new int[]{encoder.getWidth(), encoder.getHeight()};
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.homework01.jpeg;
+
+import java.io.IOException;
+
+/**
+ * 文件不是可以无损变换的JPEG（渐进式、算术编码、非8位精度等），调用者应改为解码后重新编码
+ */
+public class UnsupportedJpegException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public UnsupportedJpegException(String message) {
+        super(message);
+    }
+}
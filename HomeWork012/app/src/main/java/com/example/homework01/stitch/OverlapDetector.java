@@ -0,0 +1,278 @@
+package com.example.homework01.stitch;
+
+/**
+ * 连续截图的重叠检测：上一张的底部和下一张的顶部是同一段内容时，找出重复的行数。
+ * 先跳过两张图中相同的顶栏和底栏（状态栏、标题栏、导航栏），再对内容区域每行算一个按列分段的亮度签名，
+ * 用下一张顶部的特征行在上一张中查找签名相近的行，对候选偏移投票，
+ * 最后按像素容差逐行验证得票最多的几个偏移。除验证外都是对行的线性扫描，不做O(n²)的整图比较
+ */
+public final class OverlapDetector {
+    // 每行分成几段分别求平均，比整行平均更能区分不同的行
+    private static final int BANDS = 4;
+    // 逐像素比较和求签名时每隔几个像素取一个
+    private static final int SAMPLE_STEP = 4;
+    // 签名（每段r+g+b的平均）的容差，压缩噪声在平均后远小于这个值
+    private static final int SIGNATURE_TOLERANCE = 6;
+    // 相邻两行签名差超过这个值才算特征行，大片空白中的行无法定位
+    private static final int EDGE_THRESHOLD = 24;
+    // 逐像素比较时单个通道的容差
+    private static final int CHANNEL_TOLERANCE = 24;
+    // 内容行允许不一致的采样比例（百分比）
+    private static final int CONTENT_MISMATCH_PERCENT = 2;
+    // 顶栏和底栏允许不一致的采样比例，状态栏里的时间和电量会变
+    private static final int BAR_MISMATCH_PERCENT = 15;
+    // 顶栏和底栏各自最多占图片高度的1/4
+    private static final int MAX_BAR_DIVISOR = 4;
+    // 重叠至少这么多行才认为是连续的截图
+    private static final int MIN_OVERLAP = 16;
+    // 重叠部分至少这个比例的行一致才接受（百分比）
+    private static final int MIN_MATCH_PERCENT = 95;
+    // 最多使用的特征行数，以及一行签名相近的行太多时认为它不够独特
+    private static final int MAX_ANCHORS = 48;
+    private static final int MAX_OCCURRENCES = 16;
+    // 按票数验证的候选偏移数
+    private static final int MAX_CANDIDATES = 4;
+
+    /**
+     * 检测结果：上一张去掉底部bottomCrop行，下一张去掉顶部topCrop行后拼接即可去掉重复部分
+     */
+    public static final class Result {
+        public static final Result NONE = new Result(0, 0, 0);
+
+        private final int mHeaderRows;
+        private final int mFooterRows;
+        private final int mOverlapRows;
+
+        Result(int headerRows, int footerRows, int overlapRows) {
+            mHeaderRows = headerRows;
+            mFooterRows = footerRows;
+            mOverlapRows = overlapRows;
+        }
+
+        public boolean hasOverlap() {
+            return mOverlapRows > 0;
+        }
+
+        public int getHeaderRows() {
+            return mHeaderRows;
+        }
+
+        public int getFooterRows() {
+            return mFooterRows;
+        }
+
+        public int getOverlapRows() {
+            return mOverlapRows;
+        }
+
+        // 上一张要去掉的底栏，后面接的是下一张的内容
+        public int getBottomCrop() {
+            return hasOverlap() ? mFooterRows : 0;
+        }
+
+        // 下一张要去掉的顶栏和重复的内容
+        public int getTopCrop() {
+            return hasOverlap() ? mHeaderRows + mOverlapRows : 0;
+        }
+
+        @Override
+        public String toString() {
+            return "Overlap[header=" + mHeaderRows + ", footer=" + mFooterRows + ", overlap=" + mOverlapRows + "]";
+        }
+    }
+
+    private OverlapDetector() {
+    }
+
+    /**
+     * 检测上一张top（width x topHeight）和下一张bottom（width x bottomHeight）之间的重叠，
+     * 两张图宽度必须相同；找不到可靠的重叠时返回{@link Result#NONE}，按原样拼接
+     */
+    public static Result detect(int[] top, int topHeight, int[] bottom, int bottomHeight, int width) {
+        if (width < BANDS * SAMPLE_STEP || topHeight <= MIN_OVERLAP || bottomHeight <= MIN_OVERLAP) {
+            return Result.NONE;
+        }
+        int minHeight = Math.min(topHeight, bottomHeight);
+        int maxBar = minHeight / MAX_BAR_DIVISOR;
+        // 两张图从顶部开始相同的行是固定的顶栏
+        int header = 0;
+        while (header < maxBar && rowsSimilar(top, header, bottom, header, width, BAR_MISMATCH_PERCENT)) {
+            header++;
+        }
+        // 从底部开始相同的行是固定的底栏
+        int footer = 0;
+        while (footer < maxBar && rowsSimilar(top, topHeight - 1 - footer,
+                bottom, bottomHeight - 1 - footer, width, BAR_MISMATCH_PERCENT)) {
+            footer++;
+        }
+
+        int topRows = topHeight - header - footer;
+        int bottomRows = bottomHeight - header - footer;
+        if (topRows < MIN_OVERLAP || bottomRows < MIN_OVERLAP) {
+            return Result.NONE;
+        }
+        int[] topSignatures = signatures(top, width, header, topRows);
+        int[] bottomSignatures = signatures(bottom, width, header, bottomRows);
+        int[] votes = vote(topSignatures, topRows, bottomSignatures, bottomRows);
+
+        // 票数从高到低验证，同票时偏移小（重叠多）的优先
+        boolean[] tried = new boolean[votes.length];
+        for (int c = 0; c < MAX_CANDIDATES; c++) {
+            int best = -1;
+            for (int offset = 0; offset < votes.length; offset++) {
+                if (!tried[offset] && votes[offset] > 0 && (best < 0 || votes[offset] > votes[best])) {
+                    best = offset;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            tried[best] = true;
+            int overlap = topRows - best;
+            if (verify(top, header + best, bottom, header, overlap, width)) {
+                return new Result(header, footer, overlap);
+            }
+        }
+        return Result.NONE;
+    }
+
+    /**
+     * 每行BANDS个签名：各段采样像素r+g+b的平均值，按行连续存放
+     */
+    static int[] signatures(int[] pixels, int width, int firstRow, int rows) {
+        int[] signatures = new int[rows * BANDS];
+        int bandWidth = width / BANDS;
+        for (int y = 0; y < rows; y++) {
+            int rowStart = (firstRow + y) * width;
+            for (int band = 0; band < BANDS; band++) {
+                int start = rowStart + band * bandWidth;
+                int end = start + bandWidth;
+                int sum = 0;
+                int count = 0;
+                for (int i = start; i < end; i += SAMPLE_STEP) {
+                    int color = pixels[i];
+                    sum += ((color >> 16) & 0xFF) + ((color >> 8) & 0xFF) + (color & 0xFF);
+                    count++;
+                }
+                signatures[y * BANDS + band] = sum / count;
+            }
+        }
+        return signatures;
+    }
+
+    /**
+     * 用下一张内容顶部的特征行在上一张内容中查找签名相近的行，每次命中为偏移(上一张行号 - 下一张行号)投一票。
+     * 上一张的行按签名均值分桶，查找时只看相邻的三个桶
+     */
+    private static int[] vote(int[] topSignatures, int topRows, int[] bottomSignatures, int bottomRows) {
+        // 桶宽等于容差，相近的签名一定落在相同或相邻的桶里
+        int bucketCount = 255 * 3 / SIGNATURE_TOLERANCE + 2;
+        int[] bucketStart = new int[bucketCount + 1];
+        int[] keys = new int[topRows];
+        for (int y = 0; y < topRows; y++) {
+            keys[y] = key(topSignatures, y);
+            bucketStart[keys[y] + 1]++;
+        }
+        for (int b = 0; b < bucketCount; b++) {
+            bucketStart[b + 1] += bucketStart[b];
+        }
+        int[] sortedRows = new int[topRows];
+        int[] fill = bucketStart.clone();
+        for (int y = 0; y < topRows; y++) {
+            sortedRows[fill[keys[y]]++] = y;
+        }
+
+        // 偏移范围保证重叠部分从上一张内容的末尾开始，且不超过下一张内容的长度
+        int minOffset = Math.max(0, topRows - bottomRows);
+        int maxOffset = topRows - MIN_OVERLAP;
+        int[] votes = new int[topRows + 1];
+        int[] matches = new int[MAX_OCCURRENCES];
+        int anchors = 0;
+        for (int y = 1; y < bottomRows && anchors < MAX_ANCHORS; y++) {
+            if (maxDiff(bottomSignatures, y, bottomSignatures, y - 1) <= EDGE_THRESHOLD) {
+                continue;
+            }
+            int key = key(bottomSignatures, y);
+            int found = 0;
+            boolean distinctive = true;
+            for (int b = Math.max(0, key - 1); b <= Math.min(bucketCount - 1, key + 1) && distinctive; b++) {
+                for (int i = bucketStart[b]; i < bucketStart[b + 1]; i++) {
+                    int row = sortedRows[i];
+                    if (maxDiff(topSignatures, row, bottomSignatures, y) > SIGNATURE_TOLERANCE) {
+                        continue;
+                    }
+                    if (found == MAX_OCCURRENCES) {
+                        distinctive = false;
+                        break;
+                    }
+                    matches[found++] = row;
+                }
+            }
+            if (!distinctive || found == 0) {
+                continue;
+            }
+            anchors++;
+            for (int i = 0; i < found; i++) {
+                int offset = matches[i] - y;
+                if (offset >= minOffset && offset <= maxOffset) {
+                    votes[offset]++;
+                }
+            }
+        }
+        return votes;
+    }
+
+    private static int key(int[] signatures, int row) {
+        int sum = 0;
+        for (int band = 0; band < BANDS; band++) {
+            sum += signatures[row * BANDS + band];
+        }
+        return sum / BANDS / SIGNATURE_TOLERANCE;
+    }
+
+    private static int maxDiff(int[] a, int rowA, int[] b, int rowB) {
+        int max = 0;
+        for (int band = 0; band < BANDS; band++) {
+            max = Math.max(max, Math.abs(a[rowA * BANDS + band] - b[rowB * BANDS + band]));
+        }
+        return max;
+    }
+
+    // 逐行按像素容差比较重叠部分，不一致的行超过比例时提前结束
+    private static boolean verify(int[] top, int topRow, int[] bottom, int bottomRow, int rows, int width) {
+        int allowed = rows * (100 - MIN_MATCH_PERCENT) / 100;
+        int failed = 0;
+        for (int i = 0; i < rows; i++) {
+            if (!rowsSimilar(top, topRow + i, bottom, bottomRow + i, width, CONTENT_MISMATCH_PERCENT)
+                    && ++failed > allowed) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 两行的采样像素中超出通道容差的比例不超过allowedPercent时认为相同
+     */
+    static boolean rowsSimilar(int[] a, int rowA, int[] b, int rowB, int width, int allowedPercent) {
+        int offsetA = rowA * width;
+        int offsetB = rowB * width;
+        int allowed = ((width + SAMPLE_STEP - 1) / SAMPLE_STEP) * allowedPercent / 100;
+        int bad = 0;
+        for (int x = 0; x < width; x += SAMPLE_STEP) {
+            int p = a[offsetA + x];
+            int q = b[offsetB + x];
+            if (p != q && channelDiff(p, q) > CHANNEL_TOLERANCE && ++bad > allowed) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int channelDiff(int p, int q) {
+        int r = Math.abs(((p >> 16) & 0xFF) - ((q >> 16) & 0xFF));
+        int g = Math.abs(((p >> 8) & 0xFF) - ((q >> 8) & 0xFF));
+        int b = Math.abs((p & 0xFF) - (q & 0xFF));
+        return Math.max(r, Math.max(g, b));
+    }
+}
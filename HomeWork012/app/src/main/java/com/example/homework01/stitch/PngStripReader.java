@@ -0,0 +1,245 @@
+package com.example.homework01.stitch;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * 按行流式读取PNG，与PngStripWriter对应：从上到下一段一段地取出像素行，
+ * 内存只有两行原始数据和解压缓冲，与图片高度无关。BitmapRegionDecoder读PNG的每个区域都要从头解压，
+ * 按条带读取长图时总耗时随高度平方增长，顺序读取只解压一遍。
+ * 只支持8位RGB和RGBA、非隔行扫描，其余格式在构造时抛出IOException，由调用者改用区域解码
+ */
+public final class PngStripReader implements Closeable {
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int COLOR_RGB = 2;
+    private static final int COLOR_RGBA = 6;
+    private static final int FILTER_NONE = 0;
+    private static final int FILTER_SUB = 1;
+    private static final int FILTER_UP = 2;
+    private static final int FILTER_AVERAGE = 3;
+    private static final int FILTER_PAETH = 4;
+
+    private final DataInputStream mIn;
+    private final int mWidth;
+    private final int mHeight;
+    private final int mBytesPerPixel;
+    private final Inflater mInflater = new Inflater();
+    private final byte[] mInput = new byte[64 * 1024];
+    // 当前IDAT块还没读入mInput的字节数
+    private int mChunkRemaining;
+    private boolean mEnded;
+    // 当前行和上一行去掉过滤后的数据，首字节为过滤方式；第一行的上一行全为0
+    private byte[] mRow;
+    private byte[] mPreviousRow;
+    private int mRowsRead;
+
+    /**
+     * 读取文件头，之后按从上到下的顺序读取行；格式不支持时抛出IOException
+     */
+    public PngStripReader(InputStream in) throws IOException {
+        mIn = new DataInputStream(new BufferedInputStream(in));
+        byte[] signature = new byte[SIGNATURE.length];
+        mIn.readFully(signature);
+        if (!Arrays.equals(signature, SIGNATURE)) {
+            throw new IOException("不是PNG文件");
+        }
+        int length = mIn.readInt();
+        if (mIn.readInt() != chunkType("IHDR") || length != 13) {
+            throw new IOException("PNG文件头损坏");
+        }
+        mWidth = mIn.readInt();
+        mHeight = mIn.readInt();
+        int bitDepth = mIn.readUnsignedByte();
+        int colorType = mIn.readUnsignedByte();
+        int compression = mIn.readUnsignedByte();
+        int filter = mIn.readUnsignedByte();
+        int interlace = mIn.readUnsignedByte();
+        mIn.readInt(); // CRC
+        if (mWidth <= 0 || mHeight <= 0 || bitDepth != 8 || (colorType != COLOR_RGB && colorType != COLOR_RGBA)
+                || compression != 0 || filter != 0 || interlace != 0) {
+            throw new IOException("不支持的PNG格式: 位深" + bitDepth + "，颜色类型" + colorType + "，隔行" + interlace);
+        }
+        mBytesPerPixel = colorType == COLOR_RGBA ? 4 : 3;
+        long rowBytes = (long) mWidth * mBytesPerPixel + 1;
+        if (rowBytes > Integer.MAX_VALUE) {
+            throw new IOException("PNG宽度过大: " + mWidth);
+        }
+        mRow = new byte[(int) rowBytes];
+        mPreviousRow = new byte[(int) rowBytes];
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * 读取接下来的rows行，转换成ARGB写入pixels，第r行从pixels[offset + r * stride]开始；RGB图片的透明度为255
+     */
+    public void readRows(int[] pixels, int offset, int stride, int rows) throws IOException {
+        checkRows(rows);
+        for (int r = 0; r < rows; r++) {
+            byte[] row = nextRow();
+            int p = offset + r * stride;
+            if (mBytesPerPixel == 3) {
+                for (int x = 0, i = 1; x < mWidth; x++, i += 3) {
+                    pixels[p + x] = 0xFF000000 | (row[i] & 0xFF) << 16 | (row[i + 1] & 0xFF) << 8 | (row[i + 2] & 0xFF);
+                }
+            } else {
+                for (int x = 0, i = 1; x < mWidth; x++, i += 4) {
+                    pixels[p + x] = (row[i + 3] & 0xFF) << 24 | (row[i] & 0xFF) << 16
+                            | (row[i + 1] & 0xFF) << 8 | (row[i + 2] & 0xFF);
+                }
+            }
+        }
+    }
+
+    /**
+     * 跳过接下来的rows行，仍要解压，但不转换像素
+     */
+    public void skipRows(int rows) throws IOException {
+        checkRows(rows);
+        for (int r = 0; r < rows; r++) {
+            nextRow();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        mInflater.end();
+        mIn.close();
+    }
+
+    private void checkRows(int rows) {
+        if (rows < 0 || mRowsRead + rows > mHeight) {
+            throw new IllegalStateException("读取的行数超过图片高度");
+        }
+    }
+
+    // 解压一行并去掉过滤，返回的数组在下一次调用前有效
+    private byte[] nextRow() throws IOException {
+        byte[] row = mPreviousRow;
+        mPreviousRow = mRow;
+        mRow = row;
+        inflateFully(row);
+        unfilter(row, mPreviousRow, mBytesPerPixel);
+        mRowsRead++;
+        return row;
+    }
+
+    private void inflateFully(byte[] row) throws IOException {
+        int filled = 0;
+        try {
+            while (filled < row.length) {
+                int n = mInflater.inflate(row, filled, row.length - filled);
+                filled += n;
+                if (n == 0) {
+                    if (mInflater.finished() || mInflater.needsDictionary()) {
+                        throw new EOFException("PNG图像数据不完整");
+                    }
+                    if (mInflater.needsInput()) {
+                        fillInput();
+                    }
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("PNG图像数据损坏", e);
+        }
+    }
+
+    // 把下一段IDAT数据交给解压器，跳过其他块
+    private void fillInput() throws IOException {
+        while (mChunkRemaining == 0) {
+            if (mEnded) {
+                throw new EOFException("PNG图像数据不完整");
+            }
+            int length = mIn.readInt();
+            int type = mIn.readInt();
+            if (type == chunkType("IDAT")) {
+                if (length == 0) {
+                    mIn.readInt(); // CRC
+                }
+                mChunkRemaining = length;
+            } else if (type == chunkType("IEND")) {
+                mEnded = true;
+            } else {
+                skipFully(length + 4L); // 数据和CRC
+            }
+        }
+        int n = mIn.read(mInput, 0, Math.min(mInput.length, mChunkRemaining));
+        if (n < 0) {
+            throw new EOFException("PNG文件不完整");
+        }
+        mChunkRemaining -= n;
+        if (mChunkRemaining == 0) {
+            mIn.readInt(); // CRC
+        }
+        mInflater.setInput(mInput, 0, n);
+    }
+
+    private void skipFully(long count) throws IOException {
+        while (count > 0) {
+            long skipped = mIn.skip(count);
+            if (skipped <= 0) {
+                if (mIn.read() < 0) {
+                    throw new EOFException("PNG文件不完整");
+                }
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+
+    // 按每行首字节的过滤方式还原原始数据，previous是已还原的上一行
+    static void unfilter(byte[] row, byte[] previous, int bpp) throws IOException {
+        int length = row.length;
+        switch (row[0]) {
+            case FILTER_NONE:
+                break;
+            case FILTER_SUB:
+                for (int i = 1 + bpp; i < length; i++) {
+                    row[i] += row[i - bpp];
+                }
+                break;
+            case FILTER_UP:
+                for (int i = 1; i < length; i++) {
+                    row[i] += previous[i];
+                }
+                break;
+            case FILTER_AVERAGE:
+                for (int i = 1; i < length; i++) {
+                    int left = i > bpp ? row[i - bpp] & 0xFF : 0;
+                    row[i] += (byte) ((left + (previous[i] & 0xFF)) >>> 1);
+                }
+                break;
+            case FILTER_PAETH:
+                for (int i = 1; i < length; i++) {
+                    int a = i > bpp ? row[i - bpp] & 0xFF : 0;
+                    int b = previous[i] & 0xFF;
+                    int c = i > bpp ? previous[i - bpp] & 0xFF : 0;
+                    int p = a + b - c;
+                    int pa = Math.abs(p - a);
+                    int pb = Math.abs(p - b);
+                    int pc = Math.abs(p - c);
+                    row[i] += (byte) (pa <= pb && pa <= pc ? a : pb <= pc ? b : c);
+                }
+                break;
+            default:
+                throw new IOException("无效的PNG过滤方式: " + row[0]);
+        }
+    }
+
+    private static int chunkType(String type) {
+        return type.charAt(0) << 24 | type.charAt(1) << 16 | type.charAt(2) << 8 | type.charAt(3);
+    }
+}
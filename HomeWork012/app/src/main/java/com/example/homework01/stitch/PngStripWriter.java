@@ -0,0 +1,213 @@
+package com.example.homework01.stitch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * 按行流式写出PNG（8位RGB）：调用者一段一段地提交像素行，压缩后的数据攒满一块就写成IDAT，
+ * 内存只有一行原始数据和压缩缓冲，与图片高度无关。尺寸只受PNG格式本身的限制
+ */
+public final class PngStripWriter implements StripStitcher.RowSink, Closeable {
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    // 每个IDAT块的数据量
+    private static final int CHUNK_SIZE = 64 * 1024;
+    // 每行的过滤方式
+    private static final int FILTER_NONE = 0;
+    private static final int FILTER_SUB = 1;
+    private static final int FILTER_UP = 2;
+    private static final int BYTES_PER_PIXEL = 3;
+
+    private final OutputStream mOut;
+    private final int mWidth;
+    private final int mHeight;
+    private final Deflater mDeflater;
+    private final ChunkOutputStream mChunkStream;
+    private final DeflaterOutputStream mDeflaterStream;
+    // 当前行和上一行的原始RGB，以及两种过滤后的结果，首字节为过滤方式；
+    // 第一行的上一行全为0，Up过滤等于不过滤
+    private byte[] mRow;
+    private byte[] mPreviousRow;
+    private final byte[] mSubRow;
+    private final byte[] mUpRow;
+    private int mRowsWritten;
+    private boolean mFinished;
+
+    /**
+     * 写出文件头，之后按从上到下的顺序提交height行
+     */
+    public PngStripWriter(OutputStream out, int width, int height) throws IOException {
+        if (width <= 0 || height <= 0 || (long) width * BYTES_PER_PIXEL + 1 > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("无效的图片尺寸: " + width + "x" + height);
+        }
+        mOut = out;
+        mWidth = width;
+        mHeight = height;
+        int rowBytes = width * BYTES_PER_PIXEL + 1;
+        mRow = new byte[rowBytes];
+        mPreviousRow = new byte[rowBytes];
+        mSubRow = new byte[rowBytes];
+        mUpRow = new byte[rowBytes];
+        mRow[0] = FILTER_NONE;
+        mSubRow[0] = FILTER_SUB;
+        mUpRow[0] = FILTER_UP;
+        // 中间结果只在应用内部往返，和临时文件一样取最快的压缩档
+        mDeflater = new Deflater(Deflater.BEST_SPEED);
+        mChunkStream = new ChunkOutputStream();
+        mDeflaterStream = new DeflaterOutputStream(mChunkStream, mDeflater, CHUNK_SIZE);
+
+        out.write(SIGNATURE);
+        byte[] header = new byte[13];
+        writeInt(header, 0, width);
+        writeInt(header, 4, height);
+        header[8] = 8; // 位深
+        header[9] = 2; // 真彩色RGB
+        // 压缩、过滤和隔行方式都是0
+        writeChunk("IHDR", header, header.length);
+    }
+
+    /**
+     * 提交rows行ARGB像素，第r行从pixels[offset + r * stride]开始；透明度被忽略
+     */
+    @Override
+    public void writeRows(int[] pixels, int offset, int stride, int rows) throws IOException {
+        if (mRowsWritten + rows > mHeight) {
+            throw new IllegalStateException("写入的行数超过图片高度");
+        }
+        for (int r = 0; r < rows; r++) {
+            int p = offset + r * stride;
+            byte[] row = mRow;
+            for (int x = 0, i = 1; x < mWidth; x++, i += BYTES_PER_PIXEL) {
+                int color = pixels[p + x];
+                row[i] = (byte) (color >> 16);
+                row[i + 1] = (byte) (color >> 8);
+                row[i + 2] = (byte) color;
+            }
+            mDeflaterStream.write(chooseFilter());
+            // 当前行成为下一行Up过滤的参考
+            mRow = mPreviousRow;
+            mPreviousRow = row;
+        }
+        mRowsWritten += rows;
+    }
+
+    /**
+     * 按绝对值和最小选择过滤方式，截图中大片相同的颜色用Sub或Up后几乎全是0，压缩更快也更小
+     */
+    private byte[] chooseFilter() {
+        byte[] row = mRow;
+        byte[] previous = mPreviousRow;
+        long none = 0;
+        long sub = 0;
+        long up = 0;
+        int length = row.length;
+        for (int i = 1; i < length; i++) {
+            int value = row[i];
+            int left = i > BYTES_PER_PIXEL ? row[i - BYTES_PER_PIXEL] : 0;
+            byte s = (byte) (value - left);
+            byte u = (byte) (value - previous[i]);
+            mSubRow[i] = s;
+            mUpRow[i] = u;
+            none += Math.abs((byte) value);
+            sub += Math.abs(s);
+            up += Math.abs(u);
+        }
+        if (sub <= none && sub <= up) {
+            return mSubRow;
+        }
+        return up < none ? mUpRow : row;
+    }
+
+    /**
+     * 所有行提交完后写出剩余的压缩数据和文件尾，不关闭底层输出流
+     */
+    public void finish() throws IOException {
+        if (mRowsWritten != mHeight) {
+            throw new IllegalStateException("只写入了" + mRowsWritten + "行，图片高度为" + mHeight);
+        }
+        if (mFinished) {
+            return;
+        }
+        mFinished = true;
+        mDeflaterStream.finish();
+        mChunkStream.flushChunk();
+        writeChunk("IEND", new byte[0], 0);
+        mOut.flush();
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    @Override
+    public void close() {
+        mDeflater.end();
+    }
+
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        byte[] header = new byte[8];
+        writeInt(header, 0, length);
+        for (int i = 0; i < 4; i++) {
+            header[4 + i] = (byte) type.charAt(i);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(header, 4, 4);
+        crc.update(data, 0, length);
+        byte[] footer = new byte[4];
+        writeInt(footer, 0, (int) crc.getValue());
+        mOut.write(header);
+        mOut.write(data, 0, length);
+        mOut.write(footer);
+    }
+
+    private static void writeInt(byte[] data, int offset, int value) {
+        data[offset] = (byte) (value >>> 24);
+        data[offset + 1] = (byte) (value >>> 16);
+        data[offset + 2] = (byte) (value >>> 8);
+        data[offset + 3] = (byte) value;
+    }
+
+    /**
+     * 收集压缩数据，满CHUNK_SIZE就写成一个IDAT块
+     */
+    private final class ChunkOutputStream extends OutputStream {
+        private final byte[] mBuffer = new byte[CHUNK_SIZE];
+        private int mCount;
+
+        @Override
+        public void write(int b) throws IOException {
+            if (mCount == mBuffer.length) {
+                flushChunk();
+            }
+            mBuffer[mCount++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (mCount == mBuffer.length) {
+                    flushChunk();
+                }
+                int n = Math.min(len, mBuffer.length - mCount);
+                System.arraycopy(b, off, mBuffer, mCount, n);
+                mCount += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        void flushChunk() throws IOException {
+            if (mCount > 0) {
+                writeChunk("IDAT", mBuffer, mCount);
+                mCount = 0;
+            }
+        }
+    }
+}
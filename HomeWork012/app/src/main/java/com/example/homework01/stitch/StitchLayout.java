@@ -0,0 +1,239 @@
+package com.example.homework01.stitch;
+
+/**
+ * 拼接布局：只根据每张图片的宽高计算结果尺寸和每张图片的目标矩形，不涉及像素，
+ * 结果超过尺寸上限时整体等比缩小，每张图片按同样的比例缩放到各自的矩形里
+ */
+public final class StitchLayout {
+    public static final int MODE_HORIZONTAL = 0;
+    public static final int MODE_VERTICAL = 1;
+    public static final int MODE_GRID = 2;
+
+    // 结果的最大边长和最大像素数，防止内存溢出
+    private static final int MAX_SIDE = 4096;
+    private static final int MAX_PIXELS = 2048 * 2048;
+    // 网格模式单元格和结果的最大边长
+    private static final int MAX_CELL = 512;
+    private static final int MAX_GRID_SIDE = 2048;
+
+    private final int mWidth;
+    private final int mHeight;
+    // 每张图片4个值：left, top, right, bottom
+    private final int[] mRects;
+    // 每张图片矩形的第一行在原图中的行号，只有去掉了顶部的流式布局才有
+    private final int[] mSourceTops;
+
+    private StitchLayout(int width, int height, int[] rects) {
+        this(width, height, rects, null);
+    }
+
+    private StitchLayout(int width, int height, int[] rects, int[] sourceTops) {
+        mWidth = width;
+        mHeight = height;
+        mRects = rects;
+        mSourceTops = sourceTops;
+    }
+
+    /**
+     * 按拼接模式计算布局，widths和heights是各图片的尺寸
+     */
+    public static StitchLayout compute(int mode, int[] widths, int[] heights) {
+        if (widths.length == 0 || widths.length != heights.length) {
+            throw new IllegalArgumentException("图片尺寸数量无效");
+        }
+        switch (mode) {
+            case MODE_HORIZONTAL:
+                return horizontal(widths, heights);
+            case MODE_VERTICAL:
+                return vertical(widths, heights);
+            case MODE_GRID:
+                return grid(widths, heights);
+            default:
+                throw new IllegalArgumentException("未知的拼接模式: " + mode);
+        }
+    }
+
+    // 水平拼接：从左到右排列，垂直居中
+    public static StitchLayout horizontal(int[] widths, int[] heights) {
+        int totalWidth = 0;
+        int maxHeight = 0;
+        for (int i = 0; i < widths.length; i++) {
+            totalWidth += widths[i];
+            maxHeight = Math.max(maxHeight, heights[i]);
+        }
+        int[] size = limitSize(totalWidth, maxHeight);
+        float scaleX = (float) size[0] / totalWidth;
+        float scaleY = (float) size[1] / maxHeight;
+
+        int[] rects = new int[widths.length * 4];
+        int x = 0;
+        for (int i = 0; i < widths.length; i++) {
+            int width = Math.round(widths[i] * scaleX);
+            int height = Math.round(heights[i] * scaleY);
+            int y = (size[1] - height) / 2;
+            setRect(rects, i, x, y, x + width, y + height);
+            x += width;
+        }
+        return new StitchLayout(size[0], size[1], rects);
+    }
+
+    // 垂直拼接：从上到下排列，水平居中
+    public static StitchLayout vertical(int[] widths, int[] heights) {
+        int totalHeight = 0;
+        int maxWidth = 0;
+        for (int i = 0; i < widths.length; i++) {
+            totalHeight += heights[i];
+            maxWidth = Math.max(maxWidth, widths[i]);
+        }
+        int[] size = limitSize(maxWidth, totalHeight);
+        float scaleX = (float) size[0] / maxWidth;
+        float scaleY = (float) size[1] / totalHeight;
+
+        int[] rects = new int[widths.length * 4];
+        int y = 0;
+        for (int i = 0; i < widths.length; i++) {
+            int width = Math.round(widths[i] * scaleX);
+            int height = Math.round(heights[i] * scaleY);
+            int x = (size[0] - width) / 2;
+            setRect(rects, i, x, y, x + width, y + height);
+            y += height;
+        }
+        return new StitchLayout(size[0], size[1], rects);
+    }
+
+    /**
+     * 流式垂直拼接：每张图片保持原尺寸，从上到下排列、水平居中，不受内存上限的缩放，
+     * 只检查结果尺寸能用int表示
+     */
+    public static StitchLayout verticalFullSize(int[] widths, int[] heights) {
+        return verticalFullSize(widths, heights, null, null);
+    }
+
+    /**
+     * 同上，每张图片先去掉顶部cropTops[i]行和底部cropBottoms[i]行（如与相邻截图重复的部分），
+     * 为null时不裁剪；可以用getSourceTop取得矩形第一行在原图中的行号
+     */
+    public static StitchLayout verticalFullSize(int[] widths, int[] heights, int[] cropTops, int[] cropBottoms) {
+        long totalHeight = 0;
+        int maxWidth = 0;
+        int[] sourceTops = new int[widths.length];
+        int[] visibleHeights = new int[widths.length];
+        for (int i = 0; i < widths.length; i++) {
+            int cropTop = cropTops != null ? cropTops[i] : 0;
+            int cropBottom = cropBottoms != null ? cropBottoms[i] : 0;
+            if (cropTop < 0 || cropBottom < 0 || cropTop + cropBottom > heights[i]) {
+                throw new IllegalArgumentException("无效的裁剪行数: " + cropTop + ", " + cropBottom);
+            }
+            sourceTops[i] = cropTop;
+            visibleHeights[i] = heights[i] - cropTop - cropBottom;
+            totalHeight += visibleHeights[i];
+            maxWidth = Math.max(maxWidth, widths[i]);
+        }
+        if (totalHeight > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("拼接结果过高: " + totalHeight);
+        }
+        int[] rects = new int[widths.length * 4];
+        int y = 0;
+        for (int i = 0; i < widths.length; i++) {
+            int x = (maxWidth - widths[i]) / 2;
+            setRect(rects, i, x, y, x + widths[i], y + visibleHeights[i]);
+            y += visibleHeights[i];
+        }
+        return new StitchLayout(maxWidth, Math.max(1, y), rects, sourceTops);
+    }
+
+    // 网格拼接(2x2)：最多4张，每张拉伸填满一个单元格
+    public static StitchLayout grid(int[] widths, int[] heights) {
+        int count = Math.min(widths.length, 4);
+        int rows = count > 2 ? 2 : 1;
+        int cols = count == 1 ? 1 : 2;
+
+        int cellWidth = 0;
+        int cellHeight = 0;
+        for (int i = 0; i < widths.length; i++) {
+            cellWidth = Math.max(cellWidth, widths[i]);
+            cellHeight = Math.max(cellHeight, heights[i]);
+        }
+        cellWidth = Math.min(cellWidth, MAX_CELL);
+        cellHeight = Math.min(cellHeight, MAX_CELL);
+
+        int width = cellWidth * cols;
+        int height = cellHeight * rows;
+        if (width > MAX_GRID_SIDE) {
+            float scale = (float) MAX_GRID_SIDE / width;
+            width = (int) (width * scale);
+            height = (int) (height * scale);
+        }
+        if (height > MAX_GRID_SIDE) {
+            float scale = (float) MAX_GRID_SIDE / height;
+            width = (int) (width * scale);
+            height = (int) (height * scale);
+        }
+
+        int[] rects = new int[count * 4];
+        int cellW = width / cols;
+        int cellH = height / rows;
+        for (int i = 0; i < count; i++) {
+            int x = (i % cols) * cellW;
+            int y = (i / cols) * cellH;
+            setRect(rects, i, x, y, x + cellW, y + cellH);
+        }
+        return new StitchLayout(width, height, rects);
+    }
+
+    // 先限制最大边长，再限制总像素数
+    private static int[] limitSize(int width, int height) {
+        if (width > MAX_SIDE || height > MAX_SIDE) {
+            float scale = Math.min((float) MAX_SIDE / width, (float) MAX_SIDE / height);
+            width = (int) (width * scale);
+            height = (int) (height * scale);
+        }
+        if ((long) width * height > MAX_PIXELS) {
+            float scale = (float) Math.sqrt((double) MAX_PIXELS / ((long) width * height));
+            width = (int) (width * scale);
+            height = (int) (height * scale);
+        }
+        return new int[]{Math.max(1, width), Math.max(1, height)};
+    }
+
+    private static void setRect(int[] rects, int index, int left, int top, int right, int bottom) {
+        rects[index * 4] = left;
+        rects[index * 4 + 1] = top;
+        rects[index * 4 + 2] = right;
+        rects[index * 4 + 3] = bottom;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    // 参与拼接的图片数，网格模式最多4张
+    public int getCount() {
+        return mRects.length / 4;
+    }
+
+    public int getLeft(int index) {
+        return mRects[index * 4];
+    }
+
+    public int getTop(int index) {
+        return mRects[index * 4 + 1];
+    }
+
+    public int getRight(int index) {
+        return mRects[index * 4 + 2];
+    }
+
+    public int getBottom(int index) {
+        return mRects[index * 4 + 3];
+    }
+
+    // 矩形第一行对应原图中的行号，没有裁剪时为0
+    public int getSourceTop(int index) {
+        return mSourceTops != null ? mSourceTops[index] : 0;
+    }
+}
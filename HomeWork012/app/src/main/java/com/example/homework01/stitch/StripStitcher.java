@@ -0,0 +1,88 @@
+package com.example.homework01.stitch;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 按水平条带流式合成拼接结果：每次只准备一个条带的像素，向各图片请求落在条带里的那几行，
+ * 写给按行编码的输出后复用同一块缓冲。内存只有条带大小，与结果高度无关
+ */
+public final class StripStitcher {
+    // 默认条带高度，1080宽时一个条带约1MB
+    public static final int DEFAULT_STRIP_HEIGHT = 256;
+    // 没有图片覆盖的区域的颜色
+    public static final int BACKGROUND = 0xFFFFFFFF;
+
+    /**
+     * 提供图片的像素行，行号是原图（转正后）中的行号，宽度等于目标矩形的宽度
+     */
+    public interface RowSource {
+        // 把第index张图片的[top, top + rows)行写入dst，第r行从dst[offset + r * stride]开始
+        void readRows(int index, int top, int rows, int[] dst, int offset, int stride) throws IOException;
+
+        // 第index张图片的行已经全部读完，可以释放解码器
+        void release(int index);
+    }
+
+    /**
+     * 按行接收合成结果，通常是PngStripWriter
+     */
+    public interface RowSink {
+        void writeRows(int[] pixels, int offset, int stride, int rows) throws IOException;
+    }
+
+    private final StitchLayout mLayout;
+    private final int mStripHeight;
+
+    public StripStitcher(StitchLayout layout, int stripHeight) {
+        if (stripHeight <= 0) {
+            throw new IllegalArgumentException("无效的条带高度: " + stripHeight);
+        }
+        mLayout = layout;
+        mStripHeight = Math.min(stripHeight, layout.getHeight());
+    }
+
+    public int getStripHeight() {
+        return mStripHeight;
+    }
+
+    /**
+     * 从上到下合成整张结果写给sink，每张图片读完后立即释放
+     */
+    public void stitch(RowSource source, RowSink sink) throws IOException {
+        int width = mLayout.getWidth();
+        int height = mLayout.getHeight();
+        int count = mLayout.getCount();
+        int[] strip = new int[width * mStripHeight];
+        boolean[] released = new boolean[count];
+        try {
+            for (int top = 0; top < height; top += mStripHeight) {
+                int rows = Math.min(mStripHeight, height - top);
+                int bottom = top + rows;
+                Arrays.fill(strip, 0, width * rows, BACKGROUND);
+                for (int i = 0; i < count; i++) {
+                    int imageTop = mLayout.getTop(i);
+                    int imageBottom = mLayout.getBottom(i);
+                    int from = Math.max(top, imageTop);
+                    int to = Math.min(bottom, imageBottom);
+                    if (from < to && mLayout.getRight(i) > mLayout.getLeft(i)) {
+                        source.readRows(i, mLayout.getSourceTop(i) + from - imageTop, to - from, strip,
+                                (from - top) * width + mLayout.getLeft(i), width);
+                    }
+                    if (!released[i] && imageBottom <= bottom) {
+                        released[i] = true;
+                        source.release(i);
+                    }
+                }
+                sink.writeRows(strip, 0, width, rows);
+            }
+        } finally {
+            // 出错提前结束时也释放所有解码器
+            for (int i = 0; i < count; i++) {
+                if (!released[i]) {
+                    source.release(i);
+                }
+            }
+        }
+    }
+}
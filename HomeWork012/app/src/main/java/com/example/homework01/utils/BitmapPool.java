@@ -0,0 +1,176 @@
+package com.example.homework01.utils;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Bitmap复用池：按分配字节数分桶保存不再使用的可变Bitmap，
+ * 解码(inBitmap)、滤镜、旋转翻转和拼接都从这里借用，用完归还，减少GC。
+ * 总字节数超过上限时按最近最少使用淘汰
+ */
+public class BitmapPool {
+    // 借用时最多接受需求4倍大小的Bitmap，避免小图占用大块内存
+    private static final int MAX_SIZE_MULTIPLE = 4;
+
+    private static BitmapPool sInstance;
+
+    private final long mMaxBytes;
+    private final TreeMap<Integer, ArrayDeque<Bitmap>> mBuckets = new TreeMap<>();
+    // 按归还顺序排列，最早归还的最先被淘汰
+    private final LinkedHashSet<Bitmap> mLru = new LinkedHashSet<>();
+    private long mCurrentBytes;
+
+    private int mHitCount;
+    private int mMissCount;
+    private int mEvictionCount;
+
+    // 默认池，上限为最大堆内存的1/8
+    public static synchronized BitmapPool getInstance() {
+        if (sInstance == null) {
+            sInstance = new BitmapPool(Runtime.getRuntime().maxMemory() / 8);
+        }
+        return sInstance;
+    }
+
+    public BitmapPool(long maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * 借用一个指定尺寸的Bitmap，像素已清空为透明；池中没有合适的时新建
+     */
+    public Bitmap get(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = getDirty(width, height, config);
+        bitmap.eraseColor(0);
+        return bitmap;
+    }
+
+    /**
+     * 借用一个指定尺寸的Bitmap，像素内容未定义，只适合会覆盖全部像素的调用者
+     */
+    public Bitmap getDirty(int width, int height, Bitmap.Config config) {
+        if (config == null || (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                && config == Bitmap.Config.HARDWARE)) {
+            config = Bitmap.Config.ARGB_8888;
+        }
+        Bitmap bitmap = getReusable(width, height, config);
+        if (bitmap == null) {
+            bitmap = Bitmap.createBitmap(width, height, config);
+            PerfTracer.countAllocation(bitmap.getAllocationByteCount());
+            return bitmap;
+        }
+        if (bitmap.getWidth() != width || bitmap.getHeight() != height || bitmap.getConfig() != config) {
+            bitmap.reconfigure(width, height, config);
+        }
+        return bitmap;
+    }
+
+    /**
+     * 取出一个分配大小足够的Bitmap用作BitmapFactory.Options.inBitmap，没有时返回null
+     */
+    public synchronized Bitmap getReusable(int width, int height, Bitmap.Config config) {
+        int needed = width * height * bytesPerPixel(config);
+        Map.Entry<Integer, ArrayDeque<Bitmap>> entry = mBuckets.ceilingEntry(needed);
+        if (entry == null || entry.getKey() > (long) needed * MAX_SIZE_MULTIPLE) {
+            mMissCount++;
+            return null;
+        }
+        Bitmap bitmap = entry.getValue().pollLast();
+        if (entry.getValue().isEmpty()) {
+            mBuckets.remove(entry.getKey());
+        }
+        mLru.remove(bitmap);
+        mCurrentBytes -= entry.getKey();
+        mHitCount++;
+        return bitmap;
+    }
+
+    /**
+     * 归还不再使用的Bitmap，调用后不能再使用它。不可复用的Bitmap会被直接回收
+     */
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || mLru.contains(bitmap)) {
+            return;
+        }
+        int size = bitmap.getAllocationByteCount();
+        if (!bitmap.isMutable() || size > mMaxBytes) {
+            bitmap.recycle();
+            return;
+        }
+        ArrayDeque<Bitmap> bucket = mBuckets.get(size);
+        if (bucket == null) {
+            bucket = new ArrayDeque<>();
+            mBuckets.put(size, bucket);
+        }
+        bucket.addLast(bitmap);
+        mLru.add(bitmap);
+        mCurrentBytes += size;
+        trimToSize(mMaxBytes);
+    }
+
+    // 清空池，内存不足时调用
+    public synchronized void clear() {
+        trimToSize(0);
+    }
+
+    public synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    public synchronized int getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    public synchronized long getCurrentBytes() {
+        return mCurrentBytes;
+    }
+
+    public long getMaxBytes() {
+        return mMaxBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "BitmapPool{hits=" + mHitCount + ", misses=" + mMissCount
+                + ", evictions=" + mEvictionCount + ", bytes=" + mCurrentBytes + "/" + mMaxBytes + "}";
+    }
+
+    private void trimToSize(long maxBytes) {
+        Iterator<Bitmap> iterator = mLru.iterator();
+        while (mCurrentBytes > maxBytes && iterator.hasNext()) {
+            Bitmap bitmap = iterator.next();
+            iterator.remove();
+            int size = bitmap.getAllocationByteCount();
+            ArrayDeque<Bitmap> bucket = mBuckets.get(size);
+            bucket.remove(bitmap);
+            if (bucket.isEmpty()) {
+                mBuckets.remove(size);
+            }
+            mCurrentBytes -= size;
+            mEvictionCount++;
+            bitmap.recycle();
+        }
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        } else if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                && config == Bitmap.Config.RGBA_F16) {
+            return 8;
+        }
+        return 4;
+    }
+}
@@ -1,26 +1,204 @@
 package com.example.homework01.utils;
 
 
+import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
-import android.graphics.Color;
+import android.graphics.Canvas;
 import android.graphics.Matrix;
+import android.graphics.Paint;
 import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.CancellationSignal;
+
+import com.example.homework01.filter.PixelKernel;
+import com.example.homework01.filter.PixelKernels;
+import com.example.homework01.filter.TiledExecutor;
+import com.example.homework01.geometry.Orientation;
+import com.example.homework01.geometry.OrientationRemap;
 
 public class BitmapUtils {
+    // 批量处理像素时每个线程一次处理的像素数
+    private static final int BAND_PIXELS = 64 * 1024;
+
+    /**
+     * 精确缩放解码的取舍：SPEED在解码时直接按密度缩放，QUALITY多解码一倍后再逐级滤波缩小
+     */
+    public enum ScaleMode {
+        SPEED,
+        QUALITY
+    }
+
     // 采样加载图片，避免内存溢出
     public static Bitmap decodeSampledBitmapFromFile(String filePath, int reqWidth, int reqHeight) {
-        // 第一次解析将inJustDecodeBounds设置为true，来获取图片大小
-        final BitmapFactory.Options options = new BitmapFactory.Options();
-        options.inJustDecodeBounds = true;
-        BitmapFactory.decodeFile(filePath, options);
+        return decodeSampledBitmap(ImageSource.fromFile(filePath), reqWidth, reqHeight);
+    }
+
+    // 从文件或content URI采样加载，结果已按EXIF方向转正
+    public static Bitmap decodeSampledBitmap(ImageSource source, int reqWidth, int reqHeight) {
+        long token = PerfTracer.begin("decode.sampled");
+        try {
+            // 第一次解析将inJustDecodeBounds设置为true，来获取图片大小
+            final BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            source.decode(options);
+
+            // 请求的尺寸按显示方向，宽高互换的图片在文件中的目标也要互换
+            Orientation orientation = source.readOrientation();
+            if (orientation.swapsAxes()) {
+                int swap = reqWidth;
+                reqWidth = reqHeight;
+                reqHeight = swap;
+            }
+
+            // 计算inSampleSize
+            options.inSampleSize = calculateInSampleSize(options, reqWidth, reqHeight);
+
+            // 使用获取到的inSampleSize值再次解析图片，尽量复用池中的Bitmap
+            options.inJustDecodeBounds = false;
+            options.inMutable = true;
+            int sample = options.inSampleSize;
+            int width = (options.outWidth + sample - 1) / sample;
+            int height = (options.outHeight + sample - 1) / sample;
+            if (width > 0 && height > 0) {
+                options.inBitmap = BitmapPool.getInstance().getReusable(width, height, Bitmap.Config.ARGB_8888);
+            }
+            Bitmap decoded;
+            try {
+                decoded = source.decode(options);
+            } catch (IllegalArgumentException e) {
+                // 解码器不接受这块inBitmap时归还并改为普通解码
+                BitmapPool.getInstance().put(options.inBitmap);
+                options.inBitmap = null;
+                decoded = source.decode(options);
+            }
+            PerfTracer.countDecoded(decoded, options.inBitmap);
+            return applyOrientation(decoded, orientation);
+        } finally {
+            PerfTracer.end("decode.sampled", token);
+        }
+    }
+
+    /**
+     * 解码并缩放到恰好能放进reqWidth x reqHeight的尺寸（保持宽高比，不放大），
+     * 先用2的幂inSampleSize粗采样，再按mode精确缩放到目标尺寸。
+     * 带EXIF方向的图片在缩小后的结果上转正，宽高按转正后的方向计算
+     */
+    public static Bitmap decodeScaledBitmapFromFile(String filePath, int reqWidth, int reqHeight, ScaleMode mode) {
+        return decodeScaledBitmap(ImageSource.fromFile(filePath), reqWidth, reqHeight, mode);
+    }
+
+    // 从文件或content URI精确缩放解码，两次读取都直接走来源的文件描述符
+    public static Bitmap decodeScaledBitmap(ImageSource source, int reqWidth, int reqHeight, ScaleMode mode) {
+        long token = PerfTracer.begin("decode.scaled");
+        try {
+            final BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            source.decode(options);
+            if (options.outWidth <= 0 || options.outHeight <= 0) {
+                return null;
+            }
+            // 在文件方向上计算目标尺寸，宽高互换时目标也互换
+            Orientation orientation = source.readOrientation();
+            if (orientation.swapsAxes()) {
+                int swap = reqWidth;
+                reqWidth = reqHeight;
+                reqHeight = swap;
+            }
+            int[] target = calculateTargetSize(options.outWidth, options.outHeight, reqWidth, reqHeight);
+            int targetWidth = target[0];
+            int targetHeight = target[1];
+
+            // 高质量模式保留至少两倍目标尺寸，给后面的滤波缩小留出余量
+            int headroom = mode == ScaleMode.QUALITY ? 2 : 1;
+            int sample = calculateCoarseSampleSize(options.outWidth, options.outHeight,
+                    targetWidth, targetHeight, headroom);
+            int sampledWidth = options.outWidth / sample;
+            options.inJustDecodeBounds = false;
+            options.inSampleSize = sample;
+            options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+            options.inMutable = true;
+            if (mode == ScaleMode.SPEED && sampledWidth != targetWidth) {
+                // 让解码器在输出时直接按inTargetDensity/inDensity缩放到目标宽度
+                options.inScaled = true;
+                options.inDensity = sampledWidth;
+                options.inTargetDensity = targetWidth;
+                options.inBitmap = BitmapPool.getInstance().getReusable(targetWidth, targetHeight, Bitmap.Config.ARGB_8888);
+            }
 
-        // 计算inSampleSize
-        options.inSampleSize = calculateInSampleSize(options, reqWidth, reqHeight);
+            Bitmap decoded;
+            try {
+                decoded = source.decode(options);
+            } catch (IllegalArgumentException e) {
+                BitmapPool.getInstance().put(options.inBitmap);
+                options.inBitmap = null;
+                decoded = source.decode(options);
+            }
+            PerfTracer.countDecoded(decoded, options.inBitmap);
+            if (decoded == null) {
+                return null;
+            }
+            // 按密度缩放后的Bitmap带着特殊的density，恢复成默认值，避免绘制到Canvas时被再次缩放
+            decoded.setDensity(Resources.getSystem().getDisplayMetrics().densityDpi);
+            if (decoded.getWidth() != targetWidth || decoded.getHeight() != targetHeight) {
+                decoded = resample(decoded, targetWidth, targetHeight);
+            }
+            return applyOrientation(decoded, orientation);
+        } finally {
+            PerfTracer.end("decode.scaled", token);
+        }
+    }
 
-        // 使用获取到的inSampleSize值再次解析图片
-        options.inJustDecodeBounds = false;
-        return BitmapFactory.decodeFile(filePath, options);
+    /**
+     * 把按文件方向解码的结果转成显示方向，只在已缩小的Bitmap上重排一次，输入归还到复用池
+     */
+    public static Bitmap applyOrientation(Bitmap decoded, Orientation orientation) {
+        if (decoded == null || orientation.isIdentity()) {
+            return decoded;
+        }
+        Bitmap result = transformBitmap(decoded, orientation);
+        BitmapPool.getInstance().put(decoded);
+        return result;
+    }
+
+    // 滤波缩放到目标尺寸，每次最多缩小一半避免双线性采样丢像素产生锯齿，输入会被归还到复用池
+    private static Bitmap resample(Bitmap bitmap, int width, int height) {
+        Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        Bitmap current = bitmap;
+        while (true) {
+            int nextWidth = Math.max(width, current.getWidth() / 2);
+            int nextHeight = Math.max(height, current.getHeight() / 2);
+            if (current.getWidth() <= width * 2 && current.getHeight() <= height * 2) {
+                nextWidth = width;
+                nextHeight = height;
+            }
+            Bitmap next = BitmapPool.getInstance().get(nextWidth, nextHeight, Bitmap.Config.ARGB_8888);
+            new Canvas(next).drawBitmap(current, null, new Rect(0, 0, nextWidth, nextHeight), paint);
+            BitmapPool.getInstance().put(current);
+            current = next;
+            if (nextWidth == width && nextHeight == height) {
+                return current;
+            }
+        }
+    }
+
+    // 保持宽高比放进maxWidth x maxHeight的尺寸，不放大，返回{宽, 高}
+    public static int[] calculateTargetSize(int width, int height, int maxWidth, int maxHeight) {
+        double scale = Math.min(1.0, Math.min((double) maxWidth / width, (double) maxHeight / height));
+        return new int[]{
+                Math.max(1, (int) Math.round(width * scale)),
+                Math.max(1, (int) Math.round(height * scale))
+        };
+    }
+
+    // 粗采样率：取最大的2的幂，使采样后的宽高仍不小于目标尺寸的headroom倍
+    public static int calculateCoarseSampleSize(int width, int height, int targetWidth, int targetHeight, int headroom) {
+        int sample = 1;
+        while (width / (sample * 2) >= targetWidth * headroom
+                && height / (sample * 2) >= targetHeight * headroom) {
+            sample *= 2;
+        }
+        return sample;
     }
 
     // 计算图片采样率
@@ -43,188 +221,202 @@ public class BitmapUtils {
         return inSampleSize;
     }
 
+    // 生成不超过指定尺寸的代理图用于交互预览，原图已经足够小时直接复制
+    public static Bitmap createProxyBitmap(Bitmap bitmap, int maxWidth, int maxHeight) {
+        float scale = Math.min((float) maxWidth / bitmap.getWidth(), (float) maxHeight / bitmap.getHeight());
+        if (scale >= 1f) {
+            return bitmap.copy(bitmap.getConfig(), true);
+        }
+        int width = Math.max(1, Math.round(bitmap.getWidth() * scale));
+        int height = Math.max(1, Math.round(bitmap.getHeight() * scale));
+        return Bitmap.createScaledBitmap(bitmap, width, height, true);
+    }
+
+    // 复制为可变Bitmap，目标从复用池借用
+    public static Bitmap copyBitmap(Bitmap bitmap) {
+        Bitmap result = BitmapPool.getInstance().get(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+        new Canvas(result).drawBitmap(bitmap, 0, 0, null);
+        return result;
+    }
+
     // 裁剪图片
     public static Bitmap cropBitmap(Bitmap bitmap, Rect cropRect) {
-        // 确保裁剪区域不超出图片边界
-        int left = Math.max(0, cropRect.left);
-        int top = Math.max(0, cropRect.top);
-        int right = Math.min(bitmap.getWidth(), cropRect.right);
-        int bottom = Math.min(bitmap.getHeight(), cropRect.bottom);
+        long token = PerfTracer.begin("crop");
+        try {
+            // 确保裁剪区域不超出图片边界
+            int left = Math.max(0, cropRect.left);
+            int top = Math.max(0, cropRect.top);
+            int right = Math.min(bitmap.getWidth(), cropRect.right);
+            int bottom = Math.min(bitmap.getHeight(), cropRect.bottom);
         
-        // 确保裁剪区域有效
-        if (left >= right || top >= bottom) {
-            return bitmap;
-        }
+            // 确保裁剪区域有效
+            if (left >= right || top >= bottom) {
+                return bitmap;
+            }
         
-        return Bitmap.createBitmap(bitmap, left, top,
-                right - left, bottom - top);
+            Bitmap result = BitmapPool.getInstance().get(right - left, bottom - top, bitmap.getConfig());
+            new Canvas(result).drawBitmap(bitmap, new Rect(left, top, right, bottom),
+                    new Rect(0, 0, right - left, bottom - top), null);
+            return result;
+        } finally {
+            PerfTracer.end("crop", token);
+        }
     }
 
-    // 旋转图片
+    // 旋转图片，90度的倍数直接重排像素，其他角度按矩阵滤波绘制
     public static Bitmap rotateBitmap(Bitmap bitmap, int degrees) {
-        if (degrees == 0) {
-            return bitmap;
-        }
+        long token = PerfTracer.begin("rotate");
+        try {
+            if (degrees == 0) {
+                return bitmap;
+            }
+            if (degrees % 90 == 0) {
+                return transformBitmap(bitmap, Orientation.rotation(degrees));
+            }
         
-        Matrix matrix = new Matrix();
-        matrix.postRotate(degrees);
-        return Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+            Matrix matrix = new Matrix();
+            matrix.postRotate(degrees);
+            return drawTransformed(bitmap, matrix);
+        } finally {
+            PerfTracer.end("rotate", token);
+        }
     }
 
     // 翻转图片
     public static Bitmap flipBitmap(Bitmap bitmap, boolean isHorizontal) {
-        Matrix matrix = new Matrix();
-        matrix.postScale(isHorizontal ? -1 : 1, isHorizontal ? 1 : -1);
-        return Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+        long token = PerfTracer.begin("flip");
+        try {
+            return transformBitmap(bitmap, isHorizontal ? Orientation.flipHorizontal() : Orientation.flipVertical());
+        } finally {
+            PerfTracer.end("flip", token);
+        }
     }
 
-    // 调节亮度和对比度
-    public static Bitmap adjustBrightnessContrast(Bitmap bitmap, int brightness, float contrast) {
-        int width = bitmap.getWidth();
-        int height = bitmap.getHeight();
-        Bitmap result = Bitmap.createBitmap(width, height, bitmap.getConfig());
-
-        // 亮度范围从-100到100，转换为-255到255
-        int brightnessValue = (int) (brightness / 100.0 * 255);
-        // 对比度范围从-50到150，转换为0.5到2.5
-        float contrastFactor = (100 + contrast * 100) / 100.0f;
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int pixel = bitmap.getPixel(x, y);
-                int r = Color.red(pixel);
-                int g = Color.green(pixel);
-                int b = Color.blue(pixel);
-
-                // 调节亮度
-                r = Math.max(0, Math.min(255, r + brightnessValue));
-                g = Math.max(0, Math.min(255, g + brightnessValue));
-                b = Math.max(0, Math.min(255, b + brightnessValue));
-
-                // 调节对比度
-                r = (int) (((r / 255.0f - 0.5f) * contrastFactor + 0.5f) * 255);
-                g = (int) (((g / 255.0f - 0.5f) * contrastFactor + 0.5f) * 255);
-                b = (int) (((b / 255.0f - 0.5f) * contrastFactor + 0.5f) * 255);
-
-                r = Math.max(0, Math.min(255, r));
-                g = Math.max(0, Math.min(255, g));
-                b = Math.max(0, Math.min(255, b));
-
-                result.setPixel(x, y, Color.rgb(r, g, b));
+    /**
+     * 按D4方向变换：整图像素读入int[]后按行带重排写回，不经过滤波，
+     * 多次旋转翻转先合并成一个方向再调用，只需一遍。方向为原样时返回输入本身
+     */
+    public static Bitmap transformBitmap(Bitmap bitmap, Orientation orientation) {
+        if (orientation.isIdentity()) {
+            return bitmap;
+        }
+        Bitmap.Config config = bitmap.getConfig();
+        if (config != Bitmap.Config.ARGB_8888 && config != Bitmap.Config.RGB_565) {
+            // getPixels会损失精度的格式和硬件Bitmap交给Canvas处理
+            return drawTransformed(bitmap, toMatrix(orientation));
+        }
+        long token = PerfTracer.begin("transform");
+        try {
+            int width = bitmap.getWidth();
+            int height = bitmap.getHeight();
+            int outWidth = orientation.getOutputWidth(width, height);
+            int outHeight = orientation.getOutputHeight(width, height);
+            Bitmap result = BitmapPool.getInstance().getDirty(outWidth, outHeight, config);
+
+            int[] pixels = new int[width * height];
+            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+            int bandRows = Math.max(1, Math.min(outHeight, BAND_PIXELS / outWidth));
+            int[] band = new int[outWidth * bandRows];
+            for (int top = 0; top < outHeight; top += bandRows) {
+                int rows = Math.min(bandRows, outHeight - top);
+                OrientationRemap.applyRows(pixels, width, height, orientation, top, rows, band);
+                result.setPixels(band, 0, outWidth, 0, top, outWidth, rows);
             }
+            return result;
+        } finally {
+            PerfTracer.end("transform", token);
+        }
+    }
+
+    // 方向对应的绘制矩阵：先翻转再旋转
+    private static Matrix toMatrix(Orientation orientation) {
+        Matrix matrix = new Matrix();
+        if (orientation.isMirrored()) {
+            matrix.postScale(-1, 1);
         }
+        matrix.postRotate(orientation.getRotationDegrees());
+        return matrix;
+    }
+
+    // 按变换后的包围盒从池中借用目标Bitmap并绘制，代替createBitmap每次新分配
+    private static Bitmap drawTransformed(Bitmap bitmap, Matrix matrix) {
+        RectF bounds = new RectF(0, 0, bitmap.getWidth(), bitmap.getHeight());
+        matrix.mapRect(bounds);
+        matrix.postTranslate(-bounds.left, -bounds.top);
+        int width = Math.max(1, Math.round(bounds.width()));
+        int height = Math.max(1, Math.round(bounds.height()));
+        Bitmap result = BitmapPool.getInstance().get(width, height, bitmap.getConfig());
+        new Canvas(result).drawBitmap(bitmap, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
         return result;
     }
 
+    // 调节亮度和对比度
+    public static Bitmap adjustBrightnessContrast(Bitmap bitmap, int brightness, float contrast) {
+        return applyKernel(bitmap, PixelKernels.brightnessContrast(brightness, contrast));
+    }
+
     // 黑白滤镜
     public static Bitmap applyBlackWhiteFilter(Bitmap bitmap) {
-        int width = bitmap.getWidth();
-        int height = bitmap.getHeight();
-        Bitmap result = Bitmap.createBitmap(width, height, bitmap.getConfig());
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int pixel = bitmap.getPixel(x, y);
-                int r = Color.red(pixel);
-                int g = Color.green(pixel);
-                int b = Color.blue(pixel);
-                int gray = (int) (0.299 * r + 0.587 * g + 0.114 * b);
-                result.setPixel(x, y, Color.rgb(gray, gray, gray));
-            }
-        }
-        return result;
+        return applyKernel(bitmap, PixelKernels.blackWhite());
     }
 
     // 复古滤镜
     public static Bitmap applyVintageFilter(Bitmap bitmap) {
-        int width = bitmap.getWidth();
-        int height = bitmap.getHeight();
-        Bitmap result = Bitmap.createBitmap(width, height, bitmap.getConfig());
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int pixel = bitmap.getPixel(x, y);
-                int r = Color.red(pixel);
-                int g = Color.green(pixel);
-                int b = Color.blue(pixel);
-
-                int newR = (int) (0.393 * r + 0.769 * g + 0.189 * b);
-                int newG = (int) (0.349 * r + 0.686 * g + 0.168 * b);
-                int newB = (int) (0.272 * r + 0.534 * g + 0.131 * b);
-
-                newR = Math.min(255, newR);
-                newG = Math.min(255, newG);
-                newB = Math.min(255, newB);
-
-                result.setPixel(x, y, Color.rgb(newR, newG, newB));
-            }
-        }
-        return result;
+        return applyKernel(bitmap, PixelKernels.vintage());
     }
 
     // 暖色调滤镜
     public static Bitmap applyWarmFilter(Bitmap bitmap) {
-        int width = bitmap.getWidth();
-        int height = bitmap.getHeight();
-        Bitmap result = Bitmap.createBitmap(width, height, bitmap.getConfig());
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int pixel = bitmap.getPixel(x, y);
-                int r = Color.red(pixel);
-                int g = Color.green(pixel);
-                int b = Color.blue(pixel);
-
-                r = Math.min(255, r + 30);
-                b = Math.max(0, b - 30);
-
-                result.setPixel(x, y, Color.rgb(r, g, b));
-            }
-        }
-        return result;
+        return applyKernel(bitmap, PixelKernels.warm());
     }
 
     // 冷色调滤镜
     public static Bitmap applyColdFilter(Bitmap bitmap) {
-        int width = bitmap.getWidth();
-        int height = bitmap.getHeight();
-        Bitmap result = Bitmap.createBitmap(width, height, bitmap.getConfig());
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int pixel = bitmap.getPixel(x, y);
-                int r = Color.red(pixel);
-                int g = Color.green(pixel);
-                int b = Color.blue(pixel);
-
-                r = Math.max(0, r - 30);
-                b = Math.min(255, b + 30);
-
-                result.setPixel(x, y, Color.rgb(r, g, b));
-            }
-        }
-        return result;
+        return applyKernel(bitmap, PixelKernels.cold());
     }
-    
+
     // 清新滤镜
     public static Bitmap applyFreshFilter(Bitmap bitmap) {
-        int width = bitmap.getWidth();
-        int height = bitmap.getHeight();
-        Bitmap result = Bitmap.createBitmap(width, height, bitmap.getConfig());
+        return applyKernel(bitmap, PixelKernels.fresh());
+    }
 
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int pixel = bitmap.getPixel(x, y);
-                int r = Color.red(pixel);
-                int g = Color.green(pixel);
-                int b = Color.blue(pixel);
+    // 设置像素处理使用的线程数，用于测量加速比
+    public static void setParallelism(int parallelism) {
+        TiledExecutor.getDefault().setParallelism(parallelism);
+    }
 
-                g = Math.min(255, g + 20);
-                b = Math.min(255, b + 10);
+    // 按行带批量读取像素，执行内核后一次性写回，避免逐像素的getPixel/setPixel
+    public static Bitmap applyKernel(Bitmap bitmap, PixelKernel kernel) {
+        return applyKernel(bitmap, kernel, null);
+    }
 
-                result.setPixel(x, y, Color.rgb(r, g, b));
+    // 可取消的版本，每处理完一个行带检查一次signal，取消时抛出OperationCanceledException
+    public static Bitmap applyKernel(Bitmap bitmap, PixelKernel kernel, CancellationSignal signal) {
+        long token = PerfTracer.begin("filter.kernel");
+        try {
+            int width = bitmap.getWidth();
+            int height = bitmap.getHeight();
+            Bitmap result = BitmapPool.getInstance().getDirty(width, height, bitmap.getConfig());
+
+            // 每个线程分到约64K像素，缓冲区在所有行带之间复用
+            TiledExecutor executor = TiledExecutor.getDefault();
+            int bandPixels = BAND_PIXELS * executor.getParallelism();
+            int bandRows = Math.max(1, Math.min(height, bandPixels / Math.max(1, width)));
+            int[] buffer = new int[width * bandRows];
+
+            for (int top = 0; top < height; top += bandRows) {
+                if (signal != null && signal.isCanceled()) {
+                    BitmapPool.getInstance().put(result);
+                    signal.throwIfCanceled();
+                }
+                int rows = Math.min(bandRows, height - top);
+                bitmap.getPixels(buffer, 0, width, 0, top, width, rows);
+                executor.run(buffer, width, rows, kernel);
+                result.setPixels(buffer, 0, width, 0, top, width, rows);
             }
+            return result;
+        } finally {
+            PerfTracer.end("filter.kernel", token);
         }
-        return result;
     }
-}
\ No newline at end of file
+}
@@ -1,74 +1,142 @@
 package com.example.homework01.utils;
 
+import android.content.ContentResolver;
+import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
 import android.graphics.Bitmap;
+import android.media.MediaScannerConnection;
 import android.net.Uri;
+import android.os.Build;
 import android.os.Environment;
 import android.provider.MediaStore;
 import android.widget.Toast;
 
+import androidx.annotation.RequiresApi;
 import androidx.core.content.FileProvider;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
 
 public class FileUtils {
-    // 保存Bitmap到相册
-    public static boolean saveBitmapToGallery(Context context, Bitmap bitmap) {
-        String fileName = "EDITOR_" + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date()) + ".jpg";
-        File storageDir = new File(Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_PICTURES), "PhotoEditor");
+    // 相册中保存编辑结果的目录
+    private static final String GALLERY_DIR = "PhotoEditor";
 
-        if (!storageDir.exists()) {
-            if (!storageDir.mkdirs()) {
-                return false;
+    /**
+     * 保存Bitmap到相册：一次编码直接写入目标位置，返回相册中的Uri。会阻塞，不要在主线程调用
+     */
+    public static Uri saveBitmapToGallery(Context context, Bitmap bitmap, OutputFormat format) throws IOException {
+        return saveStreamToGallery(context, format, os -> format.encode(bitmap, os));
+    }
+
+    // 保存已经编码好的数据，format只用于文件扩展名和MIME类型
+    public static Uri saveEncodedToGallery(Context context, byte[] data, OutputFormat format) throws IOException {
+        return saveStreamToGallery(context, format, os -> os.write(data));
+    }
+
+    /**
+     * 把原图文件原样复制到相册，不解码像素，多大的图都只占一个缓冲区；format要与原图的类型一致
+     */
+    public static Uri copyToGallery(Context context, ImageSource source, OutputFormat format) throws IOException {
+        return saveStreamToGallery(context, format, os -> {
+            try (InputStream in = source.openStream()) {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    os.write(buffer, 0, read);
+                }
             }
+        });
+    }
+
+    /**
+     * 把writer写出的数据保存到相册，返回相册中的Uri，用于按行流式编码等不经过整张Bitmap的输出。
+     * Android 10及以上通过MediaStore的IS_PENDING写入，写完前其他应用看不到这张图；
+     * 更早的版本写入公共图片目录后通知媒体扫描。写入失败时删除不完整的条目
+     */
+    public static Uri saveStreamToGallery(Context context, OutputFormat format,
+                                          TempFileCache.StreamWriter writer) throws IOException {
+        String fileName = "EDITOR_" + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date())
+                + format.getExtension();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            return saveToMediaStore(context, format, fileName, writer);
         }
 
+        File storageDir = new File(Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_PICTURES), GALLERY_DIR);
+        if (!storageDir.exists() && !storageDir.mkdirs()) {
+            throw new IOException("无法创建目录: " + storageDir);
+        }
         File imageFile = new File(storageDir, fileName);
-        try (FileOutputStream fos = new FileOutputStream(imageFile)) {
-            bitmap.compress(Bitmap.CompressFormat.JPEG, 100, fos);
-            fos.flush();
-
-            // 通知相册刷新
-            MediaStore.Images.Media.insertImage(context.getContentResolver(),
-                    imageFile.getAbsolutePath(), imageFile.getName(), null);
-
-            // 发送广播更新图库
-            context.sendBroadcast(new Intent(Intent.ACTION_MEDIA_SCANNER_SCAN_FILE, Uri.fromFile(imageFile)));
-            return true;
+        try (OutputStream os = new BufferedOutputStream(new FileOutputStream(imageFile))) {
+            writer.writeTo(os);
         } catch (IOException e) {
-            e.printStackTrace();
-            return false;
+            imageFile.delete();
+            throw e;
         }
+        // 只通知扫描已写好的文件，不再重新编码一份
+        MediaScannerConnection.scanFile(context, new String[]{imageFile.getAbsolutePath()},
+                new String[]{format.getMimeType()}, null);
+        return Uri.fromFile(imageFile);
     }
 
-    // 保存临时Bitmap文件
-    public static File saveTempBitmap(Context context, Bitmap bitmap) {
-        String fileName = "TEMP_" + System.currentTimeMillis() + ".jpg";
-        File tempDir = new File(context.getCacheDir(), "temp");
-
-        if (!tempDir.exists()) {
-            tempDir.mkdirs();
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private static Uri saveToMediaStore(Context context, OutputFormat format, String fileName,
+                                        TempFileCache.StreamWriter writer) throws IOException {
+        ContentResolver resolver = context.getContentResolver();
+        ContentValues values = new ContentValues();
+        values.put(MediaStore.Images.Media.DISPLAY_NAME, fileName);
+        values.put(MediaStore.Images.Media.MIME_TYPE, format.getMimeType());
+        values.put(MediaStore.Images.Media.RELATIVE_PATH, Environment.DIRECTORY_PICTURES + "/" + GALLERY_DIR);
+        values.put(MediaStore.Images.Media.IS_PENDING, 1);
+        Uri uri = resolver.insert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, values);
+        if (uri == null) {
+            throw new IOException("无法创建相册条目");
+        }
+        try {
+            try (OutputStream os = resolver.openOutputStream(uri)) {
+                if (os == null) {
+                    throw new IOException("无法打开输出流: " + uri);
+                }
+                BufferedOutputStream buffered = new BufferedOutputStream(os);
+                writer.writeTo(buffered);
+                buffered.flush();
+            }
+            // 写入完成后才对其他应用可见
+            values.clear();
+            values.put(MediaStore.Images.Media.IS_PENDING, 0);
+            resolver.update(uri, values, null, null);
+            return uri;
+        } catch (IOException | RuntimeException e) {
+            resolver.delete(uri, null, null);
+            throw e;
         }
+    }
 
-        File tempFile = new File(tempDir, fileName);
-        try (FileOutputStream fos = new FileOutputStream(tempFile)) {
-            bitmap.compress(Bitmap.CompressFormat.JPEG, 100, fos);
-            return tempFile;
+    // 保存分享用的文件，按大小上限调整JPEG质量；可能编码多次，不要在主线程调用
+    public static File saveShareBitmap(Context context, Bitmap bitmap, long maxBytes) {
+        OutputFormat format = OutputFormat.SHARE;
+        long token = PerfTracer.begin("save.share");
+        try {
+            byte[] data = format.encodeToSize(bitmap, maxBytes);
+            return TempFileCache.getInstance(context).write("SHARE_", format.getExtension(),
+                    os -> os.write(data));
         } catch (IOException e) {
             e.printStackTrace();
             return null;
+        } finally {
+            PerfTracer.end("save.share", token);
         }
     }
 
-    // 分享到抖音
-    public static void shareToDouyin(Context context, Bitmap bitmap) {
-        File tempFile = saveTempBitmap(context, bitmap);
+    // 分享到抖音，tempFile由ImageSaver.prepareShare在后台生成
+    public static void shareToDouyin(Context context, File tempFile) {
         if (tempFile == null) {
             Toast.makeText(context, "分享失败：文件创建失败", Toast.LENGTH_SHORT).show();
             return;
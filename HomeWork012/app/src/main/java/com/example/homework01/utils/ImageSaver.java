@@ -0,0 +1,183 @@
+package com.example.homework01.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 后台保存：在单独的线程上渲染、编码并写入相册，进度和结果回到主线程回调。
+ * 多次保存按提交顺序依次执行
+ */
+public class ImageSaver {
+    private static final String TAG = "ImageSaver";
+    // 各阶段完成时报告的进度
+    private static final int PROGRESS_RENDERED = 40;
+    private static final int PROGRESS_WRITTEN = 90;
+
+    /**
+     * 在后台线程生成要保存的Bitmap，保存完成后会归还到复用池
+     */
+    public interface BitmapSource {
+        Bitmap render();
+    }
+
+    /**
+     * 在后台线程直接生成编码好的文件数据，返回null表示不适用，改为渲染Bitmap后编码
+     */
+    public interface EncodedSource {
+        byte[] encode() throws IOException;
+    }
+
+    /**
+     * 分享文件准备好后在主线程回调，渲染或编码失败时file为null
+     */
+    public interface ShareCallback {
+        void onShareFileReady(File file);
+    }
+
+    /**
+     * 保存进度和结果，都在主线程回调
+     */
+    public interface Callback {
+        void onProgress(int percent);
+
+        void onSaved(Uri uri);
+
+        void onFailed(Exception e);
+    }
+
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "ImageSaver");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    private ImageSaver() {
+    }
+
+    // 异步保存到相册，按format指定的编码类型和质量
+    public static void saveToGallery(Context context, BitmapSource source,
+                                     OutputFormat format, Callback callback) {
+        saveToGallery(context, null, source, format, callback);
+    }
+
+    /**
+     * 先尝试encoded直接得到文件数据（如无损变换原图），不适用时再渲染Bitmap编码保存
+     */
+    public static void saveToGallery(Context context, EncodedSource encoded, BitmapSource source,
+                                     OutputFormat format, Callback callback) {
+        Context appContext = context.getApplicationContext();
+        sExecutor.execute(() -> {
+            Bitmap bitmap = null;
+            try {
+                postProgress(callback, 0);
+                byte[] data = encoded != null ? encoded.encode() : null;
+                Uri uri;
+                if (data != null) {
+                    postProgress(callback, PROGRESS_RENDERED);
+                    uri = FileUtils.saveEncodedToGallery(appContext, data, format);
+                } else {
+                    bitmap = source.render();
+                    if (bitmap == null) {
+                        throw new IllegalStateException("没有可保存的图片");
+                    }
+                    postProgress(callback, PROGRESS_RENDERED);
+                    uri = FileUtils.saveBitmapToGallery(appContext, bitmap, format);
+                }
+                postProgress(callback, PROGRESS_WRITTEN);
+                sMainHandler.post(() -> {
+                    callback.onProgress(100);
+                    callback.onSaved(uri);
+                });
+            } catch (Exception | OutOfMemoryError e) {
+                Exception error = e instanceof Exception ? (Exception) e : new RuntimeException(e);
+                sMainHandler.post(() -> callback.onFailed(error));
+            } finally {
+                if (bitmap != null) {
+                    BitmapPool.getInstance().put(bitmap);
+                }
+            }
+        });
+    }
+
+    /**
+     * 异步把没有编辑过的原图文件原样写入相册，不解码也不重新编码，保持原图的分辨率和画质。
+     * 与其他保存按提交顺序执行，format要与原图的类型一致
+     */
+    public static void copyToGallery(Context context, ImageSource source, OutputFormat format, Callback callback) {
+        Context appContext = context.getApplicationContext();
+        saveInBackground(() -> FileUtils.copyToGallery(appContext, source, format), callback);
+    }
+
+    /**
+     * 异步把writer写出的数据保存到相册，用于按条带流式渲染编码的大图，writer在保存线程上调用
+     */
+    public static void streamToGallery(Context context, OutputFormat format, TempFileCache.StreamWriter writer,
+                                       Callback callback) {
+        Context appContext = context.getApplicationContext();
+        saveInBackground(() -> FileUtils.saveStreamToGallery(appContext, format, writer), callback);
+    }
+
+    /**
+     * 在保存线程上写入相册并返回Uri
+     */
+    private interface GalleryWrite {
+        Uri write() throws IOException;
+    }
+
+    private static void saveInBackground(GalleryWrite write, Callback callback) {
+        sExecutor.execute(() -> {
+            try {
+                postProgress(callback, 0);
+                Uri uri = write.write();
+                sMainHandler.post(() -> {
+                    callback.onProgress(100);
+                    callback.onSaved(uri);
+                });
+            } catch (Exception | OutOfMemoryError e) {
+                Exception error = e instanceof Exception ? (Exception) e : new RuntimeException(e);
+                sMainHandler.post(() -> callback.onFailed(error));
+            }
+        });
+    }
+
+    /**
+     * 在保存线程上渲染，并按maxBytes查找质量编码成分享用的临时文件，与保存按提交顺序执行。
+     * 查找质量可能要编码好几次，都不在主线程进行；渲染结果用完归还到复用池
+     */
+    public static void prepareShare(Context context, BitmapSource source, long maxBytes,
+                                    ShareCallback callback) {
+        Context appContext = context.getApplicationContext();
+        sExecutor.execute(() -> {
+            Bitmap bitmap = null;
+            File file = null;
+            try {
+                bitmap = source.render();
+                if (bitmap != null) {
+                    file = FileUtils.saveShareBitmap(appContext, bitmap, maxBytes);
+                }
+            } catch (RuntimeException | OutOfMemoryError e) {
+                Log.e(TAG, "share failed", e);
+            } finally {
+                if (bitmap != null) {
+                    BitmapPool.getInstance().put(bitmap);
+                }
+            }
+            File result = file;
+            sMainHandler.post(() -> callback.onShareFileReady(result));
+        });
+    }
+
+    private static void postProgress(Callback callback, int percent) {
+        sMainHandler.post(() -> callback.onProgress(percent));
+    }
+}
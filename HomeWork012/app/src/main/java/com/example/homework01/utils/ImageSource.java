@@ -0,0 +1,249 @@
+package com.example.homework01.utils;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.os.Build;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+import android.util.Size;
+
+import com.example.homework01.geometry.Orientation;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 图片来源：本地文件或content URI。content URI通过ContentResolver打开ParcelFileDescriptor直接解码，
+ * 不再查询已废弃的DATA列，也不先把整个文件复制到缓存目录；读取尺寸、采样解码和区域解码都走同一个来源。
+ * 页面之间用toString()的结果传递，接收方用parse/fromIntent还原
+ */
+public abstract class ImageSource {
+    private static final String TAG = "ImageSource";
+    public static final String EXTRA_IMAGE_SOURCE = "image_source";
+    // 旧版本传递文件路径用的键
+    private static final String EXTRA_IMAGE_PATH = "image_path";
+
+    public static ImageSource fromFile(String path) {
+        return new FileSource(path);
+    }
+
+    // file://按文件处理，其余交给ContentResolver
+    public static ImageSource fromUri(Context context, Uri uri) {
+        if (ContentResolver.SCHEME_FILE.equals(uri.getScheme())) {
+            return new FileSource(uri.getPath());
+        }
+        return new UriSource(context.getApplicationContext().getContentResolver(), uri);
+    }
+
+    // 解析toString()的结果：绝对路径按文件处理，其余按URI处理；空值返回null
+    public static ImageSource parse(Context context, String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        if (value.startsWith("/")) {
+            return new FileSource(value);
+        }
+        return fromUri(context, Uri.parse(value));
+    }
+
+    // 从Intent中取出来源，兼容只传了文件路径的旧调用方
+    public static ImageSource fromIntent(Context context, Intent intent) {
+        String value = intent.getStringExtra(EXTRA_IMAGE_SOURCE);
+        if (value == null) {
+            value = intent.getStringExtra(EXTRA_IMAGE_PATH);
+        }
+        return parse(context, value);
+    }
+
+    public void putTo(Intent intent) {
+        intent.putExtra(EXTRA_IMAGE_SOURCE, toString());
+    }
+
+    // 只读取文件头获取尺寸，outWidth/outHeight为-1表示无法读取
+    public BitmapFactory.Options decodeBounds() {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decode(options);
+        return options;
+    }
+
+    /**
+     * 按options解码，无法打开或解码失败时返回null；
+     * 与BitmapFactory一样，inBitmap不被接受时抛出IllegalArgumentException
+     */
+    public abstract Bitmap decode(BitmapFactory.Options options);
+
+    // 创建区域解码器，调用者负责recycle
+    public abstract BitmapRegionDecoder newRegionDecoder() throws IOException;
+
+    // 读取EXIF方向，解码出的像素经过这个变换后才是正确的显示方向；没有或读取失败时不变换
+    public Orientation readOrientation() {
+        try {
+            ExifInterface exif = openExif();
+            if (exif == null) {
+                return Orientation.IDENTITY;
+            }
+            return Orientation.fromExif(exif.getAttributeInt(
+                    ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL));
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "read orientation failed: " + this, e);
+            return Orientation.IDENTITY;
+        }
+    }
+
+    // 只解析文件头中的EXIF，不解码像素
+    abstract ExifInterface openExif() throws IOException;
+
+    // 打开原始的文件数据，调用者负责关闭
+    public abstract InputStream openStream() throws IOException;
+
+    // 本地文件来源对应的文件，content URI返回null
+    public File getFile() {
+        return null;
+    }
+
+    // 加载长边不超过size的缩略图，失败或已取消时返回null
+    public Bitmap loadThumbnail(int size, CancellationSignal signal) {
+        if (signal != null && signal.isCanceled()) {
+            return null;
+        }
+        return BitmapUtils.decodeScaledBitmap(this, size, size, BitmapUtils.ScaleMode.SPEED);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ImageSource && o.getClass() == getClass() && toString().equals(o.toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    private static final class FileSource extends ImageSource {
+        private final String mPath;
+
+        FileSource(String path) {
+            mPath = path;
+        }
+
+        @Override
+        public Bitmap decode(BitmapFactory.Options options) {
+            return BitmapFactory.decodeFile(mPath, options);
+        }
+
+        @Override
+        public BitmapRegionDecoder newRegionDecoder() throws IOException {
+            return BitmapRegionDecoder.newInstance(mPath, false);
+        }
+
+        @Override
+        ExifInterface openExif() throws IOException {
+            return new ExifInterface(mPath);
+        }
+
+        @Override
+        public InputStream openStream() throws IOException {
+            return new FileInputStream(mPath);
+        }
+
+        @Override
+        public File getFile() {
+            return new File(mPath);
+        }
+
+        @Override
+        public String toString() {
+            return mPath;
+        }
+    }
+
+    private static final class UriSource extends ImageSource {
+        private final ContentResolver mResolver;
+        private final Uri mUri;
+
+        UriSource(ContentResolver resolver, Uri uri) {
+            mResolver = resolver;
+            mUri = uri;
+        }
+
+        // 每次解码单独打开描述符；decodeFileDescriptor不改变读取位置，不需要复制数据
+        @Override
+        public Bitmap decode(BitmapFactory.Options options) {
+            try (ParcelFileDescriptor pfd = mResolver.openFileDescriptor(mUri, "r")) {
+                if (pfd == null) {
+                    return null;
+                }
+                return BitmapFactory.decodeFileDescriptor(pfd.getFileDescriptor(), null, options);
+            } catch (IOException | SecurityException e) {
+                Log.w(TAG, "open failed: " + mUri, e);
+                return null;
+            }
+        }
+
+        // 区域解码器创建时会映射文件内容，之后可以关闭描述符
+        @Override
+        @SuppressWarnings("deprecation")
+        public BitmapRegionDecoder newRegionDecoder() throws IOException {
+            try (ParcelFileDescriptor pfd = mResolver.openFileDescriptor(mUri, "r")) {
+                if (pfd == null) {
+                    throw new IOException("无法打开: " + mUri);
+                }
+                return BitmapRegionDecoder.newInstance(pfd.getFileDescriptor(), false);
+            } catch (SecurityException e) {
+                throw new IOException("没有读取权限: " + mUri, e);
+            }
+        }
+
+        // ExifInterface在构造时读完需要的数据，之后可以关闭描述符
+        @Override
+        ExifInterface openExif() throws IOException {
+            try (ParcelFileDescriptor pfd = mResolver.openFileDescriptor(mUri, "r")) {
+                return pfd == null ? null : new ExifInterface(pfd.getFileDescriptor());
+            }
+        }
+
+        @Override
+        public InputStream openStream() throws IOException {
+            try {
+                InputStream in = mResolver.openInputStream(mUri);
+                if (in == null) {
+                    throw new IOException("无法打开: " + mUri);
+                }
+                return in;
+            } catch (SecurityException e) {
+                throw new IOException("没有读取权限: " + mUri, e);
+            }
+        }
+
+        // Android 10起优先使用系统缩略图，媒体库已有缓存时不需要解码原图
+        @Override
+        public Bitmap loadThumbnail(int size, CancellationSignal signal) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                try {
+                    return mResolver.loadThumbnail(mUri, new Size(size, size), signal);
+                } catch (OperationCanceledException e) {
+                    return null;
+                } catch (IOException | RuntimeException e) {
+                    Log.w(TAG, "system thumbnail unavailable, decode instead: " + mUri, e);
+                }
+            }
+            return super.loadThumbnail(size, signal);
+        }
+
+        @Override
+        public String toString() {
+            return mUri.toString();
+        }
+    }
+}
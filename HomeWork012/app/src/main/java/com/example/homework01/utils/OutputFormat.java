@@ -0,0 +1,207 @@
+package com.example.homework01.utils;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 输出格式：编码类型加质量。按用途提供默认值——
+ * 相册用调好质量的JPEG，临时文件用最快的无损格式，分享可以按字节上限二分查找质量
+ */
+public final class OutputFormat {
+    public enum Type {
+        JPEG,
+        PNG,
+        WEBP_LOSSY,
+        WEBP_LOSSLESS
+    }
+
+    // 相册输出：92与100肉眼几乎无差别，文件约小一半以上
+    public static final OutputFormat GALLERY = new OutputFormat(Type.JPEG, 92);
+    // 分享的初始质量，超过大小上限时再往下找
+    public static final OutputFormat SHARE = new OutputFormat(Type.JPEG, 90);
+    // 按条带流式保存的大图只能逐行编码，用PNG
+    public static final OutputFormat STREAMED = new OutputFormat(Type.PNG, 100);
+    // 分享文件的默认大小上限
+    public static final long SHARE_MAX_BYTES = 4L * 1024 * 1024;
+    // 按大小查找质量时的最低质量
+    private static final int MIN_SEARCH_QUALITY = 40;
+
+    private final Type mType;
+    private final int mQuality;
+
+    public OutputFormat(Type type, int quality) {
+        mType = type;
+        mQuality = Math.max(0, Math.min(100, quality));
+    }
+
+    /**
+     * 按原图的MIME类型取得对应的格式，用于把没有编辑的原图原样写入相册；不支持的类型返回null。
+     * 原样写入时只用到类型对应的MIME和扩展名，质量沿用各用途的默认值
+     */
+    public static OutputFormat forMimeType(String mimeType) {
+        if ("image/jpeg".equals(mimeType)) {
+            return GALLERY;
+        } else if ("image/png".equals(mimeType)) {
+            return new OutputFormat(Type.PNG, 100);
+        } else if ("image/webp".equals(mimeType)) {
+            return new OutputFormat(Type.WEBP_LOSSLESS, 100);
+        }
+        return null;
+    }
+
+    /**
+     * 临时文件用的无损格式：Android 11起用WEBP无损的最快档，更早的版本用PNG
+     */
+    public static OutputFormat temp() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            // 无损模式下quality表示压缩力度，0最快
+            return new OutputFormat(Type.WEBP_LOSSLESS, 0);
+        }
+        return new OutputFormat(Type.PNG, 100);
+    }
+
+    public Type getType() {
+        return mType;
+    }
+
+    public int getQuality() {
+        return mQuality;
+    }
+
+    public boolean isLossless() {
+        return mType == Type.PNG || mType == Type.WEBP_LOSSLESS;
+    }
+
+    public OutputFormat withQuality(int quality) {
+        return new OutputFormat(mType, quality);
+    }
+
+    @SuppressWarnings("deprecation")
+    public Bitmap.CompressFormat getCompressFormat() {
+        switch (mType) {
+            case PNG:
+                return Bitmap.CompressFormat.PNG;
+            case WEBP_LOSSY:
+                return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                        ? Bitmap.CompressFormat.WEBP_LOSSY : Bitmap.CompressFormat.WEBP;
+            case WEBP_LOSSLESS:
+                return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                        ? Bitmap.CompressFormat.WEBP_LOSSLESS : Bitmap.CompressFormat.WEBP;
+            case JPEG:
+            default:
+                return Bitmap.CompressFormat.JPEG;
+        }
+    }
+
+    // 传给Bitmap.compress的质量：Android 11以前WEBP只有质量100才是无损，有损时不能到100
+    private int getCompressQuality() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.R) {
+            if (mType == Type.WEBP_LOSSLESS) {
+                return 100;
+            } else if (mType == Type.WEBP_LOSSY) {
+                return Math.min(99, mQuality);
+            }
+        }
+        return mQuality;
+    }
+
+    public String getMimeType() {
+        switch (mType) {
+            case PNG:
+                return "image/png";
+            case WEBP_LOSSY:
+            case WEBP_LOSSLESS:
+                return "image/webp";
+            case JPEG:
+            default:
+                return "image/jpeg";
+        }
+    }
+
+    public String getExtension() {
+        switch (mType) {
+            case PNG:
+                return ".png";
+            case WEBP_LOSSY:
+            case WEBP_LOSSLESS:
+                return ".webp";
+            case JPEG:
+            default:
+                return ".jpg";
+        }
+    }
+
+    // 编码写入输出流
+    public void encode(Bitmap bitmap, OutputStream os) throws IOException {
+        long token = PerfTracer.begin("save.compress");
+        try {
+            if (!bitmap.compress(getCompressFormat(), getCompressQuality(), os)) {
+                throw new IOException("图片编码失败");
+            }
+            os.flush();
+        } finally {
+            PerfTracer.end("save.compress", token);
+        }
+    }
+
+    /**
+     * 编码成不超过maxBytes的数据：当前质量放得下就直接返回，否则二分查找放得下的最高质量，
+     * 直接返回查找中放得下的那次编码结果，不再重新编码。无损格式没有质量可调，直接返回编码结果；
+     * 最低质量也放不下时返回最低质量的结果
+     */
+    public byte[] encodeToSize(Bitmap bitmap, long maxBytes) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        encode(bitmap, buffer);
+        if (buffer.size() <= maxBytes || isLossless() || mQuality == 0) {
+            return buffer.toByteArray();
+        }
+        return searchEncoded(q -> {
+            buffer.reset();
+            withQuality(q).encode(bitmap, buffer);
+            return buffer.toByteArray();
+        }, searchFloor(mQuality), mQuality - 1, maxBytes);
+    }
+
+    // 查找的最低质量：预设质量本身不高于默认下限时从比它低一档开始找，结果不会比预设的质量更高
+    static int searchFloor(int quality) {
+        return Math.min(MIN_SEARCH_QUALITY, quality - 1);
+    }
+
+    /**
+     * 按某个质量编码
+     */
+    interface QualityEncoder {
+        byte[] encodeAt(int quality) throws IOException;
+    }
+
+    /**
+     * 在[minQuality, maxQuality]中二分查找编码后不超过maxBytes的最高质量，返回那次编码的结果；
+     * 都超过时返回minQuality的结果。编码大小需随质量单调增长
+     */
+    static byte[] searchEncoded(QualityEncoder encoder, int minQuality, int maxQuality, long maxBytes)
+            throws IOException {
+        int low = minQuality;
+        int high = maxQuality;
+        byte[] best = null;
+        byte[] lowest = null;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            byte[] data = encoder.encodeAt(mid);
+            if (mid == minQuality) {
+                lowest = data;
+            }
+            if (data.length <= maxBytes) {
+                best = data;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        // 都放不下时最后一次必然查到minQuality
+        return best != null ? best : lowest;
+    }
+}
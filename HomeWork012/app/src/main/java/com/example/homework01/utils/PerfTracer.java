@@ -0,0 +1,204 @@
+package com.example.homework01.utils;
+
+import android.graphics.Bitmap;
+import android.os.Trace;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 耗时统计：记录编辑流程中各阶段的耗时和Bitmap分配字节数。
+ * 分配按线程计数，一个阶段只统计自己线程上的分配，不包含同时在其它线程上进行的工作。
+ * 开启时同时写入android.os.Trace区段，可在systrace/Perfetto中查看；
+ * 每个阶段保留最近若干次的耗时用于计算分位数，可以导出到文件。
+ * 关闭时begin/end只读一次volatile变量，开销可以忽略
+ *
+ * <pre>
+ * long token = PerfTracer.begin("filter.kernel");
+ * try {
+ *     ...
+ * } finally {
+ *     PerfTracer.end("filter.kernel", token);
+ * }
+ * </pre>
+ */
+public final class PerfTracer {
+    // 每个阶段保留的最近样本数
+    private static final int RING_SIZE = 256;
+
+    private static volatile boolean sEnabled;
+    private static final ConcurrentHashMap<String, Stats> sStats = new ConcurrentHashMap<>();
+    // 每个线程自己的分配计数和各嵌套层级begin时的计数，阶段结束时取差值
+    private static final ThreadLocal<ThreadCounter> sCounter = ThreadLocal.withInitial(ThreadCounter::new);
+
+    private PerfTracer() {
+    }
+
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * 开始一个阶段，返回开始时间作为token；关闭时返回0。
+     * 必须在同一线程上以相反的顺序调用end
+     */
+    public static long begin(String name) {
+        if (!sEnabled) {
+            return 0;
+        }
+        Trace.beginSection(name);
+        sCounter.get().push();
+        return System.nanoTime();
+    }
+
+    // 结束阶段并记录耗时，token为0（begin时未开启）时直接返回
+    public static void end(String name, long token) {
+        if (token == 0) {
+            return;
+        }
+        long elapsed = System.nanoTime() - token;
+        Trace.endSection();
+        long allocated = sCounter.get().pop();
+        Stats stats = sStats.get(name);
+        if (stats == null) {
+            stats = new Stats(RING_SIZE);
+            Stats existing = sStats.putIfAbsent(name, stats);
+            if (existing != null) {
+                stats = existing;
+            }
+        }
+        stats.record(elapsed, allocated);
+    }
+
+    // 记录一次Bitmap分配，计入当前线程上进行中的阶段
+    public static void countAllocation(long bytes) {
+        if (sEnabled) {
+            sCounter.get().mAllocated += bytes;
+        }
+    }
+
+    // 解码结果没有复用inBitmap时，新分配的内存计入统计
+    public static void countDecoded(Bitmap decoded, Bitmap reused) {
+        if (sEnabled && decoded != null && decoded != reused) {
+            sCounter.get().mAllocated += decoded.getAllocationByteCount();
+        }
+    }
+
+    // 当前线程累计的分配字节数
+    static long getThreadAllocatedBytes() {
+        return sCounter.get().mAllocated;
+    }
+
+    public static void reset() {
+        sStats.clear();
+    }
+
+    // 按阶段名排序输出每个阶段的次数、分位数耗时和平均分配字节数
+    public static String dump() {
+        List<String> names = new ArrayList<>(sStats.keySet());
+        Collections.sort(names);
+        StringBuilder builder = new StringBuilder();
+        builder.append("stage\tcount\tp50_ms\tp90_ms\tp99_ms\tmax_ms\talloc_kb_avg\n");
+        for (String name : names) {
+            Stats stats = sStats.get(name);
+            if (stats == null) continue;
+            synchronized (stats) {
+                builder.append(String.format(Locale.US, "%s\t%d\t%.2f\t%.2f\t%.2f\t%.2f\t%d\n",
+                        name, stats.getCount(),
+                        stats.percentile(0.5) / 1e6, stats.percentile(0.9) / 1e6,
+                        stats.percentile(0.99) / 1e6, stats.percentile(1.0) / 1e6,
+                        stats.getAverageAllocatedBytes() / 1024));
+            }
+        }
+        return builder.toString();
+    }
+
+    // 把统计结果写入文件，制表符分隔，便于导入表格或脚本分析
+    public static boolean dumpToFile(File file) {
+        try (Writer writer = new FileWriter(file)) {
+            writer.write(dump());
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * 单个线程的分配计数，只被所属线程访问，不需要同步
+     */
+    static final class ThreadCounter {
+        // 最多记录的嵌套层级，更深的阶段分配记为0
+        private static final int MAX_DEPTH = 16;
+
+        long mAllocated;
+        private final long[] mStack = new long[MAX_DEPTH];
+        private int mDepth;
+
+        void push() {
+            if (mDepth < MAX_DEPTH) {
+                mStack[mDepth] = mAllocated;
+            }
+            mDepth++;
+        }
+
+        // 返回最近一次push以来的分配字节数
+        long pop() {
+            mDepth--;
+            return mDepth >= 0 && mDepth < MAX_DEPTH ? mAllocated - mStack[mDepth] : 0;
+        }
+    }
+
+    /**
+     * 单个阶段的统计：环形缓冲区保存最近的耗时，分配字节数累计求平均
+     */
+    static final class Stats {
+        private final long[] mDurations;
+        private int mNext;
+        private long mCount;
+        private long mAllocatedBytes;
+
+        Stats(int capacity) {
+            mDurations = new long[capacity];
+        }
+
+        synchronized void record(long durationNanos, long allocatedBytes) {
+            mDurations[mNext] = durationNanos;
+            mNext = (mNext + 1) % mDurations.length;
+            mCount++;
+            mAllocatedBytes += allocatedBytes;
+        }
+
+        synchronized long getCount() {
+            return mCount;
+        }
+
+        synchronized long getAverageAllocatedBytes() {
+            return mCount == 0 ? 0 : mAllocatedBytes / mCount;
+        }
+
+        // 最近样本中的分位数（最近邻取整），没有样本时返回0
+        synchronized long percentile(double fraction) {
+            int size = (int) Math.min(mCount, mDurations.length);
+            if (size == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(mDurations, size);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(fraction * size) - 1;
+            return sorted[Math.max(0, Math.min(size - 1, index))];
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.homework01.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import java.io.IOException;
+
+/**
+ * 区域解码：基于BitmapRegionDecoder只解码图片中需要的矩形区域，
+ * 保存裁剪结果和按条带拼接长图时内存只取决于区域大小，与原图像素数无关
+ */
+public class RegionDecoder {
+    private final BitmapRegionDecoder mDecoder;
+    private final int mWidth;
+    private final int mHeight;
+
+    private RegionDecoder(BitmapRegionDecoder decoder) {
+        mDecoder = decoder;
+        mWidth = decoder.getWidth();
+        mHeight = decoder.getHeight();
+    }
+
+    // 打开图片文件，只读取文件头，不解码像素
+    public static RegionDecoder open(String filePath) throws IOException {
+        return open(ImageSource.fromFile(filePath));
+    }
+
+    // 打开文件或content URI
+    public static RegionDecoder open(ImageSource source) throws IOException {
+        BitmapRegionDecoder decoder = source.newRegionDecoder();
+        if (decoder == null) {
+            throw new IOException("不支持区域解码: " + source);
+        }
+        return new RegionDecoder(decoder);
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    // 把相对于整图的比例矩形换算成像素矩形，并限制在图片范围内
+    public Rect toPixelRect(RectF normalized) {
+        Rect rect = new Rect(
+                Math.round(normalized.left * mWidth),
+                Math.round(normalized.top * mHeight),
+                Math.round(normalized.right * mWidth),
+                Math.round(normalized.bottom * mHeight));
+        if (!rect.intersect(0, 0, mWidth, mHeight)) {
+            rect.setEmpty();
+        }
+        return rect;
+    }
+
+    // 计算解码区域时的采样率，保证结果不超过目标尺寸；目标为0表示不限制
+    public static int calculateSampleSize(Rect region, int maxWidth, int maxHeight) {
+        int sampleSize = 1;
+        if (maxWidth <= 0 || maxHeight <= 0) {
+            return sampleSize;
+        }
+        while (region.width() / sampleSize > maxWidth || region.height() / sampleSize > maxHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    // 计算解码区域时的采样率，保证结果的像素数不超过maxPixels
+    public static int calculateSampleSize(Rect region, long maxPixels) {
+        int sampleSize = 1;
+        while ((long) scaledSize(region.width(), sampleSize) * scaledSize(region.height(), sampleSize) > maxPixels
+                && sampleSize < Math.max(region.width(), region.height())) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    // 区域按采样率解码后的边长，与解码器一样向下取整，至少为1
+    static int scaledSize(int size, int sampleSize) {
+        return Math.max(1, size / sampleSize);
+    }
+
+    /**
+     * 按采样率解码指定区域，结果恰好是区域按采样率缩小后的尺寸（见scaledSize）。
+     * 结果Bitmap优先从复用池借用，用完应归还到BitmapPool
+     */
+    public Bitmap decodeRegion(Rect region, int sampleSize) {
+        Rect bounds = new Rect(region);
+        if (bounds.isEmpty() || !bounds.intersect(0, 0, mWidth, mHeight)) {
+            return null;
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = Math.max(1, sampleSize);
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inMutable = true;
+        int width = scaledSize(bounds.width(), options.inSampleSize);
+        int height = scaledSize(bounds.height(), options.inSampleSize);
+        options.inBitmap = reusableBitmap(width, height);
+
+        // BitmapRegionDecoder内部只能串行解码，加锁避免多个线程同时使用
+        long token = PerfTracer.begin("decode.region");
+        try {
+            synchronized (this) {
+                if (mDecoder.isRecycled()) {
+                    BitmapPool.getInstance().put(options.inBitmap);
+                    return null;
+                }
+                Bitmap decoded;
+                try {
+                    decoded = mDecoder.decodeRegion(bounds, options);
+                } catch (IllegalArgumentException e) {
+                    // 复用的Bitmap不被接受时归还并重新分配
+                    BitmapPool.getInstance().put(options.inBitmap);
+                    options.inBitmap = null;
+                    decoded = mDecoder.decodeRegion(bounds, options);
+                }
+                if (decoded != null && options.inBitmap != null
+                        && (decoded.getWidth() != width || decoded.getHeight() != height)) {
+                    // 解码器的取整与预期不同时，复用的Bitmap里只有一部分是这个区域，剩下是旧像素，重新分配后解码
+                    BitmapPool.getInstance().put(decoded);
+                    options.inBitmap = null;
+                    decoded = mDecoder.decodeRegion(bounds, options);
+                }
+                PerfTracer.countDecoded(decoded, options.inBitmap);
+                return decoded;
+            }
+        } finally {
+            PerfTracer.end("decode.region", token);
+        }
+    }
+
+    // 解码指定区域，采样到不超过目标尺寸
+    public Bitmap decodeRegion(Rect region, int maxWidth, int maxHeight) {
+        return decodeRegion(region, calculateSampleSize(region, maxWidth, maxHeight));
+    }
+
+    /**
+     * 从复用池借用Bitmap并调整成恰好width x height。BitmapRegionDecoder不会改变inBitmap的尺寸，
+     * 尺寸不同时只把区域裁剪进去，其余部分保留旧像素，所以只接受恰好相同的尺寸
+     */
+    private static Bitmap reusableBitmap(int width, int height) {
+        Bitmap bitmap = BitmapPool.getInstance().getReusable(width, height, Bitmap.Config.ARGB_8888);
+        if (bitmap == null || (bitmap.getWidth() == width && bitmap.getHeight() == height
+                && bitmap.getConfig() == Bitmap.Config.ARGB_8888)) {
+            return bitmap;
+        }
+        try {
+            bitmap.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+            return bitmap;
+        } catch (IllegalArgumentException e) {
+            BitmapPool.getInstance().put(bitmap);
+            return null;
+        }
+    }
+
+    // 释放解码器持有的文件和native内存
+    public synchronized void recycle() {
+        mDecoder.recycle();
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.homework01.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import com.example.homework01.geometry.Orientation;
+
+import java.io.IOException;
+
+/**
+ * 按原尺寸从图片中区域解码转正后的一块像素，带EXIF方向的图片先换算到文件中的区域再转正。
+ * 解码器在第一次读取时打开，release后释放，之后再读取会重新打开
+ */
+public class RegionRowReader {
+    private final ImageSource mSource;
+    private final Orientation mOrientation;
+    // 转正后的尺寸
+    private final int mWidth;
+    private final int mHeight;
+    private RegionDecoder mDecoder;
+
+    public RegionRowReader(ImageSource source, Orientation orientation, int width, int height) {
+        mSource = source;
+        mOrientation = orientation;
+        mWidth = width;
+        mHeight = height;
+    }
+
+    /**
+     * 把转正后的图中从(left, top)开始的width x rows像素写入dst，第r行从dst[offset + r * stride]开始。
+     * 解码结果的尺寸不符时抛出IOException，不会留下没有写入的像素
+     */
+    public void readRows(int left, int top, int width, int rows, int[] dst, int offset, int stride)
+            throws IOException {
+        if (mDecoder == null) {
+            mDecoder = RegionDecoder.open(mSource);
+        }
+        float[] stored = mOrientation.inverse().mapUnitRect((float) left / mWidth, (float) top / mHeight,
+                (float) (left + width) / mWidth, (float) (top + rows) / mHeight);
+        Rect region = mDecoder.toPixelRect(new RectF(stored[0], stored[1], stored[2], stored[3]));
+        Bitmap bitmap = BitmapUtils.applyOrientation(mDecoder.decodeRegion(region, 1), mOrientation);
+        if (bitmap == null) {
+            throw new IOException("区域解码失败: " + mSource);
+        }
+        try {
+            // 行数不对时条带中会留下没有写入的行，直接报错而不是输出残缺的图片
+            if (bitmap.getWidth() != width || bitmap.getHeight() != rows) {
+                throw new IOException("区域解码尺寸不符: " + bitmap.getWidth() + "x" + bitmap.getHeight()
+                        + "，需要" + width + "x" + rows);
+            }
+            bitmap.getPixels(dst, offset, stride, 0, 0, width, rows);
+        } finally {
+            BitmapPool.getInstance().put(bitmap);
+        }
+    }
+
+    // 释放解码器
+    public void release() {
+        if (mDecoder != null) {
+            mDecoder.recycle();
+            mDecoder = null;
+        }
+    }
+}
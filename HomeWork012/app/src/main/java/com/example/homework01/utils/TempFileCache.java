@@ -0,0 +1,229 @@
+package com.example.homework01.utils;
+
+import android.content.Context;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 临时文件缓存：管理cacheDir/temp下的中间文件，总大小超过上限时按最近最少使用删除。
+ * 先写到.tmp文件再重命名，读到的文件总是完整的；启动时清理上次没写完的文件
+ */
+public class TempFileCache {
+    public static final String DIR_NAME = "temp";
+    // 默认上限
+    private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    private static final String PARTIAL_SUFFIX = ".tmp";
+    // 旧版本直接写在cacheDir根目录下的临时文件前缀
+    private static final String LEGACY_PREFIX = "temp_image_";
+
+    /**
+     * 把文件内容写入输出流
+     */
+    public interface StreamWriter {
+        void writeTo(OutputStream os) throws IOException;
+    }
+
+    private static TempFileCache sInstance;
+
+    private final File mDir;
+    private final long mMaxBytes;
+    // 文件名到大小，按访问顺序排列，最久未使用的在最前
+    private final LinkedHashMap<String, Long> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    // 正在使用、不能被清理的文件名及其引用次数
+    private final Map<String, Integer> mPinned = new HashMap<>();
+    private long mUsedBytes;
+    private long mEvictedBytes;
+    private int mEvictedCount;
+
+    public static synchronized TempFileCache getInstance(Context context) {
+        if (sInstance == null) {
+            File cacheDir = context.getApplicationContext().getCacheDir();
+            deleteLegacyFiles(cacheDir);
+            sInstance = new TempFileCache(new File(cacheDir, DIR_NAME), DEFAULT_MAX_BYTES);
+        }
+        return sInstance;
+    }
+
+    public TempFileCache(File dir, long maxBytes) {
+        mDir = dir;
+        mMaxBytes = maxBytes;
+        if (!mDir.exists()) {
+            mDir.mkdirs();
+        }
+        scan();
+    }
+
+    // 启动时登记已有文件：删除没写完的，其余按修改时间作为使用顺序，然后按上限清理
+    private synchronized void scan() {
+        File[] files = mDir.listFiles();
+        if (files == null) return;
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            if (!file.isFile()) continue;
+            if (file.getName().endsWith(PARTIAL_SUFFIX)) {
+                file.delete();
+                continue;
+            }
+            mEntries.put(file.getName(), file.length());
+            mUsedBytes += file.length();
+        }
+        trim();
+    }
+
+    // 旧版本留在cacheDir根目录下、不受管理的临时文件
+    private static void deleteLegacyFiles(File cacheDir) {
+        File[] files = cacheDir.listFiles((dir, name) -> name.startsWith(LEGACY_PREFIX));
+        if (files == null) return;
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    /**
+     * 写入一个新的临时文件并返回；先写到.tmp文件，完成后原子重命名，失败时不留下文件
+     */
+    public File write(String prefix, String extension, StreamWriter writer) throws IOException {
+        String name = prefix + System.currentTimeMillis() + "_" + Long.toHexString(System.nanoTime()) + extension;
+        return write(name, writer);
+    }
+
+    /**
+     * 按指定文件名写入，已有同名文件时整体替换；用于以内容为键的缓存
+     */
+    public File write(String name, StreamWriter writer) throws IOException {
+        // 同名文件可能被多个线程同时写入，各自使用不同的中间文件
+        File partial = new File(mDir, name + "_" + Long.toHexString(System.nanoTime()) + PARTIAL_SUFFIX);
+        File target = new File(mDir, name);
+        try (OutputStream os = new BufferedOutputStream(new FileOutputStream(partial))) {
+            writer.writeTo(os);
+        } catch (IOException | RuntimeException e) {
+            partial.delete();
+            throw e;
+        }
+        synchronized (this) {
+            if (!partial.renameTo(target)) {
+                partial.delete();
+                throw new IOException("无法重命名临时文件: " + target);
+            }
+            Long previous = mEntries.remove(name);
+            if (previous != null) {
+                mUsedBytes -= previous;
+            }
+            long size = target.length();
+            mEntries.put(name, size);
+            mUsedBytes += size;
+            trim();
+        }
+        return target;
+    }
+
+    // 按文件名取得已缓存的文件并标记为最近使用，不存在时返回null
+    public synchronized File get(String name) {
+        Long size = mEntries.get(name);
+        if (size == null) {
+            return null;
+        }
+        File file = new File(mDir, name);
+        if (!file.exists()) {
+            // 被外部删除，例如系统清理了缓存目录
+            mEntries.remove(name);
+            mUsedBytes -= size;
+            return null;
+        }
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    // 标记文件被使用，推迟它被清理
+    public synchronized void touch(File file) {
+        if (file != null && mDir.equals(file.getParentFile()) && mEntries.get(file.getName()) != null) {
+            file.setLastModified(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * 标记文件正在使用：在unpin之前不会被清理，例如编辑页的原图就是缓存中的文件。
+     * 可以多次pin，次数相同的unpin之后才恢复按LRU清理；不是缓存中的文件时忽略
+     */
+    public synchronized void pin(File file) {
+        if (file != null && mDir.equals(file.getParentFile()) && mEntries.get(file.getName()) != null) {
+            mPinned.merge(file.getName(), 1, Integer::sum);
+        }
+    }
+
+    public synchronized void unpin(File file) {
+        if (file == null || !mDir.equals(file.getParentFile())) return;
+        Integer count = mPinned.get(file.getName());
+        if (count == null) return;
+        if (count > 1) {
+            mPinned.put(file.getName(), count - 1);
+        } else {
+            mPinned.remove(file.getName());
+            trim();
+        }
+    }
+
+    // 超过上限时从最久未使用的开始删除，跳过正在使用的文件，最新的文件总是保留
+    private void trim() {
+        Iterator<Map.Entry<String, Long>> iterator = mEntries.entrySet().iterator();
+        int remaining = mEntries.size();
+        while (mUsedBytes > mMaxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            if (--remaining == 0) break;
+            if (mPinned.containsKey(entry.getKey())) continue;
+            new File(mDir, entry.getKey()).delete();
+            mUsedBytes -= entry.getValue();
+            mEvictedBytes += entry.getValue();
+            mEvictedCount++;
+            iterator.remove();
+        }
+    }
+
+    // 删除所有没有在使用的临时文件
+    public synchronized void clear() {
+        Iterator<Map.Entry<String, Long>> iterator = mEntries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            if (mPinned.containsKey(entry.getKey())) continue;
+            new File(mDir, entry.getKey()).delete();
+            mUsedBytes -= entry.getValue();
+            iterator.remove();
+        }
+    }
+
+    public synchronized long getUsedBytes() {
+        return mUsedBytes;
+    }
+
+    public long getMaxBytes() {
+        return mMaxBytes;
+    }
+
+    public synchronized long getEvictedBytes() {
+        return mEvictedBytes;
+    }
+
+    public synchronized int getEvictedCount() {
+        return mEvictedCount;
+    }
+
+    public synchronized int getFileCount() {
+        return mEntries.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "TempFileCache[files=%d, used=%dKB/%dKB, evicted=%d/%dKB]",
+                mEntries.size(), mUsedBytes / 1024, mMaxBytes / 1024, mEvictedCount, mEvictedBytes / 1024);
+    }
+}
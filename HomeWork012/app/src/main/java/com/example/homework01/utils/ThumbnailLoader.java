@@ -0,0 +1,207 @@
+package com.example.homework01.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 缩略图异步加载：内存LRU按来源和尺寸缓存解码结果，磁盘缓存保存编码后的缩略图，
+ * 进程重启后也不需要再次解码原图。相同的请求只加载一次，
+ * ImageView被分配给其他图片时取消它原来的请求，请求不再被需要时停止加载。
+ * load/cancel只能在主线程调用
+ */
+public class ThumbnailLoader {
+    private static final String TAG = "ThumbnailLoader";
+    private static final String DIR_NAME = "thumbnails";
+    private static final long DISK_MAX_BYTES = 16L * 1024 * 1024;
+    // 缩略图只用于显示，磁盘上用中等质量的JPEG
+    private static final OutputFormat DISK_FORMAT = new OutputFormat(OutputFormat.Type.JPEG, 85);
+
+    private static ThumbnailLoader sInstance;
+
+    private final File mDiskDir;
+    // 磁盘缓存在第一次使用时于后台线程创建，避免在主线程扫描目录
+    private TempFileCache mDiskCache;
+    private final LruCache<String, Bitmap> mMemoryCache;
+    private final ExecutorService mExecutor = Executors.newFixedThreadPool(2, r -> {
+        Thread thread = new Thread(r, "ThumbnailLoader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    // 进行中的请求，相同的键共用一个；只在主线程访问
+    private final Map<String, Request> mRequests = new HashMap<>();
+    // 每个ImageView正在等待的键
+    private final Map<ImageView, String> mPending = new WeakHashMap<>();
+
+    /**
+     * 一次加载，可以被多个ImageView共享
+     */
+    private final class Request implements Runnable {
+        private final String mKey;
+        private final ImageSource mSource;
+        private final int mSize;
+        private final CancellationSignal mSignal = new CancellationSignal();
+        private final List<ImageView> mViews = new ArrayList<>();
+        private Future<?> mFuture;
+
+        Request(String key, ImageSource source, int size) {
+            mKey = key;
+            mSource = source;
+            mSize = size;
+        }
+
+        @Override
+        public void run() {
+            Bitmap bitmap = null;
+            try {
+                bitmap = loadInBackground(this);
+            } catch (OutOfMemoryError e) {
+                Log.w(TAG, "load thumbnail out of memory: " + mKey);
+            }
+            Bitmap result = bitmap;
+            mMainHandler.post(() -> deliver(this, result));
+        }
+    }
+
+    public static synchronized ThumbnailLoader getInstance(Context context) {
+        if (sInstance == null) {
+            File cacheDir = context.getApplicationContext().getCacheDir();
+            // 内存缓存占最大堆的1/32
+            sInstance = new ThumbnailLoader(new File(cacheDir, DIR_NAME),
+                    (int) (Runtime.getRuntime().maxMemory() / 32));
+        }
+        return sInstance;
+    }
+
+    private ThumbnailLoader(File diskDir, int memoryBytes) {
+        mDiskDir = diskDir;
+        mMemoryCache = new LruCache<String, Bitmap>(memoryBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+        };
+    }
+
+    /**
+     * 把source的缩略图显示到view上：内存中有时立即显示，否则清空view并异步加载
+     */
+    public void load(ImageSource source, int size, ImageView view) {
+        String key = source + "#" + size;
+        if (key.equals(mPending.get(view))) {
+            return;
+        }
+        cancel(view);
+        Bitmap cached = mMemoryCache.get(key);
+        if (cached != null) {
+            view.setImageBitmap(cached);
+            return;
+        }
+        view.setImageDrawable(null);
+        mPending.put(view, key);
+        Request request = mRequests.get(key);
+        if (request == null) {
+            request = new Request(key, source, size);
+            mRequests.put(key, request);
+            request.mFuture = mExecutor.submit(request);
+        }
+        request.mViews.add(view);
+    }
+
+    // 取消view正在等待的加载，请求没有其他view等待时停止
+    public void cancel(ImageView view) {
+        String key = mPending.remove(view);
+        if (key == null) return;
+        Request request = mRequests.get(key);
+        if (request == null) return;
+        request.mViews.remove(view);
+        if (request.mViews.isEmpty()) {
+            mRequests.remove(key);
+            request.mSignal.cancel();
+            request.mFuture.cancel(false);
+        }
+    }
+
+    // 后台线程：依次查磁盘缓存、加载缩略图，新加载的写入磁盘缓存
+    private Bitmap loadInBackground(Request request) {
+        TempFileCache diskCache = getDiskCache();
+        String fileName = hashKey(request.mKey) + DISK_FORMAT.getExtension();
+        File file = diskCache.get(fileName);
+        if (file != null) {
+            Bitmap bitmap = BitmapFactory.decodeFile(file.getAbsolutePath());
+            if (bitmap != null) {
+                return bitmap;
+            }
+        }
+        if (request.mSignal.isCanceled()) {
+            return null;
+        }
+        Bitmap bitmap = request.mSource.loadThumbnail(request.mSize, request.mSignal);
+        if (bitmap != null) {
+            try {
+                diskCache.write(fileName, os -> DISK_FORMAT.encode(bitmap, os));
+            } catch (IOException e) {
+                Log.w(TAG, "write thumbnail cache failed: " + request.mKey, e);
+            }
+        }
+        return bitmap;
+    }
+
+    // 主线程：放入内存缓存，显示到仍在等待这个请求的view上
+    private void deliver(Request request, Bitmap bitmap) {
+        if (mRequests.get(request.mKey) == request) {
+            mRequests.remove(request.mKey);
+        }
+        if (bitmap == null) return;
+        // 已取消的请求结果也缓存，下次不必再加载
+        mMemoryCache.put(request.mKey, bitmap);
+        for (ImageView view : request.mViews) {
+            if (request.mKey.equals(mPending.get(view))) {
+                mPending.remove(view);
+                view.setImageBitmap(bitmap);
+            }
+        }
+    }
+
+    private synchronized TempFileCache getDiskCache() {
+        if (mDiskCache == null) {
+            mDiskCache = new TempFileCache(mDiskDir, DISK_MAX_BYTES);
+        }
+        return mDiskCache;
+    }
+
+    // 来源URI可能含有文件名不允许的字符，用摘要作为磁盘缓存的文件名
+    private static String hashKey(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder builder = new StringBuilder();
+            for (byte b : digest) {
+                builder.append(String.format("%02x", b));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(key.hashCode());
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.homework01.edit;
+
+import com.example.homework01.geometry.Orientation;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 编辑记录的增删改测试
+ */
+public class EditGraphTest {
+    @Test
+    public void replaceOrAppend_keepsOnlyLatestOfSameType() {
+        EditGraph graph = new EditGraph();
+        graph.replaceOrAppend(new EditOp.FilterOp(EditOp.FilterOp.WARM));
+        graph.add(new EditOp.RotateOp(90));
+        EditOp.FilterOp cold = new EditOp.FilterOp(EditOp.FilterOp.COLD);
+        graph.replaceOrAppend(cold);
+
+        List<EditOp> ops = graph.getOps();
+        assertEquals(2, ops.size());
+        assertSame(cold, ops.get(0));
+        assertTrue(ops.get(1) instanceof EditOp.RotateOp);
+    }
+
+    @Test
+    public void setCrop_isAlwaysFirst() {
+        EditGraph graph = new EditGraph();
+        graph.add(new EditOp.RotateOp(90));
+        graph.setCrop(new EditOp.CropOp(0f, 0f, 0.5f, 0.5f));
+        EditOp.CropOp second = new EditOp.CropOp(0.1f, 0.1f, 0.9f, 0.9f);
+        graph.setCrop(second);
+
+        assertEquals(2, graph.size());
+        assertSame(second, graph.getOps().get(0));
+    }
+
+    @Test
+    public void getOps_isSnapshot() {
+        EditGraph graph = new EditGraph();
+        List<EditOp> snapshot = graph.getOps();
+        graph.add(new EditOp.FlipOp(true));
+        assertTrue(snapshot.isEmpty());
+        assertEquals(1, graph.copy().size());
+    }
+
+    @Test
+    public void addTransform_foldsConsecutiveRotationsAndFlips() {
+        EditGraph graph = new EditGraph();
+        for (int i = 0; i < 10; i++) {
+            graph.addTransform(new EditOp.RotateOp(90));
+        }
+        // 10次顺时针90度等于180度，只保留一个操作
+        assertEquals(1, graph.size());
+        EditOp.TransformOp op = (EditOp.TransformOp) graph.getOps().get(0);
+        assertSame(Orientation.rotation(180), op.getOrientation());
+
+        graph.addTransform(new EditOp.FlipOp(true));
+        graph.addTransform(new EditOp.FlipOp(false));
+        assertTrue(graph.isEmpty());
+
+        // 中间隔着其他操作时不合并
+        graph.addTransform(new EditOp.RotateOp(90));
+        graph.add(new EditOp.FilterOp(EditOp.FilterOp.WARM));
+        graph.addTransform(new EditOp.RotateOp(90));
+        assertEquals(3, graph.size());
+    }
+}
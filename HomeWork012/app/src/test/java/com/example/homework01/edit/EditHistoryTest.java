@@ -0,0 +1,110 @@
+package com.example.homework01.edit;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 撤销历史与像素差异测试
+ */
+public class EditHistoryTest {
+    @Test
+    public void pixelDelta_restoresBothDirections() {
+        int width = 16, height = 8;
+        int[] before = new int[width * height];
+        Arrays.fill(before, 0xFF336699);
+        int[] after = before.clone();
+        after[3 * width + 5] = 0xFFFFFFFF;
+        after[6 * width + 9] = 0xFF000000;
+
+        PixelDelta delta = PixelDelta.compute(before, after, width, height);
+        assertEquals(5, delta.getLeft());
+        assertEquals(3, delta.getTop());
+        assertEquals(5, delta.getWidth());
+        assertEquals(4, delta.getHeight());
+
+        int[] frame = after.clone();
+        delta.apply(frame, width);
+        assertArrayEquals(before, frame);
+        delta.apply(frame, width);
+        assertArrayEquals(after, frame);
+    }
+
+    @Test
+    public void undoRedo_walksStates() {
+        EditHistory history = new EditHistory(1024 * 1024);
+        EditGraph graph = new EditGraph();
+        history.push(graph);
+        graph.add(new EditOp.RotateOp(90));
+        history.push(graph);
+        EditGraph rotated = history.current();
+
+        assertTrue(history.canUndo());
+        assertEquals(0, history.undo().graph.size());
+        assertFalse(history.canUndo());
+        assertSame(rotated, history.redo().graph);
+        assertFalse(history.canRedo());
+    }
+
+    // 随机像素的差异几乎无法压缩，大小稳定
+    private static PixelDelta randomDelta(long seed) {
+        int width = 8, height = 8;
+        int[] before = new int[width * height];
+        int[] after = new int[width * height];
+        Random random = new Random(seed);
+        for (int i = 0; i < after.length; i++) {
+            after[i] = random.nextInt();
+        }
+        return PixelDelta.compute(before, after, width, height);
+    }
+
+    @Test
+    public void budget_evictsDeltasBeforeSteps() {
+        PixelDelta first = randomDelta(1);
+        PixelDelta second = randomDelta(2);
+        // 三个步骤共0 + 1 + 2个操作，放得下一个差异但放不下两个
+        long stepBytes = 3 * 64;
+        EditHistory history = new EditHistory(stepBytes + second.getByteSize() + first.getByteSize() / 2);
+        EditGraph graph = new EditGraph();
+        history.push(graph);
+        graph.add(new EditOp.FlipOp(true));
+        history.push(graph);
+        EditGraph one = history.current();
+        graph.add(new EditOp.FlipOp(false));
+        history.push(graph);
+        EditGraph two = history.current();
+
+        history.attachDelta(one, first);
+        history.attachDelta(two, second);
+        // 最早的差异被丢弃，步骤全部保留
+        assertEquals(0, history.getEvictedSteps());
+        assertEquals(first.getByteSize(), history.getEvictedBytes());
+        assertEquals(stepBytes + second.getByteSize(), history.getUsedBytes());
+        assertSame(second, history.undo().delta);
+        assertNull(history.undo().delta);
+        assertFalse(history.canUndo());
+    }
+
+    @Test
+    public void budget_evictsOldestStepsButKeepsCurrent() {
+        EditHistory history = new EditHistory(400);
+        EditGraph graph = new EditGraph();
+        history.push(graph);
+        for (int i = 0; i < 3; i++) {
+            graph.add(new EditOp.FlipOp(true));
+            history.push(graph);
+        }
+        assertEquals(0, history.getEvictedSteps());
+        assertEquals(6 * 64, history.getUsedBytes());
+
+        // 超出预算时丢弃最早的步骤，但当前步骤保留
+        graph.add(new EditOp.FlipOp(false));
+        history.push(graph);
+        assertTrue(history.getUsedBytes() <= 400);
+        assertTrue(history.getEvictedSteps() > 0);
+        assertEquals(4, history.current().size());
+    }
+}
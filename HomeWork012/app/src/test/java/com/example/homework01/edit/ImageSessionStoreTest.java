@@ -0,0 +1,33 @@
+package com.example.homework01.edit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+/**
+ * 启动时清理之前的进程留下的会话文件
+ */
+public class ImageSessionStoreTest {
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void deleteStaleFiles_keepsRecentSessions() throws Exception {
+        long now = System.currentTimeMillis();
+        File stale = mFolder.newFile("old.webp");
+        File staleGraph = mFolder.newFile("old.graph");
+        File recent = mFolder.newFile("recent.webp");
+        assertTrue(stale.setLastModified(now - ImageSessionStore.STALE_AGE_MS - 60_000));
+        assertTrue(staleGraph.setLastModified(now - ImageSessionStore.STALE_AGE_MS - 60_000));
+        assertTrue(recent.setLastModified(now - 60_000));
+
+        assertEquals(2, ImageSessionStore.deleteStaleFiles(mFolder.getRoot(), now));
+        assertFalse(stale.exists());
+        assertFalse(staleGraph.exists());
+        assertTrue(recent.exists());
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.homework01.edit;
+
+import com.example.homework01.filter.ColorChain;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 按条带渲染：结果与整图执行同样的颜色操作相同，每次只读取一个条带
+ */
+public class StripEditRendererTest {
+    @Test
+    public void supports_onlyRowPreservingOps() {
+        assertTrue(StripEditRenderer.supports(Arrays.asList(
+                new EditOp.FilterOp(EditOp.FilterOp.VINTAGE), new EditOp.AdjustOp(10, 0.2f, 1.5f))));
+        assertFalse(StripEditRenderer.supports(Arrays.asList(
+                new EditOp.FilterOp(EditOp.FilterOp.WARM), new EditOp.RotateOp(90))));
+        assertFalse(StripEditRenderer.supports(Arrays.asList(
+                (EditOp) new EditOp.CropOp(0f, 0f, 0.5f, 0.5f))));
+    }
+
+    @Test
+    public void render_matchesWholeImageColorChain() throws Exception {
+        int width = 13;
+        int height = 100;
+        int[] source = new int[width * height];
+        Random random = new Random(7);
+        for (int i = 0; i < source.length; i++) {
+            source[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        List<EditOp> ops = Arrays.asList(new EditOp.AdjustOp(-20, 0.3f, 0.8f),
+                new EditOp.FilterOp(EditOp.FilterOp.VINTAGE));
+        ColorChain chain = new ColorChain();
+        for (EditOp op : ops) {
+            ((EditOp.ColorOp) op).addTo(chain);
+        }
+        int[] expected = source.clone();
+        chain.compile().apply(expected, 0, expected.length);
+
+        // 条带高度不能整除图片高度，最后一个条带较矮
+        StripEditRenderer renderer = new StripEditRenderer(ops, width, height, 32);
+        int[] actual = new int[width * height];
+        int[] maxRows = {0};
+        int[] nextTop = {0};
+        int[] written = {0};
+        renderer.render((top, rows, dst, offset, stride) -> {
+            // 按从上到下的顺序读取
+            assertEquals(nextTop[0], top);
+            nextTop[0] += rows;
+            maxRows[0] = Math.max(maxRows[0], rows);
+            for (int r = 0; r < rows; r++) {
+                System.arraycopy(source, (top + r) * width, dst, offset + r * stride, width);
+            }
+        }, (pixels, offset, stride, rows) -> {
+            for (int r = 0; r < rows; r++) {
+                System.arraycopy(pixels, offset + r * stride, actual, (written[0] + r) * width, width);
+            }
+            written[0] += rows;
+        });
+
+        assertEquals(height, written[0]);
+        assertEquals(32, maxRows[0]);
+        assertArrayEquals(expected, actual);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.homework01.filter;
+
+import com.example.homework01.edit.EditOp;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 颜色运算串：每一步之后截断，结果与分别执行每个内核相同
+ */
+public class ColorChainTest {
+    private static int[] randomPixels(int count) {
+        Random random = new Random(11);
+        int[] pixels = new int[count];
+        for (int i = 0; i < count; i++) {
+            pixels[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        return pixels;
+    }
+
+    private static PixelKernel compile(EditOp.ColorOp... ops) {
+        ColorChain chain = new ColorChain();
+        for (EditOp.ColorOp op : ops) {
+            op.addTo(chain);
+        }
+        return chain.compile();
+    }
+
+    @Test
+    public void adjust_keepsClampBetweenBrightnessAndContrast() {
+        // 亮度+100先截断到255，对比度-0.5再压向中间灰，得到191而不是255
+        int[] pixels = {0xFFC8C8C8};
+        compile(new EditOp.AdjustOp(100, -0.5f, 1f)).apply(pixels, 0, 1);
+        assertEquals(0xFFBFBFBF, pixels[0]);
+    }
+
+    @Test
+    public void adjust_matchesBrightnessContrastKernel() {
+        int[][] settings = {{100, -50}, {-100, 150}, {40, 20}, {-30, -20}, {0, 0}};
+        int[] source = randomPixels(4096);
+        for (int[] setting : settings) {
+            float contrast = setting[1] / 100f;
+            int[] expected = source.clone();
+            PixelKernels.brightnessContrast(setting[0], contrast).apply(expected, 0, expected.length);
+            int[] actual = source.clone();
+            compile(new EditOp.AdjustOp(setting[0], contrast, 1f)).apply(actual, 0, actual.length);
+            assertArrayEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void filterThenAdjust_matchesSeparatePasses() {
+        int[] source = randomPixels(4096);
+        int[] filters = {EditOp.FilterOp.BLACK_WHITE, EditOp.FilterOp.VINTAGE, EditOp.FilterOp.WARM};
+        for (int filter : filters) {
+            EditOp.FilterOp filterOp = new EditOp.FilterOp(filter);
+            int[] expected = source.clone();
+            filterOp.getMatrix().apply(expected, 0, expected.length);
+            PixelKernels.brightnessContrast(60, 0.8f).apply(expected, 0, expected.length);
+            int[] actual = source.clone();
+            compile(filterOp, new EditOp.AdjustOp(60, 0.8f, 1f)).apply(actual, 0, actual.length);
+            assertArrayEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void perChannelSteps_compileToSingleLut() {
+        ColorChain chain = new ColorChain()
+                .then(ColorMatrix4x5.warm())
+                .then(PixelKernels.brightnessContrastOp(20, 0.5f));
+        assertTrue(chain.compile() instanceof ChannelLut);
+        assertTrue(new ColorChain().then(ColorMatrix4x5.vintage()).compile() instanceof ColorMatrix4x5);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.homework01.filter;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 颜色矩阵合并与执行测试
+ */
+public class ColorMatrix4x5Test {
+    private static final int[] SAMPLES = {0xFF000000, 0xFFFFFFFF, 0xFF102030, 0xFFC08040, 0xFF7F7F7F};
+
+    @Test
+    public void warmMatrix_matchesWarmKernel() {
+        int[] expected = SAMPLES.clone();
+        PixelKernels.warm().apply(expected, 0, expected.length);
+        int[] actual = SAMPLES.clone();
+        ColorMatrix4x5.warm().apply(actual, 0, actual.length);
+        assertArrayEquals(expected, actual);
+    }
+
+    // 内置滤镜的矩阵与原先的逐像素内核逐位一致，不会因为浮点精度差1
+    @Test
+    public void builtinMatrices_matchOriginalKernels() {
+        Random random = new Random(7);
+        int[] pixels = new int[1 << 16];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        PixelKernel[][] pairs = {
+                {PixelKernels.blackWhite(), ColorMatrix4x5.blackWhite()},
+                {PixelKernels.vintage(), ColorMatrix4x5.vintage()},
+                {PixelKernels.warm(), ColorMatrix4x5.warm()},
+                {PixelKernels.cold(), ColorMatrix4x5.cold()},
+                {PixelKernels.fresh(), ColorMatrix4x5.fresh()},
+        };
+        for (PixelKernel[] pair : pairs) {
+            int[] expected = pixels.clone();
+            pair[0].apply(expected, 0, expected.length);
+            int[] actual = pixels.clone();
+            pair[1].apply(actual, 0, actual.length);
+            assertArrayEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void postConcat_appliesInOrder() {
+        // 先黑白再加亮度，结果三个通道必须相同
+        ColorMatrix4x5 matrix = ColorMatrix4x5.blackWhite().postConcat(ColorMatrix4x5.warm());
+        int[] pixels = {0xFF102030};
+        matrix.apply(pixels, 0, 1);
+        int gray = (int) (0.299 * 0x10 + 0.587 * 0x20 + 0.114 * 0x30);
+        assertEquals(0xFF000000 | (gray + 30) << 16 | gray << 8 | Math.max(0, gray - 30), pixels[0]);
+    }
+
+    @Test
+    public void toChannelOp_matchesPerChannelMatrix() {
+        ColorMatrix4x5 adjust = ColorMatrix4x5.brightness(20).postConcat(ColorMatrix4x5.contrast(0.5f));
+        assertTrue(adjust.isPerChannel());
+        assertFalse(ColorMatrix4x5.vintage().isPerChannel());
+        ChannelLut lut = new ChannelLut(adjust.toChannelOp());
+
+        int[] viaLut = SAMPLES.clone();
+        lut.apply(viaLut, 0, viaLut.length);
+        int[] viaMatrix = SAMPLES.clone();
+        adjust.apply(viaMatrix, 0, viaMatrix.length);
+        assertArrayEquals(viaMatrix, viaLut);
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.homework01.filter;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 像素内核与原先逐像素实现的输出一致性测试
+ */
+public class PixelKernelsTest {
+    private static int[] randomPixels(int count) {
+        Random random = new Random(42);
+        int[] pixels = new int[count];
+        for (int i = 0; i < count; i++) {
+            pixels[i] = random.nextInt();
+        }
+        return pixels;
+    }
+
+    private static int rgb(int r, int g, int b) {
+        return 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+
+    @Test
+    public void blackWhite_matchesReference() {
+        int[] pixels = randomPixels(4096);
+        int[] expected = new int[pixels.length];
+        for (int i = 0; i < pixels.length; i++) {
+            int r = (pixels[i] >> 16) & 0xFF, g = (pixels[i] >> 8) & 0xFF, b = pixels[i] & 0xFF;
+            int gray = (int) (0.299 * r + 0.587 * g + 0.114 * b);
+            expected[i] = rgb(gray, gray, gray);
+        }
+        PixelKernels.blackWhite().apply(pixels, 0, pixels.length);
+        assertArrayEquals(expected, pixels);
+    }
+
+    @Test
+    public void brightnessContrast_matchesReference() {
+        int[] pixels = randomPixels(4096);
+        int[] expected = new int[pixels.length];
+        int brightnessValue = (int) (37 / 100.0 * 255);
+        float contrastFactor = (100 + 0.6f * 100) / 100.0f;
+        for (int i = 0; i < pixels.length; i++) {
+            int[] c = {(pixels[i] >> 16) & 0xFF, (pixels[i] >> 8) & 0xFF, pixels[i] & 0xFF};
+            for (int k = 0; k < 3; k++) {
+                int v = Math.max(0, Math.min(255, c[k] + brightnessValue));
+                v = (int) (((v / 255.0f - 0.5f) * contrastFactor + 0.5f) * 255);
+                c[k] = Math.max(0, Math.min(255, v));
+            }
+            expected[i] = rgb(c[0], c[1], c[2]);
+        }
+        PixelKernels.brightnessContrast(37, 0.6f).apply(pixels, 0, pixels.length);
+        assertArrayEquals(expected, pixels);
+    }
+
+    @Test
+    public void apply_onlyTouchesGivenRange() {
+        int[] pixels = randomPixels(100);
+        int[] original = pixels.clone();
+        PixelKernels.warm().apply(pixels, 10, 20);
+        assertEquals(original[9], pixels[9]);
+        assertEquals(original[30], pixels[30]);
+        assertNotEquals(original[10], pixels[10]);
+    }
+
+    @Test
+    public void channelLut_matchesWarmReference() {
+        int[] pixels = randomPixels(4096);
+        int[] expected = new int[pixels.length];
+        for (int i = 0; i < pixels.length; i++) {
+            int r = Math.min(255, ((pixels[i] >> 16) & 0xFF) + 30);
+            int g = (pixels[i] >> 8) & 0xFF;
+            int b = Math.max(0, (pixels[i] & 0xFF) - 30);
+            expected[i] = rgb(r, g, b);
+        }
+        PixelKernels.warm().apply(pixels, 0, pixels.length);
+        assertArrayEquals(expected, pixels);
+    }
+
+    @Test
+    public void channelLut_setRebuildsTables() {
+        ChannelLut lut = new ChannelLut(ChannelLut.IDENTITY);
+        assertEquals(200, lut.lookup(ChannelLut.GREEN, 200));
+        lut.set((channel, value) -> value + 100);
+        assertEquals(255, lut.lookup(ChannelLut.GREEN, 200));
+        assertEquals(100, lut.lookup(ChannelLut.RED, 0));
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.homework01.filter;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * 分块并行执行结果必须与单线程完全一致
+ */
+public class TiledExecutorTest {
+    private static final int WIDTH = 333;
+    private static final int ROWS = 257;
+
+    private static int[] randomPixels() {
+        int[] pixels = new int[WIDTH * ROWS];
+        Random random = new Random(7);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        return pixels;
+    }
+
+    @Test
+    public void parallelRun_matchesSingleThread() {
+        int[] pixels = randomPixels();
+        PixelKernel kernel = ColorMatrix4x5.vintage().postConcat(ColorMatrix4x5.contrast(0.3f));
+
+        int[] expected = pixels.clone();
+        new TiledExecutor(1).run(expected, WIDTH, ROWS, kernel);
+
+        for (int parallelism = 2; parallelism <= 8; parallelism++) {
+            TiledExecutor executor = new TiledExecutor(parallelism);
+            try {
+                int[] actual = pixels.clone();
+                executor.run(actual, WIDTH, ROWS, kernel);
+                assertArrayEquals("parallelism " + parallelism, expected, actual);
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void callerFailure_waitsForOtherStripes() {
+        TiledExecutor executor = new TiledExecutor(4);
+        AtomicInteger finished = new AtomicInteger();
+        try {
+            executor.run(new int[WIDTH * ROWS], WIDTH, ROWS, (pixels, offset, length) -> {
+                if (offset == 0) {
+                    throw new IllegalArgumentException("first stripe");
+                }
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                finished.incrementAndGet();
+            });
+            fail("expected the first stripe to fail");
+        } catch (IllegalArgumentException e) {
+            // 抛出时其它三个条带已经结束
+            assertEquals(3, finished.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void setParallelism_duringRun_stillCompletes() throws InterruptedException {
+        int[] pixels = randomPixels();
+        PixelKernel kernel = ColorMatrix4x5.vintage();
+        int[] expected = pixels.clone();
+        kernel.apply(expected, 0, expected.length);
+
+        TiledExecutor executor = new TiledExecutor(4);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread worker = new Thread(() -> {
+            try {
+                for (int i = 0; i < 200; i++) {
+                    int[] actual = pixels.clone();
+                    executor.run(actual, WIDTH, ROWS, kernel);
+                    assertArrayEquals(expected, actual);
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        worker.start();
+        for (int i = 0; worker.isAlive() && i < 1000; i++) {
+            executor.setParallelism(2 + i % 3);
+        }
+        worker.join();
+        executor.shutdown();
+        assertNull(failure.get());
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.homework01.geometry;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * D4方向的合并规则和像素重排结果
+ */
+public class OrientationTest {
+    // 非64倍数的尺寸，覆盖不完整的边缘分块
+    private static final int WIDTH = 150;
+    private static final int HEIGHT = 71;
+
+    private static int[] pixels(int width, int height) {
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = i * 31 + 7;
+        }
+        return pixels;
+    }
+
+    // 参考实现：逐像素的顺时针旋转90度
+    private static int[] rotate90(int[] src, int width, int height) {
+        int[] dst = new int[src.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                dst[x * height + (height - 1 - y)] = src[y * width + x];
+            }
+        }
+        return dst;
+    }
+
+    // 参考实现：水平翻转
+    private static int[] flipHorizontal(int[] src, int width, int height) {
+        int[] dst = new int[src.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                dst[y * width + (width - 1 - x)] = src[y * width + x];
+            }
+        }
+        return dst;
+    }
+
+    private static int[] remap(int[] src, int width, int height, Orientation orientation) {
+        int[] dst = new int[src.length];
+        OrientationRemap.apply(src, width, height, orientation, dst);
+        return dst;
+    }
+
+    @Test
+    public void then_foldsRotationsAndFlips() {
+        Orientation r90 = Orientation.rotation(90);
+        assertSame(Orientation.rotation(180), r90.then(r90));
+        assertSame(Orientation.IDENTITY, r90.then(r90).then(r90).then(r90));
+        assertSame(Orientation.rotation(-90), Orientation.rotation(270));
+        assertSame(Orientation.IDENTITY, Orientation.flipHorizontal().then(Orientation.flipHorizontal()));
+        // 水平翻转加垂直翻转等于旋转180度
+        assertSame(Orientation.rotation(180), Orientation.flipHorizontal().then(Orientation.flipVertical()));
+        for (int i = 0; i < 8; i++) {
+            Orientation orientation = Orientation.of(i);
+            assertSame(Orientation.IDENTITY, orientation.then(orientation.inverse()));
+        }
+    }
+
+    @Test
+    public void remap_matchesReferenceRotationAndFlip() {
+        int[] src = pixels(WIDTH, HEIGHT);
+        int[] r90 = rotate90(src, WIDTH, HEIGHT);
+        assertArrayEquals(r90, remap(src, WIDTH, HEIGHT, Orientation.rotation(90)));
+        int[] r180 = rotate90(r90, HEIGHT, WIDTH);
+        assertArrayEquals(r180, remap(src, WIDTH, HEIGHT, Orientation.rotation(180)));
+        assertArrayEquals(rotate90(r180, WIDTH, HEIGHT), remap(src, WIDTH, HEIGHT, Orientation.rotation(270)));
+        assertArrayEquals(flipHorizontal(src, WIDTH, HEIGHT), remap(src, WIDTH, HEIGHT, Orientation.flipHorizontal()));
+        assertArrayEquals(flipHorizontal(r180, WIDTH, HEIGHT), remap(src, WIDTH, HEIGHT, Orientation.flipVertical()));
+    }
+
+    @Test
+    public void remap_composedOrientationEqualsSequentialRemaps() {
+        int[] src = pixels(WIDTH, HEIGHT);
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++) {
+                Orientation first = Orientation.of(i);
+                Orientation second = Orientation.of(j);
+                int[] once = remap(src, WIDTH, HEIGHT, first);
+                int[] twice = remap(once, first.getOutputWidth(WIDTH, HEIGHT),
+                        first.getOutputHeight(WIDTH, HEIGHT), second);
+                assertArrayEquals(first + " then " + second,
+                        twice, remap(src, WIDTH, HEIGHT, first.then(second)));
+            }
+        }
+    }
+
+    @Test
+    public void applyRows_bandsMatchFullRemap() {
+        int[] src = pixels(WIDTH, HEIGHT);
+        Orientation orientation = Orientation.of(5);
+        int outWidth = orientation.getOutputWidth(WIDTH, HEIGHT);
+        int outHeight = orientation.getOutputHeight(WIDTH, HEIGHT);
+        int[] full = remap(src, WIDTH, HEIGHT, orientation);
+        int[] band = new int[outWidth * 40];
+        for (int top = 0; top < outHeight; top += 40) {
+            int rows = Math.min(40, outHeight - top);
+            OrientationRemap.applyRows(src, WIDTH, HEIGHT, orientation, top, rows, band);
+            assertArrayEquals(Arrays.copyOfRange(full, top * outWidth, (top + rows) * outWidth),
+                    Arrays.copyOf(band, rows * outWidth));
+        }
+    }
+
+    /**
+     * 按EXIF规范构造文件中存储的像素：第0行和第0列分别位于显示图的哪一边，
+     * 值为5-8时存储的宽高与显示的宽高互换
+     */
+    private static int[] storeWithExif(int[] upright, int width, int height, int exif) {
+        boolean swapped = exif >= 5;
+        int storedWidth = swapped ? height : width;
+        int storedHeight = swapped ? width : height;
+        int[] stored = new int[upright.length];
+        for (int r = 0; r < storedHeight; r++) {
+            for (int c = 0; c < storedWidth; c++) {
+                int vx;
+                int vy;
+                switch (exif) {
+                    case 2: vx = width - 1 - c; vy = r; break;
+                    case 3: vx = width - 1 - c; vy = height - 1 - r; break;
+                    case 4: vx = c; vy = height - 1 - r; break;
+                    case 5: vx = r; vy = c; break;
+                    case 6: vx = width - 1 - r; vy = c; break;
+                    case 7: vx = width - 1 - r; vy = height - 1 - c; break;
+                    case 8: vx = r; vy = height - 1 - c; break;
+                    default: vx = c; vy = r; break;
+                }
+                stored[r * storedWidth + c] = upright[vy * width + vx];
+            }
+        }
+        return stored;
+    }
+
+    @Test
+    public void fromExif_restoresUprightImageForAllEightValues() {
+        int[] upright = pixels(WIDTH, HEIGHT);
+        for (int exif = 1; exif <= 8; exif++) {
+            Orientation orientation = Orientation.fromExif(exif);
+            int storedWidth = exif >= 5 ? HEIGHT : WIDTH;
+            int storedHeight = exif >= 5 ? WIDTH : HEIGHT;
+            int[] stored = storeWithExif(upright, WIDTH, HEIGHT, exif);
+            assertEquals(WIDTH, orientation.getOutputWidth(storedWidth, storedHeight));
+            assertArrayEquals("exif " + exif, upright, remap(stored, storedWidth, storedHeight, orientation));
+        }
+        // 未定义的值不做变换
+        assertSame(Orientation.IDENTITY, Orientation.fromExif(0));
+    }
+
+    @Test
+    public void mapUnitRect_inverseMapsDisplayCropBackToFile() {
+        // EXIF 6：文件中的图片需要顺时针旋转90度显示，显示图左上角的区域在文件中位于左下角
+        Orientation orientation = Orientation.fromExif(6);
+        float[] stored = orientation.inverse().mapUnitRect(0f, 0f, 0.5f, 0.25f);
+        assertArrayEquals(new float[]{0f, 0.5f, 0.25f, 1f}, stored, 1e-6f);
+        float[] back = orientation.mapUnitRect(stored[0], stored[1], stored[2], stored[3]);
+        assertArrayEquals(new float[]{0f, 0f, 0.5f, 0.25f}, back, 1e-6f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rotation_rejectsNonQuarterTurns() {
+        Orientation.rotation(45);
+    }
+}
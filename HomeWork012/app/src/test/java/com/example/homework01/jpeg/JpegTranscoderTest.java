@@ -0,0 +1,198 @@
+package com.example.homework01.jpeg;
+
+import com.example.homework01.geometry.Orientation;
+import com.example.homework01.geometry.OrientationRemap;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * DCT域变换的结果与先解码再变换像素一致，用JDK的编解码器生成和检查样例
+ */
+public class JpegTranscoderTest {
+    // 16的倍数，4:2:0采样下没有不完整的MCU
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+    // IDCT和色度上采样的舍入方向不同，允许少量误差
+    private static final int TOLERANCE = 6;
+
+    private static BufferedImage sample(int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                // 亮度上的棋盘格能看出块的位置，色度只有平缓的渐变，避免裁剪边缘的色度插值误差
+                int checker = (x / 8 + y / 8) % 2 == 0 ? 0 : 60;
+                int r = x * 180 / width + checker;
+                int g = y * 180 / height + checker;
+                int b = 100 + checker;
+                image.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        return image;
+    }
+
+    private static byte[] encode(BufferedImage image, boolean progressive) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(0.95f);
+        if (progressive) {
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (MemoryCacheImageOutputStream stream = new MemoryCacheImageOutputStream(out)) {
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        }
+        writer.dispose();
+        return out.toByteArray();
+    }
+
+    private static byte[] transform(byte[] jpeg, int[] crop, Orientation orientation) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JpegTranscoder.transform(new ByteArrayInputStream(jpeg), out, crop, orientation);
+        return out.toByteArray();
+    }
+
+    private static BufferedImage decode(byte[] jpeg) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(jpeg));
+        assertNotNull(image);
+        return image;
+    }
+
+    // 参考结果：把解码后的像素按方向重排
+    private static void assertTransformed(BufferedImage source, int left, int top,
+                                          Orientation orientation, BufferedImage actual) {
+        int width = orientation.swapsAxes() ? actual.getHeight() : actual.getWidth();
+        int height = orientation.swapsAxes() ? actual.getWidth() : actual.getHeight();
+        // 直接比较栅格数据，灰度图的getRGB会做伽马转换放大误差
+        int bands = source.getRaster().getNumBands();
+        for (int band = 0; band < bands; band++) {
+            int[] pixels = source.getRaster().getSamples(left, top, width, height, band, (int[]) null);
+            int[] expected = new int[pixels.length];
+            OrientationRemap.apply(pixels, width, height, orientation, expected);
+            int[] samples = actual.getRaster().getSamples(0, 0, actual.getWidth(), actual.getHeight(),
+                    band, (int[]) null);
+            for (int i = 0; i < expected.length; i++) {
+                int diff = Math.abs(expected[i] - samples[i]);
+                assertTrue("像素" + i + "误差" + diff, diff <= TOLERANCE);
+            }
+        }
+    }
+
+    @Test
+    public void transform_allOrientationsMatchPixelTransform() throws IOException {
+        byte[] jpeg = encode(sample(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB), false);
+        BufferedImage source = decode(jpeg);
+        for (int i = 0; i < 8; i++) {
+            Orientation orientation = Orientation.of(i);
+            BufferedImage result = decode(transform(jpeg, null, orientation));
+            assertEquals(orientation.getOutputWidth(WIDTH, HEIGHT), result.getWidth());
+            assertEquals(orientation.getOutputHeight(WIDTH, HEIGHT), result.getHeight());
+            assertTransformed(source, 0, 0, orientation, result);
+        }
+    }
+
+    @Test
+    public void transform_cropAlignsStartToMcu() throws IOException {
+        byte[] jpeg = encode(sample(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB), false);
+        BufferedImage source = decode(jpeg);
+        // 左上角向外对齐到16像素的MCU，旋转后底边到了左边，也裁到MCU边界
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int[] size = JpegTranscoder.transform(new ByteArrayInputStream(jpeg), out,
+                new int[]{20, 18, 60, 40}, Orientation.rotation(90));
+        assertArrayEquals(new int[]{16, 44}, size);
+        BufferedImage result = decode(out.toByteArray());
+        assertEquals(16, result.getWidth());
+        assertEquals(44, result.getHeight());
+        assertTransformed(source, 16, 16, Orientation.rotation(90), result);
+    }
+
+    @Test
+    public void transform_trimsPartialMcuOnMirroredEdge() throws IOException {
+        byte[] jpeg = encode(sample(40, 30, BufferedImage.TYPE_INT_RGB), false);
+        BufferedImage source = decode(jpeg);
+        // 右边不完整的MCU翻到左边会露出填充数据，所以被裁掉
+        BufferedImage flipped = decode(transform(jpeg, null, Orientation.flipHorizontal()));
+        assertEquals(32, flipped.getWidth());
+        assertEquals(30, flipped.getHeight());
+        assertTransformed(source, 0, 0, Orientation.flipHorizontal(), flipped);
+        // 不镜像时保留完整尺寸
+        BufferedImage same = decode(transform(jpeg, null, Orientation.IDENTITY));
+        assertEquals(40, same.getWidth());
+        assertEquals(30, same.getHeight());
+    }
+
+    @Test
+    public void transform_grayscale() throws IOException {
+        byte[] jpeg = encode(sample(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY), false);
+        BufferedImage source = decode(jpeg);
+        BufferedImage result = decode(transform(jpeg, null, Orientation.rotation(270)));
+        assertEquals(HEIGHT, result.getWidth());
+        assertEquals(WIDTH, result.getHeight());
+        assertTransformed(source, 0, 0, Orientation.rotation(270), result);
+    }
+
+    @Test
+    public void transform_roundTripIsLossless() throws IOException {
+        byte[] jpeg = encode(sample(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB), false);
+        byte[] identity = transform(jpeg, null, Orientation.IDENTITY);
+        byte[] rotated = transform(transform(jpeg, null, Orientation.rotation(90)), null, Orientation.rotation(270));
+        assertArrayEquals(identity, rotated);
+        byte[] flipped = transform(transform(jpeg, null, Orientation.flipVertical()), null, Orientation.flipVertical());
+        assertArrayEquals(identity, flipped);
+    }
+
+    @Test
+    public void transform_resetsExifOrientation() throws IOException {
+        byte[] jpeg = encode(sample(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB), false);
+        // 大端TIFF，IFD0只有方向标签，值为6（顺时针旋转90度）
+        byte[] exif = {
+                (byte) 0xFF, (byte) 0xE1, 0, 34, 'E', 'x', 'i', 'f', 0, 0,
+                'M', 'M', 0, 42, 0, 0, 0, 8,
+                0, 1, 0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, 6, 0, 0,
+                0, 0, 0, 0
+        };
+        byte[] withExif = new byte[jpeg.length + exif.length];
+        System.arraycopy(jpeg, 0, withExif, 0, 2);
+        System.arraycopy(exif, 0, withExif, 2, exif.length);
+        System.arraycopy(jpeg, 2, withExif, 2 + exif.length, jpeg.length - 2);
+
+        byte[] result = transform(withExif, null, Orientation.fromExif(6));
+        int index = indexOf(result, new byte[]{0x01, 0x12, 0, 3, 0, 0, 0, 1});
+        assertTrue(index > 0);
+        assertEquals(0, result[index + 8]);
+        assertEquals(1, result[index + 9]);
+        assertEquals(HEIGHT, decode(result).getWidth());
+    }
+
+    @Test(expected = UnsupportedJpegException.class)
+    public void transform_rejectsProgressive() throws IOException {
+        transform(encode(sample(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB), true), null, Orientation.IDENTITY);
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern) {
+        for (int i = 0; i + pattern.length <= data.length; i++) {
+            int j = 0;
+            while (j < pattern.length && data[i + j] == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
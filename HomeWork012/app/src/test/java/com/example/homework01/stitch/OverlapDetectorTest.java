@@ -0,0 +1,135 @@
+package com.example.homework01.stitch;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 模拟连续截图：相同的状态栏和导航栏，中间是同一篇长内容的不同滚动位置
+ */
+public class OverlapDetectorTest {
+    private static final int WIDTH = 360;
+    private static final int HEIGHT = 640;
+    private static final int HEADER = 48;
+    private static final int FOOTER = 56;
+    private static final int VIEWPORT = HEIGHT - HEADER - FOOTER;
+
+    // 长内容：白底上一行行的“文字”块，每行的长度和位置随机
+    private static int[] content(int rows, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[WIDTH * rows];
+        Arrays.fill(pixels, 0xFFFFFFFF);
+        for (int line = 0; line + 24 <= rows; line += 24) {
+            int words = 3 + random.nextInt(8);
+            int x = 12;
+            for (int w = 0; w < words && x < WIDTH - 12; w++) {
+                int length = 10 + random.nextInt(40);
+                int color = 0xFF000000 | random.nextInt(0x404040);
+                int glyphHeight = 10 + random.nextInt(6);
+                for (int y = line + 6; y < line + 6 + glyphHeight; y++) {
+                    for (int i = x; i < Math.min(WIDTH - 12, x + length); i++) {
+                        // 笔画有竖向的空隙，像文字而不是实心块
+                        if ((i + y) % 5 != 0) {
+                            pixels[y * WIDTH + i] = color;
+                        }
+                    }
+                }
+                x += length + 8;
+            }
+        }
+        return pixels;
+    }
+
+    // 一张截图：状态栏（时间不同）+ 从scroll行开始的内容 + 导航栏
+    private static int[] screenshot(int[] content, int scroll, int clock) {
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int y = 0; y < HEADER; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                // 状态栏左侧的时间区域每张都不一样
+                boolean clockArea = x >= 8 && x < 40 && y >= 16 && y < 32;
+                pixels[y * WIDTH + x] = clockArea ? 0xFF000000 | (clock * 0x3A5F7) & 0xFFFFFF : 0xFF3366CC;
+            }
+        }
+        System.arraycopy(content, scroll * WIDTH, pixels, HEADER * WIDTH, VIEWPORT * WIDTH);
+        for (int y = HEIGHT - FOOTER; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                pixels[y * WIDTH + x] = (x / 60) % 2 == 0 ? 0xFF202020 : 0xFFE0E0E0;
+            }
+        }
+        return pixels;
+    }
+
+    // 模拟有损压缩的噪声
+    private static int[] addNoise(int[] pixels, long seed) {
+        Random random = new Random(seed);
+        int[] noisy = new int[pixels.length];
+        for (int i = 0; i < pixels.length; i++) {
+            int color = pixels[i];
+            int r = clamp(((color >> 16) & 0xFF) + random.nextInt(9) - 4);
+            int g = clamp(((color >> 8) & 0xFF) + random.nextInt(9) - 4);
+            int b = clamp((color & 0xFF) + random.nextInt(9) - 4);
+            noisy[i] = 0xFF000000 | (r << 16) | (g << 8) | b;
+        }
+        return noisy;
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+
+    @Test
+    public void detect_findsOverlapAndBars() {
+        int[] content = content(2000, 1);
+        int scroll = 330;
+        int[] first = screenshot(content, 0, 1);
+        int[] second = screenshot(content, scroll, 2);
+        OverlapDetector.Result result = OverlapDetector.detect(first, HEIGHT, second, HEIGHT, WIDTH);
+        assertTrue(result.hasOverlap());
+        assertEquals(HEADER, result.getHeaderRows());
+        assertEquals(FOOTER, result.getFooterRows());
+        assertEquals(VIEWPORT - scroll, result.getOverlapRows());
+        assertEquals(FOOTER, result.getBottomCrop());
+        assertEquals(HEADER + VIEWPORT - scroll, result.getTopCrop());
+    }
+
+    @Test
+    public void detect_toleratesCompressionNoise() {
+        int[] content = content(2000, 2);
+        int scroll = 401;
+        int[] first = addNoise(screenshot(content, 0, 1), 3);
+        int[] second = addNoise(screenshot(content, scroll, 5), 4);
+        OverlapDetector.Result result = OverlapDetector.detect(first, HEIGHT, second, HEIGHT, WIDTH);
+        assertTrue(result.hasOverlap());
+        // 内容开头几行近似相同时可能被算进顶栏，但去掉的总行数不变
+        assertEquals(HEADER + VIEWPORT - scroll, result.getTopCrop());
+        assertEquals(FOOTER, result.getBottomCrop());
+    }
+
+    @Test
+    public void detect_noOverlapForUnrelatedContent() {
+        int[] first = screenshot(content(2000, 5), 0, 1);
+        int[] second = screenshot(content(2000, 6), 0, 2);
+        OverlapDetector.Result result = OverlapDetector.detect(first, HEIGHT, second, HEIGHT, WIDTH);
+        assertFalse(result.hasOverlap());
+        assertEquals(0, result.getTopCrop());
+        assertEquals(0, result.getBottomCrop());
+    }
+
+    @Test
+    public void croppedLayout_removesDuplicateRows() {
+        int[] content = content(2000, 7);
+        int scroll = 300;
+        int[] first = screenshot(content, 0, 1);
+        int[] second = screenshot(content, scroll, 2);
+        OverlapDetector.Result result = OverlapDetector.detect(first, HEIGHT, second, HEIGHT, WIDTH);
+        StitchLayout layout = StitchLayout.verticalFullSize(new int[]{WIDTH, WIDTH}, new int[]{HEIGHT, HEIGHT},
+                new int[]{0, result.getTopCrop()}, new int[]{result.getBottomCrop(), 0});
+        // 状态栏 + 连续的内容 + 导航栏
+        assertEquals(HEADER + scroll + VIEWPORT + FOOTER, layout.getHeight());
+        assertEquals(HEADER + VIEWPORT, layout.getTop(1));
+        assertEquals(result.getTopCrop(), layout.getSourceTop(1));
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.homework01.stitch;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.*;
+
+/**
+ * 按行读取PNG：能读回PngStripWriter和其他编码器写出的文件，跳过的行不影响后面的结果
+ */
+public class PngStripReaderTest {
+    private static int color(int x, int y) {
+        return 0xFF000000 | ((x * 13 + y) & 0xFF) << 16 | ((x * 7) & 0xFF) << 8 | (y * 3) & 0xFF;
+    }
+
+    @Test
+    public void readsBackStripWriterOutput() throws Exception {
+        int width = 37;
+        int height = 100;
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                pixels[y * width + x] = color(x, y);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PngStripWriter writer = new PngStripWriter(out, width, height)) {
+            writer.writeRows(pixels, 0, width, height);
+            writer.finish();
+        }
+
+        try (PngStripReader reader = new PngStripReader(new ByteArrayInputStream(out.toByteArray()))) {
+            assertEquals(width, reader.getWidth());
+            assertEquals(height, reader.getHeight());
+            // 先跳过10行，再按不同的段长读取
+            reader.skipRows(10);
+            int[] actual = new int[width * (height - 10)];
+            reader.readRows(actual, 0, width, 7);
+            reader.readRows(actual, 7 * width, width, height - 17);
+            for (int y = 10; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    assertEquals(color(x, y), actual[(y - 10) * width + x]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void readsRgbaWithAllFilters() throws Exception {
+        // ImageIO按行自适应选择过滤方式，不只是PngStripWriter用到的None、Sub和Up
+        int width = 64;
+        int height = 48;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, (x * y & 0xFF) << 24 | color(x * x, y) & 0xFFFFFF);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(ImageIO.write(image, "png", out));
+
+        int[] actual = new int[width * height];
+        try (PngStripReader reader = new PngStripReader(new ByteArrayInputStream(out.toByteArray()))) {
+            reader.readRows(actual, 0, width, height);
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals(image.getRGB(x, y), actual[y * width + x]);
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsUnsupportedFormat() throws Exception {
+        BufferedImage gray = new BufferedImage(8, 8, BufferedImage.TYPE_BYTE_GRAY);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(ImageIO.write(gray, "png", out));
+        new PngStripReader(new ByteArrayInputStream(out.toByteArray())).close();
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.homework01.stitch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 拼接布局的尺寸限制和图片位置
+ */
+public class StitchLayoutTest {
+    @Test
+    public void horizontal_placesImagesSideBySideCentered() {
+        StitchLayout layout = StitchLayout.horizontal(new int[]{400, 300}, new int[]{300, 200});
+        assertEquals(700, layout.getWidth());
+        assertEquals(300, layout.getHeight());
+        assertEquals(400, layout.getLeft(1));
+        assertEquals(50, layout.getTop(1));
+        assertEquals(700, layout.getRight(1));
+    }
+
+    @Test
+    public void vertical_scalesDownToSizeLimit() {
+        StitchLayout layout = StitchLayout.vertical(new int[]{3000, 3000}, new int[]{4000, 4000});
+        assertTrue(layout.getWidth() <= 4096 && layout.getHeight() <= 4096);
+        assertTrue((long) layout.getWidth() * layout.getHeight() <= 2048L * 2048);
+        // 缩小后的图片仍然首尾相接并填满结果
+        assertEquals(layout.getBottom(0), layout.getTop(1));
+        assertEquals(layout.getHeight(), layout.getBottom(1), 1);
+    }
+
+    @Test
+    public void grid_usesAtMostFourCells() {
+        int[] sizes = {600, 600, 600, 600, 600};
+        StitchLayout layout = StitchLayout.grid(sizes, sizes);
+        assertEquals(4, layout.getCount());
+        assertEquals(1024, layout.getWidth());
+        assertEquals(1024, layout.getHeight());
+        assertEquals(512, layout.getLeft(3));
+        assertEquals(512, layout.getTop(3));
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.homework01.stitch;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.*;
+
+/**
+ * 条带合成和按行PNG输出：结果与整图拼接相同，每次读取不超过一个条带
+ */
+public class StripStitcherTest {
+    // 每张图片的颜色由下标和坐标决定，方便检查每个像素来自哪里
+    private static int color(int index, int x, int y) {
+        return 0xFF000000 | (index * 60 << 16) | ((x * 7) & 0xFF) << 8 | (y * 3) & 0xFF;
+    }
+
+    /**
+     * 按颜色公式生成像素，并记录每次读取的行数
+     */
+    private static final class FakeSource implements StripStitcher.RowSource {
+        private final int[] mWidths;
+        int maxRows;
+        int released;
+
+        FakeSource(int[] widths) {
+            mWidths = widths;
+        }
+
+        @Override
+        public void readRows(int index, int top, int rows, int[] dst, int offset, int stride) {
+            maxRows = Math.max(maxRows, rows);
+            for (int r = 0; r < rows; r++) {
+                for (int x = 0; x < mWidths[index]; x++) {
+                    dst[offset + r * stride + x] = color(index, x, top + r);
+                }
+            }
+        }
+
+        @Override
+        public void release(int index) {
+            released++;
+        }
+    }
+
+    /**
+     * 把提交的行收集成整张图
+     */
+    private static final class CollectSink implements StripStitcher.RowSink {
+        final int[] pixels;
+        final int width;
+        int rows;
+
+        CollectSink(int width, int height) {
+            this.width = width;
+            pixels = new int[width * height];
+        }
+
+        @Override
+        public void writeRows(int[] src, int offset, int stride, int count) {
+            for (int r = 0; r < count; r++) {
+                System.arraycopy(src, offset + r * stride, pixels, (rows + r) * width, width);
+            }
+            rows += count;
+        }
+    }
+
+    @Test
+    public void verticalFullSize_keepsOriginalSizes() {
+        StitchLayout layout = StitchLayout.verticalFullSize(new int[]{1080, 720}, new int[]{20000, 20000});
+        assertEquals(1080, layout.getWidth());
+        assertEquals(40000, layout.getHeight());
+        assertEquals(180, layout.getLeft(1));
+        assertEquals(20000, layout.getTop(1));
+        assertEquals(900, layout.getRight(1));
+    }
+
+    @Test
+    public void stitch_composesStripsFromSourceRows() throws IOException {
+        int[] widths = {30, 20, 30};
+        int[] heights = {50, 7, 61};
+        StitchLayout layout = StitchLayout.verticalFullSize(widths, heights);
+        FakeSource source = new FakeSource(widths);
+        CollectSink sink = new CollectSink(layout.getWidth(), layout.getHeight());
+        new StripStitcher(layout, 16).stitch(source, sink);
+
+        assertEquals(layout.getHeight(), sink.rows);
+        assertTrue(source.maxRows <= 16);
+        assertEquals(3, source.released);
+        for (int i = 0; i < widths.length; i++) {
+            for (int y = layout.getTop(i); y < layout.getBottom(i); y++) {
+                for (int x = 0; x < layout.getWidth(); x++) {
+                    int expected = x >= layout.getLeft(i) && x < layout.getRight(i)
+                            ? color(i, x - layout.getLeft(i), y - layout.getTop(i))
+                            : StripStitcher.BACKGROUND;
+                    assertEquals(expected, sink.pixels[y * layout.getWidth() + x]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void pngStripWriter_decodesToSamePixels() throws IOException {
+        int[] widths = {41, 33};
+        int[] heights = {70, 90};
+        StitchLayout layout = StitchLayout.verticalFullSize(widths, heights);
+        CollectSink expected = new CollectSink(layout.getWidth(), layout.getHeight());
+        new StripStitcher(layout, 32).stitch(new FakeSource(widths), expected);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PngStripWriter writer = new PngStripWriter(out, layout.getWidth(), layout.getHeight())) {
+            new StripStitcher(layout, 32).stitch(new FakeSource(widths), writer);
+            writer.finish();
+        }
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+        assertNotNull(image);
+        assertEquals(layout.getWidth(), image.getWidth());
+        assertEquals(layout.getHeight(), image.getHeight());
+        int[] actual = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+        assertArrayEquals(expected.pixels, actual);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void pngStripWriter_rejectsMissingRows() throws IOException {
+        try (PngStripWriter writer = new PngStripWriter(new ByteArrayOutputStream(), 4, 4)) {
+            writer.writeRows(new int[16], 0, 4, 3);
+            writer.finish();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.homework01.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 精确缩放解码的尺寸计算
+ */
+public class BitmapUtilsTest {
+    @Test
+    public void targetSize_fitsBoundsExactly() {
+        assertArrayEquals(new int[]{1024, 768}, BitmapUtils.calculateTargetSize(4000, 3000, 1024, 1024));
+        assertArrayEquals(new int[]{576, 1024}, BitmapUtils.calculateTargetSize(2250, 4000, 1024, 1024));
+        // 不放大小图
+        assertArrayEquals(new int[]{800, 600}, BitmapUtils.calculateTargetSize(800, 600, 1024, 1024));
+    }
+
+    @Test
+    public void coarseSampleSize_keepsHeadroom() {
+        // 4000 -> 1024：速度模式采样到2000，质量模式要保留两倍余量，不能采样
+        assertEquals(2, BitmapUtils.calculateCoarseSampleSize(4000, 3000, 1024, 768, 1));
+        assertEquals(1, BitmapUtils.calculateCoarseSampleSize(4000, 3000, 1024, 768, 2));
+        // 8000 -> 1000：速度模式采样到1000，质量模式停在2000
+        assertEquals(8, BitmapUtils.calculateCoarseSampleSize(8000, 6000, 1000, 750, 1));
+        assertEquals(4, BitmapUtils.calculateCoarseSampleSize(8000, 6000, 1000, 750, 2));
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.homework01.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 按字节上限二分查找编码质量
+ */
+public class OutputFormatTest {
+    // 模拟编码大小随质量单调增长
+    private static long sizeAt(int quality) {
+        return 1000L + quality * quality * 100L;
+    }
+
+    // 模拟编码：数据长度就是这个质量下的编码大小
+    private static byte[] encodeAt(int quality) {
+        return new byte[(int) sizeAt(quality)];
+    }
+
+    @Test
+    public void searchEncoded_returnsHighestQualityThatFits() throws Exception {
+        int[] probes = {0};
+        byte[] data = OutputFormat.searchEncoded(q -> {
+            probes[0]++;
+            return encodeAt(q);
+        }, 40, 89, 500_000);
+        // 70时是491000字节，71时超过上限
+        assertEquals(sizeAt(70), data.length);
+        // 二分查找，50个候选最多6次编码，找到后不再重新编码
+        assertTrue(probes[0] <= 6);
+    }
+
+    @Test
+    public void searchEncoded_fallsBackToMinimum() throws Exception {
+        assertEquals(sizeAt(40), OutputFormat.searchEncoded(OutputFormatTest::encodeAt, 40, 89, 10).length);
+    }
+
+    @Test
+    public void searchEncoded_lowPresetSearchesBelowDefaultMinimum() throws Exception {
+        // 预设质量30放不下时只能往下找，不能退回到默认下限40；29也放不下时返回29的结果
+        int[] highest = {0};
+        byte[] data = OutputFormat.searchEncoded(q -> {
+            highest[0] = Math.max(highest[0], q);
+            return encodeAt(q);
+        }, OutputFormat.searchFloor(30), 30 - 1, 50_000);
+        assertTrue(highest[0] <= 29);
+        assertEquals(sizeAt(29), data.length);
+        assertEquals(29, OutputFormat.searchFloor(30));
+        assertEquals(40, OutputFormat.searchFloor(90));
+    }
+
+    @Test
+    public void forMimeType_keepsOriginalType() {
+        assertEquals(OutputFormat.Type.JPEG, OutputFormat.forMimeType("image/jpeg").getType());
+        assertEquals("image/png", OutputFormat.forMimeType("image/png").getMimeType());
+        assertEquals(".webp", OutputFormat.forMimeType("image/webp").getExtension());
+        assertNull(OutputFormat.forMimeType("image/heif"));
+        assertNull(OutputFormat.forMimeType(null));
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.homework01.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 耗时统计的环形缓冲区和分位数
+ */
+public class PerfTracerTest {
+    @Test
+    public void percentiles_overRecentSamples() {
+        PerfTracer.Stats stats = new PerfTracer.Stats(100);
+        for (int i = 1; i <= 100; i++) {
+            stats.record(i, 10);
+        }
+        assertEquals(50, stats.percentile(0.5));
+        assertEquals(90, stats.percentile(0.9));
+        assertEquals(99, stats.percentile(0.99));
+        assertEquals(100, stats.percentile(1.0));
+        assertEquals(10, stats.getAverageAllocatedBytes());
+    }
+
+    @Test
+    public void ringBuffer_dropsOldestSamples() {
+        PerfTracer.Stats stats = new PerfTracer.Stats(4);
+        for (int i = 1; i <= 10; i++) {
+            stats.record(i * 1000, 0);
+        }
+        assertEquals(10, stats.getCount());
+        // 只剩最近的7、8、9、10
+        assertEquals(7000, stats.percentile(0.0));
+        assertEquals(10000, stats.percentile(1.0));
+    }
+
+    @Test
+    public void threadCounter_nestedSpans() {
+        PerfTracer.ThreadCounter counter = new PerfTracer.ThreadCounter();
+        counter.push();
+        counter.mAllocated += 100;
+        counter.push();
+        counter.mAllocated += 20;
+        assertEquals(20, counter.pop());
+        assertEquals(120, counter.pop());
+    }
+
+    @Test
+    public void allocations_countedPerThread() throws InterruptedException {
+        PerfTracer.setEnabled(true);
+        try {
+            long before = PerfTracer.getThreadAllocatedBytes();
+            // 其它线程上的分配不计入当前线程的阶段
+            Thread other = new Thread(() -> PerfTracer.countAllocation(1 << 20));
+            other.start();
+            other.join();
+            assertEquals(before, PerfTracer.getThreadAllocatedBytes());
+            PerfTracer.countAllocation(4096);
+            assertEquals(before + 4096, PerfTracer.getThreadAllocatedBytes());
+        } finally {
+            PerfTracer.setEnabled(false);
+        }
+    }
+
+    @Test
+    public void disabled_beginReturnsZero() {
+        PerfTracer.setEnabled(false);
+        long token = PerfTracer.begin("test");
+        assertEquals(0, token);
+        PerfTracer.end("test", token);
+        assertFalse(PerfTracer.dump().contains("test"));
+    }
+}
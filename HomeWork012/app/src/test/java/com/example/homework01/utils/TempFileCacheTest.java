@@ -0,0 +1,107 @@
+package com.example.homework01.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * 临时文件缓存的大小上限、LRU淘汰和启动清理
+ */
+public class TempFileCacheTest {
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static File writeBytes(TempFileCache cache, int size) throws Exception {
+        return cache.write("TEMP_", ".bin", os -> os.write(new byte[size]));
+    }
+
+    @Test
+    public void write_evictsLeastRecentlyUsed() throws Exception {
+        TempFileCache cache = new TempFileCache(mFolder.getRoot(), 250);
+        File first = writeBytes(cache, 100);
+        File second = writeBytes(cache, 100);
+        cache.touch(first);
+        File third = writeBytes(cache, 100);
+
+        // second最久未使用，被删除
+        assertTrue(first.exists());
+        assertFalse(second.exists());
+        assertTrue(third.exists());
+        assertEquals(200, cache.getUsedBytes());
+        assertEquals(100, cache.getEvictedBytes());
+        assertEquals(1, cache.getEvictedCount());
+    }
+
+    @Test
+    public void write_failureLeavesNoFile() throws Exception {
+        TempFileCache cache = new TempFileCache(mFolder.getRoot(), 1000);
+        try {
+            cache.write("TEMP_", ".bin", os -> {
+                os.write(1);
+                throw new IOException("boom");
+            });
+            fail();
+        } catch (IOException expected) {
+            // 写入失败
+        }
+        assertEquals(0, mFolder.getRoot().list().length);
+        assertEquals(0, cache.getUsedBytes());
+    }
+
+    @Test
+    public void startup_removesPartialFilesAndEnforcesCap() throws Exception {
+        File dir = mFolder.getRoot();
+        assertTrue(new File(dir, "TEMP_1.jpg.tmp").createNewFile());
+        TempFileCache old = new TempFileCache(dir, 10_000);
+        writeBytes(old, 300);
+        writeBytes(old, 300);
+
+        TempFileCache cache = new TempFileCache(dir, 400);
+        assertFalse(new File(dir, "TEMP_1.jpg.tmp").exists());
+        assertEquals(1, cache.getFileCount());
+        assertEquals(300, cache.getUsedBytes());
+    }
+
+    @Test
+    public void namedWrite_replacesEntryAndIsFoundByName() throws Exception {
+        TempFileCache cache = new TempFileCache(mFolder.getRoot(), 1000);
+        assertNull(cache.get("thumb.jpg"));
+        cache.write("thumb.jpg", os -> os.write(new byte[100]));
+        File file = cache.write("thumb.jpg", os -> os.write(new byte[40]));
+
+        // 同名写入替换原文件，大小只计算一次
+        assertEquals(file, cache.get("thumb.jpg"));
+        assertEquals(40, file.length());
+        assertEquals(1, cache.getFileCount());
+        assertEquals(40, cache.getUsedBytes());
+
+        assertTrue(file.delete());
+        assertNull(cache.get("thumb.jpg"));
+        assertEquals(0, cache.getUsedBytes());
+    }
+
+    @Test
+    public void pinnedFile_survivesEvictionUntilUnpinned() throws Exception {
+        TempFileCache cache = new TempFileCache(mFolder.getRoot(), 250);
+        File pinned = writeBytes(cache, 100);
+        cache.pin(pinned);
+        File second = writeBytes(cache, 100);
+        File third = writeBytes(cache, 100);
+
+        // 最久未使用的pinned正在使用，跳过它删除second
+        assertTrue(pinned.exists());
+        assertFalse(second.exists());
+        assertTrue(third.exists());
+
+        // 取消之后恢复按LRU清理
+        cache.unpin(pinned);
+        writeBytes(cache, 100);
+        assertFalse(pinned.exists());
+        assertEquals(200, cache.getUsedBytes());
+    }
+}
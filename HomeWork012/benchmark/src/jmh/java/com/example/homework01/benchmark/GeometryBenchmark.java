@@ -0,0 +1,80 @@
+package com.example.homework01.benchmark;
+
+import com.example.homework01.geometry.Orientation;
+import com.example.homework01.geometry.OrientationRemap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 裁剪、旋转、翻转的像素搬运耗时
+ */
+@State(Scope.Benchmark)
+public class GeometryBenchmark {
+    @Param({"1", "4", "12", "48"})
+    public int megapixels;
+
+    private SyntheticImage mImage;
+    private int[] mOut;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mImage = SyntheticImage.create(megapixels);
+        mOut = new int[mImage.pixels.length];
+    }
+
+    // 裁剪中间一半宽高的区域
+    @Benchmark
+    public int[] cropCenter() {
+        int width = mImage.width / 2;
+        int height = mImage.height / 2;
+        PixelOps.crop(mImage.pixels, mImage.width, mImage.width / 4, mImage.height / 4, width, height, mOut);
+        return mOut;
+    }
+
+    @Benchmark
+    public int[] rotate90() {
+        PixelOps.rotate90(mImage.pixels, mImage.width, mImage.height, mOut);
+        return mOut;
+    }
+
+    // 分块的方向重排，与上面逐行按列写入的实现对比
+    @Benchmark
+    public int[] remapRotate90() {
+        OrientationRemap.apply(mImage.pixels, mImage.width, mImage.height, Orientation.rotation(90), mOut);
+        return mOut;
+    }
+
+    // 连续点击10次旋转合并后只重排一次
+    @Benchmark
+    public int[] remapTenQuarterTurns() {
+        Orientation orientation = Orientation.IDENTITY;
+        for (int i = 0; i < 10; i++) {
+            orientation = orientation.then(Orientation.rotation(90));
+        }
+        OrientationRemap.apply(mImage.pixels, mImage.width, mImage.height, orientation, mOut);
+        return mOut;
+    }
+
+    @Benchmark
+    public int[] rotate180() {
+        PixelOps.rotate180(mImage.pixels, mImage.width, mImage.height, mOut);
+        return mOut;
+    }
+
+    @Benchmark
+    public int[] flipHorizontal() {
+        PixelOps.flipHorizontal(mImage.pixels, mImage.width, mImage.height, mOut);
+        return mOut;
+    }
+
+    @Benchmark
+    public int[] flipVertical() {
+        PixelOps.flipVertical(mImage.pixels, mImage.width, mImage.height, mOut);
+        return mOut;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.homework01.benchmark;
+
+import com.example.homework01.filter.PixelKernel;
+import com.example.homework01.filter.PixelKernels;
+import com.example.homework01.filter.TiledExecutor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * 滤镜和亮度对比度内核在整张图上的耗时，单线程和分块并行各测一组
+ */
+@State(Scope.Benchmark)
+public class KernelBenchmark {
+    @Param({"1", "4", "12", "48"})
+    public int megapixels;
+
+    private SyntheticImage mImage;
+    private int[] mWork;
+    private TiledExecutor mExecutor;
+
+    private final PixelKernel mBlackWhite = PixelKernels.blackWhite();
+    private final PixelKernel mVintage = PixelKernels.vintage();
+    private final PixelKernel mWarm = PixelKernels.warm();
+    private final PixelKernel mCold = PixelKernels.cold();
+    private final PixelKernel mFresh = PixelKernels.fresh();
+    private final PixelKernel mBrightnessContrast = PixelKernels.brightnessContrast(20, 0.3f);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mImage = SyntheticImage.create(megapixels);
+        mWork = new int[mImage.pixels.length];
+        mExecutor = new TiledExecutor(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mExecutor.shutdown();
+    }
+
+    // 每次迭代前恢复原始像素，避免反复处理后数据退化
+    @Setup(Level.Iteration)
+    public void reset() {
+        System.arraycopy(mImage.pixels, 0, mWork, 0, mWork.length);
+    }
+
+    private int[] run(PixelKernel kernel) {
+        kernel.apply(mWork, 0, mWork.length);
+        return mWork;
+    }
+
+    @Benchmark
+    public int[] blackWhite() {
+        return run(mBlackWhite);
+    }
+
+    @Benchmark
+    public int[] vintage() {
+        return run(mVintage);
+    }
+
+    @Benchmark
+    public int[] warm() {
+        return run(mWarm);
+    }
+
+    @Benchmark
+    public int[] cold() {
+        return run(mCold);
+    }
+
+    @Benchmark
+    public int[] fresh() {
+        return run(mFresh);
+    }
+
+    @Benchmark
+    public int[] brightnessContrast() {
+        return run(mBrightnessContrast);
+    }
+
+    @Benchmark
+    public int[] vintageTiled() {
+        mExecutor.run(mWork, mImage.width, mImage.height, mVintage);
+        return mWork;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.homework01.benchmark;
+
+import com.example.homework01.stitch.OverlapDetector;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一对1080宽的连续截图的重叠检测耗时：相同的状态栏，中间是滚动了scroll行的文字内容
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OverlapBenchmark {
+    private static final int WIDTH = 1080;
+    private static final int HEADER = 120;
+
+    @Param({"2400", "3200"})
+    public int height;
+
+    @Param({"600", "1500"})
+    public int scroll;
+
+    private int[] mFirst;
+    private int[] mSecond;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int rows = height + scroll;
+        int[] content = new int[WIDTH * rows];
+        Arrays.fill(content, 0xFFFFFFFF);
+        Random random = new Random(42);
+        // 每60行一行“文字”，笔画之间留竖向空隙
+        for (int line = 0; line + 60 <= rows; line += 60) {
+            int x = 30;
+            while (x < WIDTH - 100) {
+                int length = 20 + random.nextInt(120);
+                int color = 0xFF000000 | random.nextInt(0x404040);
+                for (int y = line + 15; y < line + 45; y++) {
+                    for (int i = x; i < Math.min(WIDTH - 30, x + length); i++) {
+                        if ((i + y) % 5 != 0) {
+                            content[y * WIDTH + i] = color;
+                        }
+                    }
+                }
+                x += length + 20;
+            }
+        }
+        mFirst = Arrays.copyOfRange(content, 0, WIDTH * height);
+        mSecond = Arrays.copyOfRange(content, WIDTH * scroll, WIDTH * (scroll + height));
+        Arrays.fill(mFirst, 0, WIDTH * HEADER, 0xFF112233);
+        Arrays.fill(mSecond, 0, WIDTH * HEADER, 0xFF112233);
+    }
+
+    @Benchmark
+    public OverlapDetector.Result detect() {
+        return OverlapDetector.detect(mFirst, height, mSecond, height, WIDTH);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.homework01.benchmark;
+
+/**
+ * BitmapUtils中裁剪、旋转、翻转的纯Java版本，按像素数组计算，便于在JVM上测量
+ */
+final class PixelOps {
+    private PixelOps() {
+    }
+
+    // 裁剪：逐行复制
+    static void crop(int[] src, int width, int left, int top, int cropWidth, int cropHeight, int[] dst) {
+        for (int y = 0; y < cropHeight; y++) {
+            System.arraycopy(src, (top + y) * width + left, dst, y * cropWidth, cropWidth);
+        }
+    }
+
+    // 顺时针旋转90度，结果宽高互换
+    static void rotate90(int[] src, int width, int height, int[] dst) {
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            int column = height - 1 - y;
+            for (int x = 0; x < width; x++) {
+                dst[x * height + column] = src[row + x];
+            }
+        }
+    }
+
+    // 旋转180度
+    static void rotate180(int[] src, int width, int height, int[] dst) {
+        int last = width * height - 1;
+        for (int i = 0; i <= last; i++) {
+            dst[last - i] = src[i];
+        }
+    }
+
+    // 水平翻转：每行左右颠倒
+    static void flipHorizontal(int[] src, int width, int height, int[] dst) {
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            int end = row + width - 1;
+            for (int x = 0; x < width; x++) {
+                dst[end - x] = src[row + x];
+            }
+        }
+    }
+
+    // 垂直翻转：整行复制到对称位置
+    static void flipVertical(int[] src, int width, int height, int[] dst) {
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(src, y * width, dst, (height - 1 - y) * width, width);
+        }
+    }
+}
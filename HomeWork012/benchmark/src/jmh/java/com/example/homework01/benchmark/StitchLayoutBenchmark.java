@@ -0,0 +1,49 @@
+package com.example.homework01.benchmark;
+
+import com.example.homework01.stitch.StitchLayout;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 三种拼接模式的布局计算耗时，输入是4张指定像素数、宽高略有差异的图片
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StitchLayoutBenchmark {
+    @Param({"1", "4", "12", "48"})
+    public int megapixels;
+
+    @Param({"0", "1", "2"})
+    public int mode;
+
+    private final int[] mWidths = new int[4];
+    private final int[] mHeights = new int[4];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        for (int i = 0; i < mWidths.length; i++) {
+            // 横图和竖图交替，尺寸相差约10%
+            double pixels = megapixels * 1_000_000.0 * (1 + 0.1 * i);
+            int longSide = (int) Math.round(Math.sqrt(pixels * 4 / 3));
+            int shortSide = (int) Math.round(pixels / longSide);
+            mWidths[i] = i % 2 == 0 ? longSide : shortSide;
+            mHeights[i] = i % 2 == 0 ? shortSide : longSide;
+        }
+    }
+
+    @Benchmark
+    public StitchLayout layout() {
+        return StitchLayout.compute(mode, mWidths, mHeights);
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.homework01.benchmark;
+
+import java.util.Random;
+
+/**
+ * 合成测试图：4:3的随机像素，alpha固定为不透明
+ */
+final class SyntheticImage {
+    final int width;
+    final int height;
+    final int[] pixels;
+
+    private SyntheticImage(int width, int height, int[] pixels) {
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+
+    static SyntheticImage create(int megapixels) {
+        int width = (int) Math.round(Math.sqrt(megapixels * 1_000_000.0 * 4 / 3));
+        int height = (int) Math.round(megapixels * 1_000_000.0 / width);
+        int[] pixels = new int[width * height];
+        // 固定种子，保证每次运行的数据相同
+        Random random = new Random(megapixels);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        return new SyntheticImage(width, height, pixels);
+    }
+}